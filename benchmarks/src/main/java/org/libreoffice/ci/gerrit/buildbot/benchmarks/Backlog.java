@@ -0,0 +1,108 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.benchmarks;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.libreoffice.ci.gerrit.buildbot.config.SchedulerConfig;
+import org.libreoffice.ci.gerrit.buildbot.config.SchedulerProject;
+import org.libreoffice.ci.gerrit.buildbot.logic.BuildbotLogicControl;
+import org.libreoffice.ci.gerrit.buildbot.model.Os;
+import org.libreoffice.ci.gerrit.buildbot.model.TBBlockingQueue;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Synthetic scheduler state: jobs spread round robin over the projects
+ * and, within each project, over the branches. No journal, history,
+ * leases or idle timeouts, so nothing but the benchmarked calls touches
+ * the control. The jobs come in through the string entry point, no Gerrit
+ * event or database is needed.
+ */
+final class Backlog {
+    // the first project, the only one unless more are asked for
+    static final String PROJECT = "core";
+    static final String URL = "http://tinderbox/log";
+    // fills a revision up to 40 hex digits after the counter
+    private static final String FILL = "0123456789abcdef0123456789abcde";
+
+    final BuildbotLogicControl control;
+    private final int branches;
+    private final int projects;
+    private final AtomicLong revisions = new AtomicLong();
+
+    Backlog(int jobs, int branches) {
+        this(jobs, branches, 1);
+    }
+
+    Backlog(int jobs, int branches, int projects) {
+        this.branches = branches;
+        this.projects = projects;
+        ImmutableList.Builder<SchedulerProject> list = ImmutableList.builder();
+        for (int i = 0; i < projects; i++) {
+            list.add(new SchedulerProject(project(i)));
+        }
+        SchedulerConfig<SchedulerProject> config =
+                new SchedulerConfig<SchedulerProject>();
+        config.setProjects(list.build());
+        control = new BuildbotLogicControl(config);
+        control.start();
+        for (int i = 0; i < jobs; i++) {
+            addJob(project(i % projects));
+        }
+    }
+
+    static String project(int i) {
+        return i == 0 ? PROJECT : PROJECT + "-" + i;
+    }
+
+    String branch(long i) {
+        return "branch-" + (i % branches);
+    }
+
+    /**
+     * Schedule one more job of the first project on the next branch in
+     * turn.
+     *
+     * @return its revision
+     */
+    String addJob() {
+        return addJob(PROJECT);
+    }
+
+    /**
+     * Schedule one more job of the project on the next branch in turn.
+     *
+     * @return its revision
+     */
+    String addJob(String project) {
+        long n = revisions.getAndIncrement();
+        // the job id is the first nine digits, keep them unique
+        String revision = String.format("%09x", n) + FILL;
+        long change = n + 1;
+        control.startGerritJob(project, "I" + revision,
+                branch(n / projects), String.format("refs/changes/%02d/%d/1",
+                        change % 100, change), revision);
+        return revision;
+    }
+
+    /** @return revision of a job added earlier, which may be finished */
+    String revision(long n) {
+        return String.format("%09x", n % Math.max(1, revisions.get())) + FILL;
+    }
+
+    TBBlockingQueue queue(Os platform) {
+        return control.getTBQueueMap(PROJECT).get(platform);
+    }
+
+    void stop() {
+        control.stop();
+    }
+}
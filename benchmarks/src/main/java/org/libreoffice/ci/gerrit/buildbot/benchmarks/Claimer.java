@@ -0,0 +1,76 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.benchmarks;
+
+import java.util.List;
+import java.util.Set;
+
+import org.libreoffice.ci.gerrit.buildbot.model.Os;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+/**
+ * One tinderbox per benchmark thread. The threads are spread round robin
+ * over the projects. Each call asks for the next platform and the next
+ * branch in turn, threads start at different branches. The
+ * branch sets are built up front so that they do not show up in the
+ * allocation rate.
+ */
+@State(Scope.Thread)
+public class Claimer {
+    private static final Os[] PLATFORMS = Os.values();
+
+    private final List<Set<String>> branchSets = Lists.newArrayList();
+    private String box;
+    private String project;
+    private int index;
+    private long n;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchmarkParams params, ThreadParams thread) {
+        String branches = params.getParam("branches");
+        int count = branches == null ? 1 : Integer.parseInt(branches);
+        for (int i = 0; i < count; i++) {
+            branchSets.add(ImmutableSet.of("branch-" + i));
+        }
+        index = thread.getThreadIndex();
+        box = "tb" + index;
+        String projects = params.getParam("projects");
+        project = Backlog.project(index
+                % (projects == null ? 1 : Integer.parseInt(projects)));
+    }
+
+    String box() {
+        return box;
+    }
+
+    String project() {
+        return project;
+    }
+
+    Os platform() {
+        return PLATFORMS[(int) (n % PLATFORMS.length)];
+    }
+
+    /** Branch filter of this call, moves on to the next call. */
+    Set<String> branchSet() {
+        Set<String> set = branchSets.get(
+                (int) ((index + n / PLATFORMS.length) % branchSets.size()));
+        n++;
+        return set;
+    }
+}
@@ -0,0 +1,83 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.benchmarks;
+
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.libreoffice.ci.gerrit.buildbot.model.Os;
+import org.libreoffice.ci.gerrit.buildbot.stats.BuildStatistics;
+import org.libreoffice.ci.gerrit.buildbot.utils.QueueUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.io.CharStreams;
+
+/**
+ * {@link QueueUtils#dumpQueue}, i.e. the show command, with the verbose
+ * queue dump. Build statistics are seeded so that the ETAs are estimated
+ * too. The output is thrown away.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DumpQueueBenchmark {
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    @Param({ "100", "10000", "100000" })
+    public int jobs;
+
+    @Param({ "1", "50" })
+    public int branches;
+
+    private Backlog backlog;
+    private PrintWriter out;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        backlog = new Backlog(jobs, branches);
+        BuildStatistics stats = backlog.control.getStatistics(Backlog.PROJECT);
+        // ten builds of one to two hours per platform on two active boxes
+        long now = System.currentTimeMillis();
+        for (Os p : Os.values()) {
+            for (int i = 0; i < 10; i++) {
+                stats.record(p, backlog.branch(i), "tb" + (i % 2), HOUR + i
+                        * HOUR / 10);
+            }
+            stats.seen(p, "tb0", now);
+            stats.seen(p, "tb1", now);
+        }
+        out = new PrintWriter(CharStreams.nullWriter());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        backlog.stop();
+    }
+
+    @Benchmark
+    public void dumpQueue() {
+        QueueUtils.dumpQueue(out, null, backlog.control, Backlog.PROJECT, true);
+    }
+}
@@ -0,0 +1,121 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.benchmarks;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.libreoffice.ci.gerrit.buildbot.logic.BuildbotLogicControl;
+import org.libreoffice.ci.gerrit.buildbot.model.BuildbotPlatformJob;
+import org.libreoffice.ci.gerrit.buildbot.model.GerritJob;
+import org.libreoffice.ci.gerrit.buildbot.model.Os;
+import org.libreoffice.ci.gerrit.buildbot.model.TbJobDescriptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.Lists;
+
+/**
+ * The {@code find*} lookups of {@link BuildbotLogicControl} on a backlog
+ * in which the Linux task of every tenth job is claimed, so that ticket
+ * lookups hit as well.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LookupBenchmark {
+    @Param({ "100", "10000", "100000" })
+    public int jobs;
+
+    @Param({ "1", "50" })
+    public int branches;
+
+    private Backlog backlog;
+    private String[] ids;
+    private String[] revisions;
+    private String[] changes;
+    private String[] tickets;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        backlog = new Backlog(jobs, branches);
+        ids = new String[jobs];
+        revisions = new String[jobs];
+        changes = new String[jobs];
+        for (int i = 0; i < jobs; i++) {
+            revisions[i] = backlog.revision(i);
+            ids[i] = revisions[i].substring(0, 9);
+            changes[i] = "I" + revisions[i];
+        }
+        List<String> claimed = Lists.newArrayList();
+        for (int i = 0; i < jobs / 10; i++) {
+            TbJobDescriptor descriptor = backlog.control.launchTbJob(
+                    Backlog.PROJECT, Os.Linux, Collections.<String> emptySet(),
+                    "tb", false);
+            claimed.add(descriptor.getBuildbotPlatformJob().getTicketString());
+        }
+        tickets = claimed.toArray(new String[claimed.size()]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        backlog.stop();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int n;
+
+        int next(int length) {
+            int i = n;
+            n = (n + 1) % length;
+            return i;
+        }
+    }
+
+    @Benchmark
+    public GerritJob findJobById(Cursor cursor) {
+        return backlog.control.findJobById(Backlog.PROJECT,
+                ids[cursor.next(jobs)]);
+    }
+
+    @Benchmark
+    public GerritJob findJobByRevision(Cursor cursor) {
+        return backlog.control.findJobByRevision(Backlog.PROJECT,
+                revisions[cursor.next(jobs)]);
+    }
+
+    @Benchmark
+    public GerritJob findJobByChange(Cursor cursor) {
+        return backlog.control.findJobByChange(Backlog.PROJECT,
+                changes[cursor.next(jobs)]);
+    }
+
+    @Benchmark
+    public BuildbotPlatformJob findTaskByTicket(Cursor cursor) {
+        return backlog.control.findTaskByTicket(
+                tickets[cursor.next(tickets.length)]);
+    }
+}
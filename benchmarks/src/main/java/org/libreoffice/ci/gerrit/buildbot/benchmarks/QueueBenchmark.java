@@ -0,0 +1,86 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.benchmarks;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.libreoffice.ci.gerrit.buildbot.model.BuildbotPlatformJob;
+import org.libreoffice.ci.gerrit.buildbot.model.Os;
+import org.libreoffice.ci.gerrit.buildbot.model.TBBlockingQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link TBBlockingQueue#poll} and {@link TBBlockingQueue#peek} on one
+ * platform queue of the backlog. A polled task is added back at the tail,
+ * so the queue keeps its size.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueueBenchmark {
+    @Param({ "100", "10000", "100000" })
+    public int jobs;
+
+    @Param({ "1", "10", "50" })
+    public int branches;
+
+    private Backlog backlog;
+    private TBBlockingQueue queue;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        backlog = new Backlog(jobs, branches);
+        queue = backlog.queue(Os.Linux);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        backlog.stop();
+    }
+
+    @Benchmark
+    public BuildbotPlatformJob pollBranch(Claimer claimer) {
+        BuildbotPlatformJob task = queue.poll(claimer.branchSet());
+        if (task != null) {
+            queue.add(task);
+        }
+        return task;
+    }
+
+    @Benchmark
+    public BuildbotPlatformJob pollAny() {
+        BuildbotPlatformJob task = queue.poll(Collections.<String> emptySet());
+        if (task != null) {
+            queue.add(task);
+        }
+        return task;
+    }
+
+    @Benchmark
+    public BuildbotPlatformJob peekBranch(Claimer claimer) {
+        return queue.peek(claimer.branchSet());
+    }
+}
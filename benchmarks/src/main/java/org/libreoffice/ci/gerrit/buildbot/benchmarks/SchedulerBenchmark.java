@@ -0,0 +1,98 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.libreoffice.ci.gerrit.buildbot.commands.TaskStatus;
+import org.libreoffice.ci.gerrit.buildbot.logic.BuildbotLogicControl;
+import org.libreoffice.ci.gerrit.buildbot.model.BuildbotPlatformJob;
+import org.libreoffice.ci.gerrit.buildbot.model.TbJobDescriptor;
+import org.libreoffice.ci.gerrit.buildbot.model.TbJobResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Tinderboxes claiming tasks with
+ * {@link BuildbotLogicControl#launchTbJob} and reporting them with
+ * {@link BuildbotLogicControl#setResultPossible}. The number of concurrent
+ * claimers is the JMH thread count ({@code -t}). A new job replaces each
+ * finished one, so the backlog keeps its size.
+ * <p>
+ * The jobs and the claimers are spread over the projects. Each project has
+ * its own locks, so with several projects the claimers only contend with
+ * those of their own project.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SchedulerBenchmark {
+    @Param({ "100", "10000", "100000" })
+    public int jobs;
+
+    @Param({ "1", "10", "50" })
+    public int branches;
+
+    @Param({ "1", "4", "16" })
+    public int projects;
+
+    private Backlog backlog;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        backlog = new Backlog(jobs, branches, projects);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        backlog.stop();
+    }
+
+    /** get followed by put --status success of the claimed task. */
+    @Benchmark
+    public TbJobResult claimAndReport(Claimer claimer) {
+        TbJobDescriptor descriptor = backlog.control.launchTbJob(
+                claimer.project(), claimer.platform(), claimer.branchSet(),
+                claimer.box(), false);
+        if (descriptor == null) {
+            // the lane was drained by other claimers
+            return null;
+        }
+        BuildbotPlatformJob task = descriptor.getBuildbotPlatformJob();
+        TbJobResult result = backlog.control.setResultPossible(
+                task.getTicketString(), claimer.box(), TaskStatus.SUCCESS,
+                Backlog.URL);
+        if (task.getParent().isFinished()) {
+            backlog.addJob(claimer.project());
+        }
+        return result;
+    }
+
+    /** get --test: the head of the queue is looked at, not claimed. */
+    @Benchmark
+    public TbJobDescriptor peek(Claimer claimer) {
+        return backlog.control.launchTbJob(claimer.project(),
+                claimer.platform(), claimer.branchSet(), claimer.box(), true);
+    }
+}
@@ -5,7 +5,10 @@ public enum TaskStatus {
 	FAILED,
 	CANCELED,
 	CANCELLED,
-	DISCARDED;
+	DISCARDED,
+	ABORTED,
+	EXPIRED,
+	TIMEOUT;
 
 	public boolean isSuccess() {
 		return this == SUCCESS;
@@ -22,4 +25,16 @@ public enum TaskStatus {
 	public boolean isDiscarded() {
 		return this == DISCARDED;
 	}
+
+	public boolean isAborted() {
+		return this == ABORTED;
+	}
+
+	public boolean isExpired() {
+		return this == EXPIRED;
+	}
+
+	public boolean isTimeout() {
+		return this == TIMEOUT;
+	}
 }
@@ -0,0 +1,89 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.config;
+
+import java.io.File;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.libreoffice.ci.gerrit.buildbot.model.Os;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The settings of the scheduler: projects, leases and where the journals
+ * and the history are kept. The Gerrit plugin adds its own settings in
+ * BuildbotConfig.
+ */
+public class SchedulerConfig<P extends SchedulerProject> {
+
+    private ImmutableList<P> projects;
+    // 0: tickets never expire
+    private long lease;
+    private final Map<Os, Long> platformLeases = new EnumMap<Os, Long>(Os.class);
+    private File journalDir;
+    private File historyDir;
+
+    public void setProjects(ImmutableList<P> projects) {
+        this.projects = projects;
+    }
+
+    public List<P> getProjects() {
+        return projects;
+    }
+
+    public P findProject(String name) {
+        Preconditions.checkNotNull(name, "name must not be null");
+        for (P p : projects) {
+            if (p.getName().equals(name)) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    public boolean isProjectSupported(String name) {
+        return findProject(name) == null ? false : true;
+    }
+
+    /** @return lease of a ticket for the platform in ms, 0 for none */
+    public long getLease(Os platform) {
+        Long l = platformLeases.get(platform);
+        return l == null ? lease : l;
+    }
+
+    public void setLease(long lease) {
+        this.lease = lease;
+    }
+
+    public void setLease(Os platform, long lease) {
+        platformLeases.put(platform, lease);
+    }
+
+    /** @return directory of the scheduler journals, null to keep no journal */
+    public File getJournalDir() {
+        return journalDir;
+    }
+
+    public void setJournalDir(File journalDir) {
+        this.journalDir = journalDir;
+    }
+
+    /** @return directory of the task history, null to keep no history */
+    public File getHistoryDir() {
+        return historyDir;
+    }
+
+    public void setHistoryDir(File historyDir) {
+        this.historyDir = historyDir;
+    }
+}
@@ -0,0 +1,60 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.config;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.libreoffice.ci.gerrit.buildbot.model.Os;
+
+import com.google.common.collect.Lists;
+
+/** The settings of a project the scheduler needs, see {@link SchedulerConfig}. */
+public class SchedulerProject implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private String name;
+    private List<String> branches = Lists.newArrayList();
+    // 0: pending tasks wait forever
+    private long idleTimeout;
+    private final Map<Os, Long> platformIdleTimeouts = new EnumMap<Os, Long>(Os.class);
+
+    public SchedulerProject(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getBranches() {
+        return branches;
+    }
+
+    public void setBranches(String[] branches) {
+        this.branches = Arrays.asList(branches);
+    }
+
+    /** @return how long a task of the platform may stay unclaimed in ms, 0 for ever */
+    public long getIdleTimeout(Os platform) {
+        Long t = platformIdleTimeouts.get(platform);
+        return t == null ? idleTimeout : t;
+    }
+
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public void setIdleTimeout(Os platform, long idleTimeout) {
+        platformIdleTimeouts.put(platform, idleTimeout);
+    }
+}
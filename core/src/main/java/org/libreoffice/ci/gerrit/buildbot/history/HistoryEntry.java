@@ -0,0 +1,159 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.history;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.libreoffice.ci.gerrit.buildbot.model.BuildbotPlatformJob;
+import org.libreoffice.ci.gerrit.buildbot.model.GerritJob;
+import org.libreoffice.ci.gerrit.buildbot.model.TbJobResult;
+
+import com.google.common.base.Strings;
+
+/** Archived task: where it was built, how long it took and how it ended. */
+public class HistoryEntry {
+    // position in the store, the cursor of a query
+    int id;
+    String project;
+    String change;
+    // 0 if the ref is not a change ref
+    int changeNumber;
+    String revision;
+    String ref;
+    String branch;
+    String platform;
+    String box;
+    String status;
+    String log;
+    long queued;
+    // 0 if no tinderbox claimed the task
+    long started;
+    long ended;
+
+    HistoryEntry() {
+    }
+
+    public static HistoryEntry of(BuildbotPlatformJob task) {
+        GerritJob job = task.getParent();
+        TbJobResult result = task.getResult();
+        HistoryEntry e = new HistoryEntry();
+        e.project = job.getGerritProject();
+        e.change = job.getGerritChange();
+        e.changeNumber = job.getChangeNumber();
+        e.revision = job.getGerritRevision();
+        e.ref = job.getGerritRef();
+        e.branch = job.getGerritBranch();
+        e.platform = task.getPlatformString();
+        e.box = task.isStarted() ? task.getTinderboxId() : null;
+        e.status = result.getStatus().name();
+        e.log = result.getLog();
+        e.queued = job.getStartTime();
+        e.started = task.isStarted() ? task.getStartTime() : 0;
+        e.ended = result.getEndTime();
+        return e;
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeUTF(Strings.nullToEmpty(project));
+        out.writeUTF(Strings.nullToEmpty(change));
+        out.writeInt(changeNumber);
+        out.writeUTF(Strings.nullToEmpty(revision));
+        out.writeUTF(Strings.nullToEmpty(ref));
+        out.writeUTF(Strings.nullToEmpty(branch));
+        out.writeUTF(platform);
+        out.writeUTF(Strings.nullToEmpty(box));
+        out.writeUTF(status);
+        out.writeUTF(Strings.nullToEmpty(log));
+        out.writeLong(queued);
+        out.writeLong(started);
+        out.writeLong(ended);
+    }
+
+    static HistoryEntry read(DataInput in) throws IOException {
+        HistoryEntry e = new HistoryEntry();
+        e.project = in.readUTF();
+        e.change = in.readUTF();
+        e.changeNumber = in.readInt();
+        e.revision = in.readUTF();
+        e.ref = in.readUTF();
+        e.branch = in.readUTF();
+        e.platform = in.readUTF();
+        e.box = Strings.emptyToNull(in.readUTF());
+        e.status = in.readUTF();
+        e.log = Strings.emptyToNull(in.readUTF());
+        e.queued = in.readLong();
+        e.started = in.readLong();
+        e.ended = in.readLong();
+        return e;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getProject() {
+        return project;
+    }
+
+    public String getChange() {
+        return change;
+    }
+
+    public int getChangeNumber() {
+        return changeNumber;
+    }
+
+    public String getRevision() {
+        return revision;
+    }
+
+    public String getRef() {
+        return ref;
+    }
+
+    public String getBranch() {
+        return branch;
+    }
+
+    public String getPlatform() {
+        return platform;
+    }
+
+    public String getBox() {
+        return box;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getLog() {
+        return log;
+    }
+
+    public long getQueued() {
+        return queued;
+    }
+
+    public long getStarted() {
+        return started;
+    }
+
+    public long getEnded() {
+        return ended;
+    }
+
+    /** @return build time in ms, 0 if the task was never built */
+    public long getDuration() {
+        return started == 0 ? 0 : ended - started;
+    }
+}
@@ -0,0 +1,86 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.history;
+
+/**
+ * Filter for {@link HistoryStore#query(HistoryQuery)}. Unset fields match
+ * everything. Entries come newest first, a page ends before the cursor
+ * returned with the previous page.
+ */
+public class HistoryQuery {
+    public static final int DEFAULT_LIMIT = 25;
+    public static final int MAX_LIMIT = 500;
+
+    String project;
+    // Change-Id or change number
+    String change;
+    // full or abbreviated
+    String revision;
+    String branch;
+    String platform;
+    String box;
+    // end time range in ms, 0 for open
+    long since;
+    long until;
+    int cursor = -1;
+    int limit = DEFAULT_LIMIT;
+
+    public HistoryQuery setProject(String project) {
+        this.project = project;
+        return this;
+    }
+
+    public HistoryQuery setChange(String change) {
+        this.change = change;
+        return this;
+    }
+
+    public HistoryQuery setRevision(String revision) {
+        this.revision = revision;
+        return this;
+    }
+
+    public HistoryQuery setBranch(String branch) {
+        this.branch = branch;
+        return this;
+    }
+
+    public HistoryQuery setPlatform(String platform) {
+        this.platform = platform;
+        return this;
+    }
+
+    public HistoryQuery setBox(String box) {
+        this.box = box;
+        return this;
+    }
+
+    public HistoryQuery setSince(long since) {
+        this.since = since;
+        return this;
+    }
+
+    public HistoryQuery setUntil(long until) {
+        this.until = until;
+        return this;
+    }
+
+    /** @param cursor as returned by {@link HistoryStore.Page#getNext()} */
+    public HistoryQuery setCursor(String cursor) {
+        this.cursor = cursor == null || cursor.isEmpty() ? -1 : Integer
+                .parseInt(cursor);
+        return this;
+    }
+
+    public HistoryQuery setLimit(int limit) {
+        this.limit = Math.max(1, Math.min(limit, MAX_LIMIT));
+        return this;
+    }
+}
@@ -0,0 +1,373 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.history;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Append-only archive of closed tasks. The entries stay on disk, in the
+ * order they were closed; the heap only holds their offsets and end
+ * times and, per indexed field, the ascending ids of the entries with a
+ * given value. A query walks the shortest matching id list backwards
+ * from its cursor and only reads the entries of the page.
+ * <p>
+ * The indexes are rebuilt by one sequential scan on open. A torn last
+ * entry is cut off.
+ * <p>
+ * Tasks close under the scheduler locks, so entries are written by a
+ * writer thread of their own; close waits for the pending ones.
+ */
+public class HistoryStore {
+    static final Logger log = LoggerFactory.getLogger(HistoryStore.class);
+
+    // revisions are indexed by their abbreviation, see GerritJob#getId()
+    private static final int ABBREV = 9;
+    // tasks closing at the same time may be appended out of order, but
+    // not by more than this
+    private static final long SLACK = 60000;
+
+    private enum Index {
+        PROJECT, CHANGE, REVISION, BRANCH, PLATFORM, BOX
+    }
+
+    private final File file;
+    // null while the store is closed
+    private volatile ExecutorService writer;
+    private RandomAccessFile data;
+    private long end;
+    private long[] offsets = new long[1024];
+    // nearly ascending: entries are appended when their task closes
+    private long[] endTimes = new long[1024];
+    private int size;
+    private final Map<Index, Map<String, IdList>> indexes =
+            new EnumMap<Index, Map<String, IdList>>(Index.class);
+
+    public HistoryStore(File file) {
+        this.file = file;
+        for (Index i : Index.values()) {
+            indexes.put(i, Maps.<String, IdList> newHashMap());
+        }
+    }
+
+    public synchronized void open() throws IOException {
+        file.getParentFile().mkdirs();
+        data = new RandomAccessFile(file, "rw");
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file), 1 << 16));
+        try {
+            while (true) {
+                int len;
+                try {
+                    len = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                byte[] buf = new byte[len];
+                in.readFully(buf);
+                index(end, decode(buf));
+                end += 4 + len;
+            }
+        } catch (EOFException e) {
+            log.warn("{}: dropping torn last entry", file);
+        } finally {
+            in.close();
+        }
+        data.setLength(end);
+        writer = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("buildbot-history").setDaemon(true).build());
+        log.info("{}: {} entries", file, size);
+    }
+
+    public void close() {
+        ExecutorService w = writer;
+        writer = null;
+        if (w != null) {
+            w.shutdown();
+            try {
+                if (!w.awaitTermination(10, TimeUnit.SECONDS)) {
+                    log.warn("{}: pending entries dropped", file);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (data == null) {
+                return;
+            }
+            try {
+                data.close();
+            } catch (IOException e) {
+                log.error("Cannot close " + file, e);
+            }
+            data = null;
+        }
+    }
+
+    /** Queue the entry for the writer thread, it is dropped if closed. */
+    public void append(final HistoryEntry entry) {
+        ExecutorService w = writer;
+        if (w == null) {
+            return;
+        }
+        try {
+            w.execute(new Runnable() {
+                @Override
+                public void run() {
+                    write(entry);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // closed
+        }
+    }
+
+    private synchronized void write(HistoryEntry entry) {
+        if (data == null) {
+            return;
+        }
+        try {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(buf);
+            out.writeInt(0);
+            entry.write(out);
+            byte[] b = buf.toByteArray();
+            int len = b.length - 4;
+            b[0] = (byte) (len >>> 24);
+            b[1] = (byte) (len >>> 16);
+            b[2] = (byte) (len >>> 8);
+            b[3] = (byte) len;
+            data.seek(end);
+            data.write(b);
+            index(end, entry);
+            end += b.length;
+        } catch (IOException e) {
+            log.error("Cannot archive task to " + file, e);
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized Page query(HistoryQuery q) throws IOException {
+        int hi = q.cursor >= 0 ? Math.min(q.cursor, size) : size;
+        int lo = 0;
+        if (q.until > 0) {
+            hi = Math.min(hi, firstAfter(q.until + SLACK));
+        }
+        if (q.since > 0) {
+            lo = firstAfter(q.since - 1 - SLACK);
+        }
+        List<IdList> filters = Lists.newArrayList();
+        if (!filter(filters, Index.PROJECT, q.project)
+                || !filter(filters, Index.BRANCH, q.branch)
+                || !filter(filters, Index.PLATFORM, q.platform)
+                || !filter(filters, Index.BOX, q.box)
+                || !filter(filters, Index.CHANGE, q.change)
+                || (q.revision != null && q.revision.length() >= ABBREV
+                        && !filter(filters, Index.REVISION,
+                                abbreviate(q.revision)))) {
+            return new Page(Collections.<HistoryEntry> emptyList(), null);
+        }
+        // drive the walk with the most selective list
+        IdList driver = null;
+        for (IdList l : filters) {
+            if (driver == null || l.size < driver.size) {
+                driver = l;
+            }
+        }
+        List<HistoryEntry> entries = Lists.newArrayList();
+        int pos = driver == null ? hi : driver.lowerBound(hi);
+        while (--pos >= 0) {
+            int id = driver == null ? pos : driver.ids[pos];
+            if (id < lo) {
+                break;
+            }
+            if (!matches(id, q, filters, driver)) {
+                continue;
+            }
+            HistoryEntry e = read(id);
+            if (q.revision != null && !e.revision.startsWith(q.revision)) {
+                continue;
+            }
+            if (entries.size() == q.limit) {
+                // there is more
+                return new Page(entries, String.valueOf(entries.get(
+                        entries.size() - 1).id));
+            }
+            entries.add(e);
+        }
+        return new Page(entries, null);
+    }
+
+    private boolean matches(int id, HistoryQuery q, List<IdList> filters,
+            IdList driver) {
+        long t = endTimes[id];
+        if ((q.since > 0 && t < q.since) || (q.until > 0 && t > q.until)) {
+            return false;
+        }
+        for (IdList l : filters) {
+            if (l != driver && !l.contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // false if nothing can match
+    private boolean filter(List<IdList> filters, Index index, String key) {
+        if (key == null) {
+            return true;
+        }
+        IdList l = indexes.get(index).get(key);
+        if (l == null) {
+            return false;
+        }
+        filters.add(l);
+        return true;
+    }
+
+    // binary search over the nearly sorted end times: entries before the
+    // result ended at most SLACK after the time, entries from the result
+    // on at most SLACK before it
+    private int firstAfter(long time) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (endTimes[mid] <= time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private HistoryEntry read(int id) throws IOException {
+        data.seek(offsets[id]);
+        byte[] buf = new byte[data.readInt()];
+        data.readFully(buf);
+        HistoryEntry e = decode(buf);
+        e.id = id;
+        return e;
+    }
+
+    private static HistoryEntry decode(byte[] buf) throws IOException {
+        return HistoryEntry.read(new DataInputStream(new ByteArrayInputStream(
+                buf)));
+    }
+
+    private void index(long offset, HistoryEntry e) {
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+            endTimes = Arrays.copyOf(endTimes, size * 2);
+        }
+        int id = size++;
+        e.id = id;
+        offsets[id] = offset;
+        endTimes[id] = e.ended;
+        add(Index.PROJECT, e.project, id);
+        add(Index.CHANGE, e.change, id);
+        if (e.changeNumber != 0) {
+            add(Index.CHANGE, String.valueOf(e.changeNumber), id);
+        }
+        add(Index.REVISION, abbreviate(e.revision), id);
+        add(Index.BRANCH, e.branch, id);
+        add(Index.PLATFORM, e.platform, id);
+        add(Index.BOX, e.box, id);
+    }
+
+    private void add(Index index, String key, int id) {
+        if (key == null || key.isEmpty()) {
+            return;
+        }
+        Map<String, IdList> map = indexes.get(index);
+        IdList l = map.get(key);
+        if (l == null) {
+            l = new IdList();
+            map.put(key, l);
+        }
+        l.add(id);
+    }
+
+    private static String abbreviate(String revision) {
+        return revision.substring(0, Math.min(revision.length(), ABBREV));
+    }
+
+    /** One page of a query. */
+    public static class Page {
+        private final List<HistoryEntry> entries;
+        private final String next;
+
+        Page(List<HistoryEntry> entries, String next) {
+            this.entries = entries;
+            this.next = next;
+        }
+
+        /** @return entries, newest first */
+        public List<HistoryEntry> getEntries() {
+            return entries;
+        }
+
+        /** @return cursor of the next page, null if this is the last one */
+        public String getNext() {
+            return next;
+        }
+    }
+
+    // ascending ids, appended in order
+    private static final class IdList {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        boolean contains(int id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+
+        // number of ids below the given one
+        int lowerBound(int id) {
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            return i >= 0 ? i : -i - 1;
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package org.libreoffice.ci.gerrit.buildbot.logic;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.libreoffice.ci.gerrit.buildbot.commands.TaskStatus;
+import org.libreoffice.ci.gerrit.buildbot.config.SchedulerConfig;
+import org.libreoffice.ci.gerrit.buildbot.config.SchedulerProject;
+import org.libreoffice.ci.gerrit.buildbot.history.HistoryStore;
+import org.libreoffice.ci.gerrit.buildbot.logic.impl.ProjectControlImpl;
+import org.libreoffice.ci.gerrit.buildbot.metrics.Metrics;
+import org.libreoffice.ci.gerrit.buildbot.model.BuildbotPlatformJob;
+import org.libreoffice.ci.gerrit.buildbot.model.Clock;
+import org.libreoffice.ci.gerrit.buildbot.model.GerritJob;
+import org.libreoffice.ci.gerrit.buildbot.model.Os;
+import org.libreoffice.ci.gerrit.buildbot.model.TBBlockingQueue;
+import org.libreoffice.ci.gerrit.buildbot.model.TaskCompletionListener;
+import org.libreoffice.ci.gerrit.buildbot.model.TbJobDescriptor;
+import org.libreoffice.ci.gerrit.buildbot.model.TbJobResult;
+import org.libreoffice.ci.gerrit.buildbot.stats.BuildStatistics;
+import org.libreoffice.ci.gerrit.buildbot.stats.QueueEstimate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+public class BuildbotLogicControl {
+    static final Logger log = LoggerFactory.getLogger(BuildbotLogicControl.class);
+    private static final int WAITER_THREADS = 2;
+
+    private final Map<String, ProjectControl> projectMap = new ConcurrentHashMap<String, ProjectControl>();
+
+    // engaged ticket -> owning project, so that a result is routed
+    // without asking every project
+    private final ConcurrentMap<String, String> ticketMap = new ConcurrentHashMap<String, String>();
+
+    private SchedulerConfig<?> config;
+
+    private final Metrics metrics;
+    private final Clock clock;
+
+    private ScheduledExecutorService timer;
+    // polls and completes the waiting get requests
+    private ExecutorService waiters;
+
+    private volatile IdleTimeoutListener idleTimeoutListener;
+
+    // closed tasks of all projects, null if no history is kept
+    private HistoryStore history;
+
+    // forwards to the listener set by the plugin, if any
+    private final IdleTimeoutListener idleTimeoutDispatcher = new IdleTimeoutListener() {
+        @Override
+        public void jobTimedOut(GerritJob job) {
+            IdleTimeoutListener l = idleTimeoutListener;
+            if (l != null) {
+                l.jobTimedOut(job);
+            }
+        }
+    };
+
+    public BuildbotLogicControl(SchedulerConfig<?> config) {
+        this(config, new Metrics());
+    }
+
+    public BuildbotLogicControl(SchedulerConfig<?> config, Metrics metrics) {
+        this(config, metrics, Clock.SYSTEM);
+    }
+
+    public BuildbotLogicControl(SchedulerConfig<?> config, Metrics metrics,
+            Clock clock) {
+        this.config = config;
+        this.metrics = metrics;
+        this.clock = clock;
+    }
+
+    public void start() {
+        timer = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("buildbot-timer")
+                        .setDaemon(true).build());
+        waiters = Executors.newFixedThreadPool(WAITER_THREADS,
+                new ThreadFactoryBuilder().setNameFormat("buildbot-get-%d")
+                        .setDaemon(true).build());
+        if (config.getHistoryDir() != null) {
+            history = new HistoryStore(new File(config.getHistoryDir(),
+                    "tasks.history"));
+            try {
+                history.open();
+            } catch (IOException e) {
+                log.error("cannot open the task history", e);
+                history.close();
+                history = null;
+            }
+        }
+        // init
+        for (SchedulerProject project : config.getProjects()) {
+            projectMap.put(project.getName(), new ProjectControlImpl(
+                    config, project, timer, waiters, idleTimeoutDispatcher,
+                    history, metrics, clock));
+        }
+        for (Map.Entry<String, ProjectControl> entry : projectMap.entrySet()) {
+            entry.getValue().start();
+            // tickets handed out before a restart
+            for (BuildbotPlatformJob task : entry.getValue()
+                    .getEngagedTasks()) {
+                registerTicket(entry.getKey(), task);
+            }
+        }
+    }
+
+    public void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+        synchronized (projectMap) {
+            for (Map.Entry<String, ProjectControl> entry : projectMap
+                    .entrySet()) {
+                entry.getValue().stop();
+            }
+            // release
+            projectMap.clear();
+            ticketMap.clear();
+        }
+        // after the projects released their waiters, so that the last
+        // get requests still complete
+        if (waiters != null) {
+            waiters.shutdown();
+        }
+        if (history != null) {
+            history.close();
+        }
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /** @return the archive of closed tasks, null if none is kept */
+    public HistoryStore getHistory() {
+        return history;
+    }
+
+    public TbJobDescriptor launchTbJob(String project, Os platform,
+            Set<String> branch, String box, boolean test) {
+        TbJobDescriptor descriptor = projectMap.get(project).launchTbJob(
+                platform, branch, box, test);
+        if (descriptor != null && !test) {
+            registerTicket(project, descriptor.getBuildbotPlatformJob());
+        }
+        return descriptor;
+    }
+
+    /**
+     * Like {@link #launchTbJob(String, Os, Set, String, boolean)}, but
+     * wait up to {@code wait} milliseconds for a matching task if the
+     * queue is empty. No thread is parked meanwhile, the future completes
+     * on a pool thread with the task or null. Cancelling it gives up the
+     * wait.
+     */
+    public ListenableFuture<TbJobDescriptor> awaitTbJob(final String project,
+            Os platform, Set<String> branch, String box, final boolean test,
+            long wait) {
+        return Futures.transform(projectMap.get(project).awaitTbJob(platform,
+                branch, box, test, wait),
+                new Function<TbJobDescriptor, TbJobDescriptor>() {
+                    @Override
+                    public TbJobDescriptor apply(TbJobDescriptor descriptor) {
+                        if (descriptor != null && !test) {
+                            registerTicket(project,
+                                    descriptor.getBuildbotPlatformJob());
+                        }
+                        return descriptor;
+                    }
+                });
+    }
+
+    private void registerTicket(final String project,
+            BuildbotPlatformJob task) {
+        final String ticket = task.getTicketString();
+        ticketMap.put(ticket, project);
+        task.addCompletionListener(
+                new TaskCompletionListener() {
+                    @Override
+                    public void taskCompleted(BuildbotPlatformJob task) {
+                        ticketMap.remove(ticket, project);
+                    }
+                });
+        // completed before the listener was there
+        if (task.isReady()) {
+            ticketMap.remove(ticket, project);
+        }
+    }
+
+    public TbJobResult setResultPossible(String ticket, String boxId,
+            TaskStatus status, String logurl) {
+        ProjectControl projectControl = findProjectControlByTicket(ticket);
+        if (projectControl == null) {
+            return null;
+        }
+        return projectControl.setResultPossible(ticket, boxId, status,
+                logurl);
+    }
+
+    private ProjectControl findProjectControlByTicket(String ticket) {
+        String project = ticketMap.get(ticket);
+        return project == null ? null : projectMap.get(project);
+    }
+
+    public List<GerritJob> getGerritJobs(String project) {
+        return projectMap.get(project).getGerritJobs();
+    }
+
+    public Map<Os, TBBlockingQueue> getTBQueueMap(String project) {
+        return projectMap.get(project).getTbQueueMap();
+    }
+
+    public void startGerritJob(String project, String change, String branch, String ref,
+            String revision) {
+        projectMap.get(project).startGerritJob(project, change, branch, ref,
+                revision);
+    }
+
+    /**
+     * Like {@link #startGerritJob}, for a new patch set: the pending tasks
+     * of the older patch sets of the change are discarded.
+     */
+    public void startPatchSet(String project, String change, String branch,
+            String ref, String revision) {
+        projectMap.get(project).startPatchSet(project, change, branch, ref,
+                revision);
+    }
+
+    public String findProjectByTicket(String ticket) {
+        return ticketMap.get(ticket);
+    }
+
+    /**
+     * Renew the lease of an engaged ticket.
+     *
+     * @return the task, or null if the ticket is not engaged by the box
+     */
+    public BuildbotPlatformJob renewLease(String ticket, String box) {
+        ProjectControl projectControl = findProjectControlByTicket(ticket);
+        return projectControl == null ? null : projectControl.renewLease(
+                ticket, box);
+    }
+
+    public boolean isLeaseExpired(String ticket) {
+        for (ProjectControl projectControl : projectMap.values()) {
+            if (projectControl.isLeaseExpired(ticket)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** @return the running task, or null if the ticket is not engaged */
+    public BuildbotPlatformJob findTaskByTicket(String ticket) {
+        ProjectControl projectControl = findProjectControlByTicket(ticket);
+        return projectControl == null ? null : projectControl
+                .findTaskByTicket(ticket);
+    }
+
+    public void handleStaleJob(String project, GerritJob job) {
+        projectMap.get(project).handleStaleJob(job);
+    }
+
+    public long getSupersededTasks(String project) {
+        return projectMap.get(project).getSupersededTasks();
+    }
+
+    public long getTimedOutTasks(String project) {
+        return projectMap.get(project).getTimedOutTasks();
+    }
+
+    public BuildStatistics getStatistics(String project) {
+        return projectMap.get(project).getStatistics();
+    }
+
+    /** @return expected end of the pending tasks of the project */
+    public QueueEstimate estimate(String project) {
+        return projectMap.get(project).estimate();
+    }
+
+    public void setIdleTimeoutListener(IdleTimeoutListener listener) {
+        this.idleTimeoutListener = listener;
+    }
+
+    /**
+     * The change was abandoned or merged: abort its jobs on the branch.
+     *
+     * @param change Change-Id
+     * @param number number of the change, 0 if not known
+     * @return number of discarded tasks
+     */
+    public int abortChange(String project, String change, int number,
+            String branch, String reason) {
+        return projectMap.get(project).abortChange(change, number, branch,
+                reason);
+    }
+
+    public List<BuildbotPlatformJob> findAbortedTasks(String project, String box) {
+        return projectMap.get(project).findAbortedTasks(box);
+    }
+
+    public GerritJob findJobById(String project, String id) {
+      return projectMap.get(project).findJobById(id);
+   }
+
+    public GerritJob findJobByRevision(String project, String revision) {
+        return projectMap.get(project).findJobByRevision(revision);
+    }
+
+    public GerritJob findJobByChange(String project, String change) {
+        return projectMap.get(project).findJobByChange(change);
+    }
+    
+    public Set<String> getAllProjects() {
+      if (projectMap.isEmpty()) {
+        return Collections.emptySet();
+      } else {
+        return projectMap.keySet();
+      }
+    }
+}
@@ -0,0 +1,20 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.logic;
+
+import org.libreoffice.ci.gerrit.buildbot.model.GerritJob;
+
+/**
+ * Told about jobs finished by an idle timeout: no put reports them, so
+ * somebody else must post the combined result.
+ */
+public interface IdleTimeoutListener {
+    void jobTimedOut(GerritJob job);
+}
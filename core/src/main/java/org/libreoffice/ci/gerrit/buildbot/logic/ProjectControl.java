@@ -9,36 +9,46 @@
 
 package org.libreoffice.ci.gerrit.buildbot.logic;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.libreoffice.ci.gerrit.buildbot.commands.TaskStatus;
+import org.libreoffice.ci.gerrit.buildbot.model.BuildbotPlatformJob;
 import org.libreoffice.ci.gerrit.buildbot.model.GerritJob;
 import org.libreoffice.ci.gerrit.buildbot.model.Os;
 import org.libreoffice.ci.gerrit.buildbot.model.TBBlockingQueue;
 import org.libreoffice.ci.gerrit.buildbot.model.TbJobDescriptor;
 import org.libreoffice.ci.gerrit.buildbot.model.TbJobResult;
+import org.libreoffice.ci.gerrit.buildbot.stats.BuildStatistics;
+import org.libreoffice.ci.gerrit.buildbot.stats.QueueEstimate;
 
-import com.google.gerrit.reviewdb.client.Change;
-import com.google.gerrit.reviewdb.client.PatchSet;
-import com.google.gerrit.server.events.CommentAddedEvent;
-import com.google.gerrit.server.events.PatchSetCreatedEvent;
+import com.google.common.util.concurrent.ListenableFuture;
 
 public interface ProjectControl {
     void startGerritJob(String project, String change, String branch, String ref, String revision);
-	void startGerritJob(PatchSetCreatedEvent event);
-	void startGerritJob(CommentAddedEvent event);
-	void startGerritJob(Change change, PatchSet patchSet);
+	void startPatchSet(String project, String change, String branch, String ref, String revision);
 	List<GerritJob> getGerritJobs();
 	GerritJob findJobById(String id);
 	GerritJob findJobByRevision(String revision);
 	GerritJob findJobByTicket(String ticket);
+	BuildbotPlatformJob findTaskByTicket(String ticket);
+	BuildbotPlatformJob renewLease(String ticket, String box);
+	boolean isLeaseExpired(String ticket);
 	GerritJob findJobByChange(String change);
 	TbJobDescriptor launchTbJob(Os platform, Set<String> branch, String box, boolean test);
+	ListenableFuture<TbJobDescriptor> awaitTbJob(Os platform, Set<String> branch, String box, boolean test, long wait);
 	TbJobResult setResultPossible(String ticket, String boxId, TaskStatus status, String logurl);
 	void stop();
 	void start();
 	Map<Os, TBBlockingQueue> getTbQueueMap();
     void handleStaleJob(GerritJob job);
+    long getSupersededTasks();
+    long getTimedOutTasks();
+    int abortChange(String change, int number, String branch, String reason);
+    List<BuildbotPlatformJob> findAbortedTasks(String box);
+    Collection<BuildbotPlatformJob> getEngagedTasks();
+    BuildStatistics getStatistics();
+    QueueEstimate estimate();
 }
@@ -0,0 +1,335 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.logic.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Append-only log of the scheduler events of one project, one tab
+ * separated record per line. Records are written by a single thread:
+ * everything appended while the previous batch was forced to disk goes
+ * out with the next write and fsync (group commit).
+ * <p>
+ * The log is compacted by replacing it with a snapshot of the live
+ * state, written as the records that rebuild it.
+ * <p>
+ * After a failed write the log has a gap: the records that follow are
+ * dropped and {@link #sync()} fails until a snapshot replaced the log.
+ */
+class Journal {
+    static final Logger log = LoggerFactory.getLogger(Journal.class);
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File file;
+    private final Object lock = new Object();
+    private StringBuilder pending = new StringBuilder();
+    // records appended, records on disk
+    private long appended;
+    private long written;
+    // records in the file
+    private long records;
+    private boolean writing;
+    // the first failed write since the last snapshot
+    private IOException failure;
+    private boolean closed = true;
+    private FileOutputStream out;
+    private Thread writer;
+
+    Journal(File file) {
+        this.file = file;
+    }
+
+    /** @return the records of the file, a torn last record is dropped */
+    List<String[]> read() throws IOException {
+        List<String[]> result = Lists.newArrayList();
+        if (!file.exists()) {
+            return result;
+        }
+        byte[] data = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int n = 0;
+            while (n < data.length) {
+                int r = in.read(data, n, data.length - n);
+                if (r < 0) {
+                    break;
+                }
+                n += r;
+            }
+        } finally {
+            in.close();
+        }
+        String text = new String(data, UTF_8);
+        int start = 0;
+        for (int end = text.indexOf('\n'); end >= 0; end = text.indexOf(
+                '\n', start)) {
+            if (end > start) {
+                result.add(decode(text.substring(start, end)));
+            }
+            start = end + 1;
+        }
+        if (start < text.length()) {
+            log.warn("{}: dropping torn last record", file);
+        }
+        return result;
+    }
+
+    void open() throws IOException {
+        synchronized (lock) {
+            file.getParentFile().mkdirs();
+            out = new FileOutputStream(file, true);
+            closed = false;
+        }
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "buildbot-journal-" + file.getName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    void append(String... fields) {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            encode(pending, fields);
+            appended++;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Wait until everything appended so far is on disk.
+     *
+     * @throws IOException if a write failed since the last snapshot, the
+     *         log misses records until the next {@link #rewrite}
+     */
+    void sync() throws IOException {
+        synchronized (lock) {
+            long target = appended;
+            try {
+                while (written < target && !closed) {
+                    lock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw new IOException("journal " + file + " failed", failure);
+            }
+        }
+    }
+
+    boolean isFailed() {
+        synchronized (lock) {
+            return failure != null;
+        }
+    }
+
+    long records() {
+        synchronized (lock) {
+            return records;
+        }
+    }
+
+    /**
+     * Replace the log with the given records. The caller must make sure
+     * they reflect everything appended so far.
+     */
+    void rewrite(List<String[]> snapshot) throws IOException {
+        StringBuilder b = new StringBuilder();
+        for (String[] r : snapshot) {
+            encode(b, r);
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        synchronized (lock) {
+            try {
+                while (writing || pending.length() > 0) {
+                    lock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            file.getParentFile().mkdirs();
+            FileOutputStream tmpOut = new FileOutputStream(tmp);
+            try {
+                write(tmpOut.getChannel(), b);
+            } finally {
+                tmpOut.close();
+            }
+            if (out != null) {
+                out.close();
+            }
+            if (!tmp.renameTo(file)) {
+                // not atomic, but the old log is still complete
+                if (!file.delete() || !tmp.renameTo(file)) {
+                    throw new IOException("cannot replace " + file);
+                }
+            }
+            records = snapshot.size();
+            // the snapshot has everything the failed writes lost
+            failure = null;
+            if (!closed) {
+                out = new FileOutputStream(file, true);
+            }
+        }
+    }
+
+    void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            // the writer drains what is pending
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (lock) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                log.error("Cannot close " + file, e);
+            }
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            StringBuilder batch;
+            long target;
+            FileChannel channel;
+            synchronized (lock) {
+                try {
+                    while (pending.length() == 0 && !closed) {
+                        lock.wait();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (pending.length() == 0) {
+                    return;
+                }
+                batch = pending;
+                pending = new StringBuilder();
+                target = appended;
+                channel = out.getChannel();
+                writing = failure == null;
+                if (!writing) {
+                    // records after a gap would be replayed out of
+                    // context, drop them until the next snapshot
+                    written = target;
+                    lock.notifyAll();
+                    continue;
+                }
+            }
+            long n = 0;
+            IOException error = null;
+            try {
+                write(channel, batch);
+                n = target - written;
+            } catch (IOException e) {
+                log.error("Cannot write " + file, e);
+                error = e;
+            }
+            synchronized (lock) {
+                if (error != null) {
+                    failure = error;
+                }
+                records += n;
+                written = target;
+                writing = false;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private static void write(FileChannel channel, CharSequence text)
+            throws IOException {
+        ByteBuffer buf = UTF_8.encode(text.toString());
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        channel.force(false);
+    }
+
+    private static void encode(StringBuilder b, String[] fields) {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                b.append('\t');
+            }
+            String f = fields[i];
+            if (f == null) {
+                continue;
+            }
+            for (int j = 0; j < f.length(); j++) {
+                char c = f.charAt(j);
+                switch (c) {
+                case '\\':
+                    b.append("\\\\");
+                    break;
+                case '\t':
+                    b.append("\\t");
+                    break;
+                case '\n':
+                    b.append("\\n");
+                    break;
+                case '\r':
+                    b.append("\\r");
+                    break;
+                default:
+                    b.append(c);
+                }
+            }
+        }
+        b.append('\n');
+    }
+
+    // empty fields are read back as null
+    private static String[] decode(String line) {
+        List<String> fields = Lists.newArrayList();
+        StringBuilder f = new StringBuilder();
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\t') {
+                fields.add(f.length() == 0 ? null : f.toString());
+                f.setLength(0);
+            } else if (c == '\\' && i + 1 < line.length()) {
+                char e = line.charAt(++i);
+                f.append(e == 't' ? '\t' : e == 'n' ? '\n' : e == 'r' ? '\r'
+                        : e);
+            } else {
+                f.append(c);
+            }
+        }
+        fields.add(f.length() == 0 ? null : f.toString());
+        return fields.toArray(new String[fields.size()]);
+    }
+}
@@ -0,0 +1,1192 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.logic.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.lang.ref.WeakReference;
+import java.net.URLEncoder;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.libreoffice.ci.gerrit.buildbot.commands.TaskStatus;
+import org.libreoffice.ci.gerrit.buildbot.config.SchedulerConfig;
+import org.libreoffice.ci.gerrit.buildbot.config.SchedulerProject;
+import org.libreoffice.ci.gerrit.buildbot.history.HistoryEntry;
+import org.libreoffice.ci.gerrit.buildbot.history.HistoryQuery;
+import org.libreoffice.ci.gerrit.buildbot.history.HistoryStore;
+import org.libreoffice.ci.gerrit.buildbot.logic.IdleTimeoutListener;
+import org.libreoffice.ci.gerrit.buildbot.logic.ProjectControl;
+import org.libreoffice.ci.gerrit.buildbot.metrics.Gauge;
+import org.libreoffice.ci.gerrit.buildbot.metrics.Histogram;
+import org.libreoffice.ci.gerrit.buildbot.metrics.Metrics;
+import org.libreoffice.ci.gerrit.buildbot.model.BuildbotPlatformJob;
+import org.libreoffice.ci.gerrit.buildbot.model.Clock;
+import org.libreoffice.ci.gerrit.buildbot.model.GerritJob;
+import org.libreoffice.ci.gerrit.buildbot.model.Os;
+import org.libreoffice.ci.gerrit.buildbot.model.TBBlockingQueue;
+import org.libreoffice.ci.gerrit.buildbot.model.TbJobDescriptor;
+import org.libreoffice.ci.gerrit.buildbot.model.TbJobResult;
+import org.libreoffice.ci.gerrit.buildbot.stats.BuildStatistics;
+import org.libreoffice.ci.gerrit.buildbot.stats.QueueEstimate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+
+public class ProjectControlImpl implements ProjectControl {
+
+    static final Logger log = LoggerFactory.getLogger(ProjectControl.class);
+    // journal records before a compaction is considered
+    private static final long COMPACT_THRESHOLD = 10000;
+    private static final long COMPACT_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    // archived tasks the build time statistics start from
+    private static final int SEED_ENTRIES = 2000;
+    private final Map<Os, TBBlockingQueue> tbQueueMap = new ConcurrentHashMap<Os, TBBlockingQueue>();
+    // readers iterate over a snapshot, no lock is needed to render the queue
+    private final List<GerritJob> gerritJobList =
+            new CopyOnWriteArrayList<GerritJob>();
+
+    // guards the job registry (list and indexes) against concurrent
+    // start and finish. Claiming a task only takes the platform queue
+    // lock, reporting a result only the lock of the job itself. The
+    // lock order is job -> registry, never the other way around.
+    private final Object lock = new Object();
+
+    // secondary indexes over gerritJobList, only updated while holding
+    // the registry lock, but can be read without it
+    private final ConcurrentMap<String, GerritJob> jobsByRevision =
+            new ConcurrentHashMap<String, GerritJob>();
+    private final ConcurrentMap<String, GerritJob> jobsById =
+            new ConcurrentHashMap<String, GerritJob>();
+    private final ConcurrentMap<String, List<GerritJob>> jobsByChange =
+            new ConcurrentHashMap<String, List<GerritJob>>();
+    private final ConcurrentMap<String, BuildbotPlatformJob> tasksByTicket =
+            new ConcurrentHashMap<String, BuildbotPlatformJob>();
+    // tasks of older patch sets discarded before they were built
+    private final AtomicLong supersededTasks = new AtomicLong();
+    // tickets taken away from their tinderbox, to explain a late put
+    private final Cache<String, String> expiredTickets = CacheBuilder
+            .newBuilder().maximumSize(1024).expireAfterWrite(1, TimeUnit.DAYS)
+            .build();
+
+    // tasks no tinderbox claimed in time
+    private final AtomicLong timedOutTasks = new AtomicLong();
+    // build times and active tinderboxes, for the queue estimate
+    private final BuildStatistics statistics = new BuildStatistics();
+
+    private final SchedulerConfig<?> config;
+    private final SchedulerProject project;
+    // shared by all projects, checks leases and idle timeouts
+    private final ScheduledExecutorService timer;
+    // polls of waiting get requests
+    private final Executor executor;
+    private final IdleTimeoutListener idleTimeoutListener;
+
+    // scheduler events, replayed on start. Null if no journal is kept
+    private final Journal journal;
+    // false while the journal is replayed or if it cannot be written
+    private volatile boolean journaling;
+    private volatile boolean replaying;
+    // closed tasks are archived here, may be null
+    private final HistoryStore history;
+    // records written by the last compaction
+    private volatile long snapshotSize;
+    private ScheduledFuture<?> compaction;
+    // mutations hold the read lock, a snapshot for the journal the write
+    // lock. The lock order is gate -> job -> registry -> queue.
+    private final ReentrantReadWriteLock gate = new ReentrantReadWriteLock();
+
+    private final Metrics metrics;
+    // time stamps of jobs and tasks, virtual in a simulation
+    private final Clock clock;
+    // enqueue -> claim and claim -> put, per platform
+    private final Map<Os, Histogram> queueWait =
+            new EnumMap<Os, Histogram>(Os.class);
+    private final Map<Os, Histogram> buildTime =
+            new EnumMap<Os, Histogram>(Os.class);
+    private final Histogram gateWait;
+    private final Histogram gateHold;
+    private final Histogram registryWait;
+    private final Histogram registryHold;
+
+    public ProjectControlImpl(SchedulerConfig<?> config, SchedulerProject project,
+            ScheduledExecutorService timer, Executor executor,
+            IdleTimeoutListener idleTimeoutListener, HistoryStore history,
+            Metrics metrics, Clock clock) {
+        this.config = config;
+        this.clock = clock;
+        this.history = history;
+        this.project = project;
+        this.timer = timer;
+        this.executor = executor;
+        this.idleTimeoutListener = idleTimeoutListener;
+        this.metrics = metrics;
+        String name = project.getName();
+        for (Os p : Os.values()) {
+            queueWait.put(p, metrics.histogram("buildbot_queue_wait_seconds",
+                    "Time a task waited in its platform queue.",
+                    Histogram.BUILD, Histogram.MILLIS, "project", name,
+                    "platform", p.name()));
+            buildTime.put(p, metrics.histogram("buildbot_build_seconds",
+                    "Time from claiming a task to putting its result.",
+                    Histogram.BUILD, Histogram.MILLIS, "project", name,
+                    "platform", p.name()));
+        }
+        gateWait = metrics.histogram("buildbot_lock_wait_seconds",
+                "Time spent waiting for a scheduler lock.", Histogram.LOCK,
+                Histogram.NANOS, "project", name, "lock", "gate");
+        gateHold = metrics.histogram("buildbot_lock_hold_seconds",
+                "Time a scheduler lock was held.", Histogram.LOCK,
+                Histogram.NANOS, "project", name, "lock", "gate");
+        registryWait = metrics.histogram("buildbot_lock_wait_seconds",
+                "Time spent waiting for a scheduler lock.", Histogram.LOCK,
+                Histogram.NANOS, "project", name, "lock", "registry");
+        registryHold = metrics.histogram("buildbot_lock_hold_seconds",
+                "Time a scheduler lock was held.", Histogram.LOCK,
+                Histogram.NANOS, "project", name, "lock", "registry");
+        File dir = config.getJournalDir();
+        this.journal = dir == null ? null : new Journal(new File(dir,
+                journalName(project.getName())));
+    }
+
+    private static String journalName(String project) {
+        try {
+            return URLEncoder.encode(project, "UTF-8") + ".journal";
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void start() {
+        log.debug("started");
+        for (int i = 0; i < Os.values().length; i++) {
+            tbQueueMap.put(Os.values()[i],
+                    new TBBlockingQueue(Os.values()[i]));
+        }
+        for (final Os p : Os.values()) {
+            metrics.gauge("buildbot_queue_depth",
+                    "Tasks waiting in the platform queue.", new Gauge() {
+                        @Override
+                        public long get() {
+                            TBBlockingQueue queue = tbQueueMap.get(p);
+                            return queue == null ? 0 : queue.size();
+                        }
+                    }, "project", project.getName(), "platform", p.name());
+        }
+        if (history != null) {
+            seedStatistics();
+        }
+        if (journal != null) {
+            restore();
+        }
+    }
+
+    private void restore() {
+        long t = System.currentTimeMillis();
+        replaying = true;
+        try {
+            replay(journal.read());
+        } catch (IOException e) {
+            // keep the journal for inspection and go on without one
+            log.error("cannot read the journal of " + project.getName(), e);
+            return;
+        } finally {
+            replaying = false;
+        }
+        try {
+            compact(true);
+            journal.open();
+            journaling = true;
+        } catch (IOException e) {
+            log.error("cannot write the journal of " + project.getName(), e);
+            return;
+        }
+        log.info("{}: {} job(s) restored in {} ms", new Object[] {
+                project.getName(), gerritJobList.size(),
+                System.currentTimeMillis() - t });
+        try {
+            compaction = timer.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        compact(false);
+                    } catch (IOException e) {
+                        log.error("cannot compact the journal of "
+                                + project.getName(), e);
+                    }
+                }
+            }, COMPACT_INTERVAL, COMPACT_INTERVAL, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // stopped
+        }
+    }
+
+    private void seedStatistics() {
+        List<HistoryEntry> entries = Lists.newArrayList();
+        try {
+            HistoryQuery query = new HistoryQuery().setProject(
+                    project.getName()).setLimit(HistoryQuery.MAX_LIMIT);
+            while (entries.size() < SEED_ENTRIES) {
+                HistoryStore.Page page = history.query(query);
+                entries.addAll(page.getEntries());
+                if (page.getNext() == null) {
+                    break;
+                }
+                query.setCursor(page.getNext());
+            }
+        } catch (IOException e) {
+            log.error("cannot read the task history of " + project.getName(),
+                    e);
+        }
+        // oldest first, the moving averages favour the last builds
+        for (HistoryEntry e : Lists.reverse(entries)) {
+            if (e.getStarted() == 0 || !isBuild(TaskStatus.valueOf(e
+                    .getStatus()))) {
+                continue;
+            }
+            statistics.record(Os.valueOf(e.getPlatform()), e.getBranch(),
+                    e.getBox(), e.getDuration());
+        }
+    }
+
+    // results that tell how long a build takes
+    private static boolean isBuild(TaskStatus status) {
+        return status.isSuccess() || status.isFailed();
+    }
+
+    @Override
+    public void stop() {
+        log.debug("stopped");
+        if (compaction != null) {
+            compaction.cancel(false);
+        }
+        if (journaling) {
+            journaling = false;
+            journal.close();
+        }
+        for (TBBlockingQueue queue : tbQueueMap.values()) {
+            queue.releaseWaiters();
+        }
+        synchronized (lock) {
+            gerritJobList.clear();
+            jobsByRevision.clear();
+            jobsById.clear();
+            jobsByChange.clear();
+            tasksByTicket.clear();
+            tbQueueMap.clear();
+        }
+    }
+
+    // the read lock of the gate, see the lock order above
+    private long lockGate() {
+        long t = System.nanoTime();
+        gate.readLock().lock();
+        long locked = System.nanoTime();
+        gateWait.observe(locked - t);
+        return locked;
+    }
+
+    private void unlockGate(long locked) {
+        gate.readLock().unlock();
+        gateHold.observe(System.nanoTime() - locked);
+    }
+
+    private TBBlockingQueue getQueue(Os p) {
+        return tbQueueMap.get(p);
+    }
+
+    public void finishGerritJob(GerritJob job) {
+        List<BuildbotPlatformJob> tasks;
+        synchronized (job.getBuildbotList()) {
+            tasks = Lists.newArrayList(job.getBuildbotList());
+        }
+        long t = System.nanoTime();
+        synchronized (lock) {
+            long locked = System.nanoTime();
+            registryWait.observe(locked - t);
+            gerritJobList.remove(job);
+            unindexJob(job, tasks);
+            registryHold.observe(System.nanoTime() - locked);
+        }
+    }
+
+    private void indexJob(GerritJob job) {
+        jobsByRevision.putIfAbsent(job.getGerritRevision(), job);
+        jobsById.putIfAbsent(job.getId(), job);
+        List<GerritJob> jobs = jobsByChange.get(job.getGerritChange());
+        if (jobs == null) {
+            jobs = new CopyOnWriteArrayList<GerritJob>();
+            jobsByChange.put(job.getGerritChange(), jobs);
+        }
+        jobs.add(job);
+    }
+
+    private void unindexJob(GerritJob job, List<BuildbotPlatformJob> tasks) {
+        jobsByRevision.remove(job.getGerritRevision(), job);
+        jobsById.remove(job.getId(), job);
+        List<GerritJob> jobs = jobsByChange.get(job.getGerritChange());
+        if (jobs != null) {
+            jobs.remove(job);
+            if (jobs.isEmpty()) {
+                jobsByChange.remove(job.getGerritChange());
+            }
+        }
+        for (BuildbotPlatformJob task : tasks) {
+            String ticket = task.getTicketString();
+            if (ticket != null) {
+                tasksByTicket.remove(ticket, task);
+            }
+        }
+    }
+
+    public void startGerritJob(String project, String change, String branch, String ref,
+            String revision) {
+        long locked = lockGate();
+        try {
+            startJob(project, change, branch, ref, revision);
+        } finally {
+            unlockGate(locked);
+        }
+        sync();
+    }
+
+    private GerritJob startJob(String project, String change, String branch,
+            String ref, String revision) {
+        GerritJob job;
+        long t = System.nanoTime();
+        synchronized (lock) {
+            long locked = System.nanoTime();
+            registryWait.observe(locked - t);
+            try {
+                // check and register atomically: concurrent schedule
+                // requests for the same patch set must not create two jobs
+                if (jobsByRevision.containsKey(revision)) {
+                    log.debug("job for revision {} is already pending",
+                            revision);
+                    return null;
+                }
+                job = new GerritJob(this, project, change, branch, ref,
+                        revision);
+                if (log.isDebugEnabled()) {
+                    log.debug("start job {}", job.getId());
+                }
+                gerritJobList.add(job);
+                indexJob(job);
+                record("J", revision, change, branch, ref,
+                        String.valueOf(job.getStartTime()));
+            } finally {
+                registryHold.observe(System.nanoTime() - locked);
+            }
+        }
+        // enqueue outside of the registry lock, see lock order above
+        job.poulateTBPlatformQueueMap(tbQueueMap);
+        return job;
+    }
+
+    /**
+     * Discard the pending tasks of older patch sets of the change: only
+     * the newest patch set is worth building.
+     */
+    private void supersede(GerritJob job) {
+        List<GerritJob> jobs = jobsByChange.get(job.getGerritChange());
+        if (jobs == null) {
+            return;
+        }
+        for (GerritJob old : jobs) {
+            if (old == job || old.isStale() || !isSameChange(old, job)) {
+                continue;
+            }
+            int discarded = old.handleStale(tbQueueMap);
+            supersededTasks.addAndGet(discarded);
+            log.debug("job {} superseded by {}: {} task(s) discarded",
+                    new Object[] { old.getId(), job.getId(), discarded });
+        }
+    }
+
+    // the Change-Id is shared by cherry picks to other branches
+    private static boolean isSameChange(GerritJob a, GerritJob b) {
+        if (!a.getGerritBranch().equals(b.getGerritBranch())) {
+            return false;
+        }
+        return a.getChangeNumber() == 0 || b.getChangeNumber() == 0
+                || a.getChangeNumber() == b.getChangeNumber();
+    }
+
+    @Override
+    public long getSupersededTasks() {
+        return supersededTasks.get();
+    }
+
+    /**
+     * Start a job for a new patch set. The pending tasks of the older
+     * patch sets of the change are discarded.
+     */
+    public void startPatchSet(String project, String change, String branch,
+            String ref, String revision) {
+        if (log.isDebugEnabled()) {
+            log.debug("startPatchSet: {} {} {} {} {}", new String[] {
+                    project, change, branch, ref, revision });
+        }
+        long locked = lockGate();
+        try {
+            GerritJob job = startJob(project, change, branch, ref, revision);
+            if (job != null) {
+                supersede(job);
+            }
+        } finally {
+            unlockGate(locked);
+        }
+        sync();
+    }
+
+    /**
+     * Abort the jobs of an abandoned or merged change on the branch.
+     *
+     * @param change Change-Id
+     * @param number number of the change, 0 if not known
+     * @return number of discarded tasks
+     */
+    public int abortChange(String change, int number, String branch,
+            String reason) {
+        List<GerritJob> jobs = jobsByChange.get(change);
+        if (jobs == null) {
+            return 0;
+        }
+        int discarded = 0;
+        long locked = lockGate();
+        try {
+            for (GerritJob job : jobs) {
+                if (job.isAborted()
+                        || !job.getGerritBranch().equals(branch)
+                        || (number != 0 && job.getChangeNumber() != 0
+                                && number != job.getChangeNumber())) {
+                    continue;
+                }
+                int n = job.abort(reason, tbQueueMap);
+                log.debug("job {} aborted ({}): {} task(s) discarded",
+                        new Object[] { job.getId(), reason, n });
+                discarded += n;
+            }
+        } finally {
+            unlockGate(locked);
+        }
+        sync();
+        return discarded;
+    }
+
+    public List<BuildbotPlatformJob> findAbortedTasks(String box) {
+        List<BuildbotPlatformJob> tasks = Lists.newArrayList();
+        for (BuildbotPlatformJob task : tasksByTicket.values()) {
+            if (task.isAbortRequested() && !task.isReady()
+                    && box.equals(task.getTinderboxId())) {
+                tasks.add(task);
+            }
+        }
+        return tasks;
+    }
+
+    @Override
+    public void handleStaleJob(GerritJob job) {
+        long locked = lockGate();
+        try {
+            job.handleStale(tbQueueMap);
+        } finally {
+            unlockGate(locked);
+        }
+        sync();
+    }
+
+    public TbJobResult setResultPossible(String ticket, String boxId,
+            TaskStatus status, String logurl) {
+        TbJobResult jobResult = null;
+        if (log.isDebugEnabled()) {
+            log.debug("set result {}, {}, {}", new String[] { ticket,
+                    boxId, status.name() });
+        }
+        // the job may be finished (and removed from the list)
+        // as a side effect of reporting the last result, so
+        // look it up first instead of iterating the list
+        GerritJob job = findJobByTicket(ticket);
+        long locked = lockGate();
+        try {
+            if (job != null) {
+                jobResult = job.setResultPossible(ticket, boxId, logurl,
+                        status);
+            }
+            if (jobResult != null) {
+                if (status.isCancelled()) {
+                    // the task was replaced with a fresh one
+                    tasksByTicket.remove(ticket,
+                            jobResult.getTbPlatformJob());
+                }
+                Set<BuildbotPlatformJob> discardedTasks = jobResult
+                        .getDiscardedTasks();
+                for (BuildbotPlatformJob task : discardedTasks) {
+                    log.debug("remove discarded task: {} for {}", task
+                            .getParent().getId(), task.getPlatform().name());
+                    getQueue(task.getPlatform()).remove(task);
+                }
+            }
+        } finally {
+            unlockGate(locked);
+        }
+        sync();
+        if (log.isDebugEnabled()) {
+            // dump queues
+            for (Os p : Os.values()) {
+                TBBlockingQueue platformQueue = getQueue(p);
+                Set<String> emptyBranchSet = Collections.emptySet();
+                BuildbotPlatformJob tbJob = platformQueue
+                        .peek(emptyBranchSet);
+                if (tbJob != null) {
+                    log.debug("pending task: {}", tbJob.getPlatform()
+                            .name());
+                }
+            }
+        }
+        return jobResult;
+    }
+
+    public TbJobDescriptor launchTbJob(Os platform,
+            Set<String> branchSet, String box, boolean test) {
+        if (log.isDebugEnabled()) {
+            log.debug("{} task {}, {}", new String[] {
+                    test ? "peek" : "poll", platform.name(), box });
+        }
+        TBBlockingQueue platformQueue = getQueue(platform);
+        if (test) {
+            BuildbotPlatformJob tbJob = platformQueue.peek(branchSet);
+            if (tbJob == null) {
+                return null;
+            }
+            tbJob.testBuildOnly(platform);
+            return new TbJobDescriptor(tbJob);
+        }
+        statistics.seen(platform, box, clock.currentTimeMillis());
+        BuildbotPlatformJob claimed = null;
+        long locked = lockGate();
+        try {
+            while (claimed == null) {
+                BuildbotPlatformJob tbJob = platformQueue.poll(branchSet);
+                if (tbJob == null) {
+                    return null;
+                }
+                // the poll is atomic per platform queue, but the task can
+                // still be discarded before it is claimed: try the next one
+                String ticket = tbJob.createAndSetTicket(platform, box);
+                if (ticket != null) {
+                    tasksByTicket.put(ticket, tbJob);
+                    queueWait.get(platform).observe(tbJob.getStartTime()
+                            - tbJob.getQueuedTime());
+                    lease(tbJob);
+                    recordClaim(tbJob);
+                    claimed = tbJob;
+                }
+            }
+        } finally {
+            unlockGate(locked);
+        }
+        // the ticket must survive a restart before the box gets it
+        sync();
+        return new TbJobDescriptor(claimed);
+    }
+
+    @Override
+    public ListenableFuture<TbJobDescriptor> awaitTbJob(Os platform,
+            Set<String> branchSet, String box, boolean test, long wait) {
+        return new PendingGet(platform, branchSet, box, test).start(wait);
+    }
+
+    /**
+     * A get request waiting for a task. No thread is parked: new tasks of
+     * its branches wake it up, and it polls on the executor until it gets
+     * one or the wait is over.
+     */
+    private final class PendingGet implements Runnable {
+        private final SettableFuture<TbJobDescriptor> future = SettableFuture
+                .create();
+        private final Os platform;
+        private final Set<String> branchSet;
+        private final String box;
+        private final boolean test;
+        private final TBBlockingQueue queue;
+        // null if the request does not wait
+        private TBBlockingQueue.Waiter waiter;
+        private volatile ScheduledFuture<?> timeout;
+        private final Runnable poll = new Runnable() {
+            @Override
+            public void run() {
+                poll();
+            }
+        };
+
+        PendingGet(Os platform, Set<String> branchSet, String box,
+                boolean test) {
+            this.platform = platform;
+            this.branchSet = branchSet;
+            this.box = box;
+            this.test = test;
+            this.queue = getQueue(platform);
+        }
+
+        ListenableFuture<TbJobDescriptor> start(long wait) {
+            if (wait > 0) {
+                // registered before the first poll: a task added meanwhile
+                // leaves a wake up behind
+                waiter = queue.addWaiter(branchSet, this);
+                future.addListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        queue.removeWaiter(waiter);
+                        ScheduledFuture<?> t = timeout;
+                        if (t != null) {
+                            t.cancel(false);
+                        }
+                    }
+                }, MoreExecutors.sameThreadExecutor());
+                try {
+                    timeout = timer.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            // the request completes on the executor, the
+                            // timer is not held up by the caller
+                            dispatch(new Runnable() {
+                                @Override
+                                public void run() {
+                                    finish();
+                                }
+                            });
+                        }
+                    }, wait, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    // stopped
+                    future.set(null);
+                    return future;
+                }
+            }
+            if (!dispatch(poll)) {
+                future.set(null);
+            }
+            return future;
+        }
+
+        // a wake up of the waiter, called under the queue lock
+        @Override
+        public void run() {
+            dispatch(poll);
+        }
+
+        private boolean dispatch(Runnable r) {
+            try {
+                executor.execute(r);
+                return true;
+            } catch (RejectedExecutionException e) {
+                // stopped, the session goes with the plugin
+                log.debug("get request of {} dropped", box);
+                return false;
+            }
+        }
+
+        private synchronized void poll() {
+            if (future.isDone()) {
+                return;
+            }
+            if (waiter != null && !waiter.take()) {
+                // released on stop
+                future.set(null);
+                return;
+            }
+            TbJobDescriptor descriptor = launchTbJob(platform, branchSet, box,
+                    test);
+            if (descriptor == null && waiter != null) {
+                // wait for the next wake up or the timeout
+                return;
+            }
+            if (!future.set(descriptor) && descriptor != null && !test) {
+                // the request went away while the task was claimed
+                expire(descriptor.getBuildbotPlatformJob());
+            }
+        }
+
+        private synchronized void finish() {
+            future.set(null);
+        }
+    }
+
+    public int getGerritJobsCount() {
+        return gerritJobList.size();
+    }
+
+    public List<GerritJob> getGerritJobs() {
+        return gerritJobList;
+    }
+
+    @Override
+    public GerritJob findJobByRevision(String revision) {
+        return jobsByRevision.get(revision);
+    }
+
+    @Override
+    public GerritJob findJobById(String id) {
+        return jobsById.get(id);
+    }
+
+    @Override
+    public GerritJob findJobByChange(String change) {
+        List<GerritJob> jobs = jobsByChange.get(change);
+        if (jobs == null) {
+            return null;
+        }
+        Iterator<GerritJob> it = jobs.iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+
+    /** Called for each task put into a platform queue. */
+    public void taskQueued(BuildbotPlatformJob task, boolean first) {
+        record("N", task.getParent().getGerritRevision(),
+                task.getPlatformString(), first ? "1" : "0");
+        long idleTimeout = project.getIdleTimeout(task.getPlatform());
+        if (idleTimeout <= 0) {
+            return;
+        }
+        // most tasks are claimed long before: the timer must not keep
+        // them, and their jobs, alive until then
+        final WeakReference<BuildbotPlatformJob> ref =
+                new WeakReference<BuildbotPlatformJob>(task);
+        try {
+            timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    BuildbotPlatformJob t = ref.get();
+                    if (t != null && t.isDiscardable()) {
+                        timeout(t);
+                    }
+                }
+            }, idleTimeout, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // stopped
+        }
+    }
+
+    private void timeout(BuildbotPlatformJob task) {
+        GerritJob job = task.getParent();
+        TbJobResult result;
+        long locked = lockGate();
+        try {
+            result = job.timeout(task, tbQueueMap);
+        } finally {
+            unlockGate(locked);
+        }
+        if (result == null) {
+            return;
+        }
+        timedOutTasks.incrementAndGet();
+        log.info("no {} tinderbox claimed a task of job {} in time",
+                task.getPlatformString(), job.getId());
+        if (result.isJobFinished()) {
+            idleTimeoutListener.jobTimedOut(job);
+        }
+    }
+
+    @Override
+    public long getTimedOutTasks() {
+        return timedOutTasks.get();
+    }
+
+    private void lease(BuildbotPlatformJob task) {
+        long duration = config.getLease(task.getPlatform());
+        if (duration <= 0 || !task.renewLease(duration)) {
+            return;
+        }
+        checkLease(task, duration);
+    }
+
+    // one timer entry per engaged task: a renewal only moves the expiry,
+    // the check reschedules itself until the lease really ran out
+    private void checkLease(final BuildbotPlatformJob task, long delay) {
+        try {
+            timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    if (task.isReady()) {
+                        return;
+                    }
+                    long left = task.getLeaseExpiry()
+                            - clock.currentTimeMillis();
+                    if (left > 0) {
+                        checkLease(task, left);
+                    } else {
+                        expire(task);
+                    }
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // stopped
+        }
+    }
+
+    private void expire(BuildbotPlatformJob task) {
+        String ticket = task.getTicketString();
+        long locked = lockGate();
+        try {
+            // before the ticket goes: a late put must learn that it expired
+            expiredTickets.put(ticket, task.getTinderboxId());
+            if (task.getParent().expire(task, tbQueueMap) == null) {
+                expiredTickets.invalidate(ticket);
+                return;
+            }
+            tasksByTicket.remove(ticket, task);
+        } finally {
+            unlockGate(locked);
+        }
+        log.info("lease of ticket {} on {} expired, task requeued", ticket,
+                task.getTinderboxId());
+    }
+
+    @Override
+    public BuildbotPlatformJob renewLease(String ticket, String box) {
+        BuildbotPlatformJob task = tasksByTicket.get(ticket);
+        if (task == null || !box.equals(task.getTinderboxId())) {
+            return null;
+        }
+        long duration = config.getLease(task.getPlatform());
+        if (duration > 0 && !task.renewLease(duration)) {
+            return null;
+        }
+        return task;
+    }
+
+    @Override
+    public boolean isLeaseExpired(String ticket) {
+        return expiredTickets.getIfPresent(ticket) != null;
+    }
+
+    @Override
+    public BuildbotPlatformJob findTaskByTicket(String ticket) {
+        return tasksByTicket.get(ticket);
+    }
+
+    @Override
+    public GerritJob findJobByTicket(String ticket) {
+        BuildbotPlatformJob task = tasksByTicket.get(ticket);
+        return task == null ? null : task.getParent();
+    }
+
+    @Override
+    public Collection<BuildbotPlatformJob> getEngagedTasks() {
+        return tasksByTicket.values();
+    }
+
+    @Override
+    public BuildStatistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public QueueEstimate estimate() {
+        return statistics.estimate(tbQueueMap, tasksByTicket.values(),
+                clock.currentTimeMillis());
+    }
+
+    /** Called for each task on its transition to READY. */
+    public void taskClosed(BuildbotPlatformJob task) {
+        String ticket = task.getTicketString();
+        if (ticket != null) {
+            // no longer engaged, though the job may go on
+            tasksByTicket.remove(ticket, task);
+        }
+        if (!replaying) {
+            account(task);
+        }
+        if (journaling) {
+            journal.append(resultRecord(task));
+        }
+    }
+
+    private void account(BuildbotPlatformJob task) {
+        TbJobResult result = task.getResult();
+        if (history != null) {
+            // written by the writer thread of the store, not under our locks
+            history.append(HistoryEntry.of(task));
+        }
+        // neither an expired nor a cancelled task tells that its box is
+        // still alive
+        if (!task.isStarted() || !isBuild(result.getStatus())) {
+            return;
+        }
+        statistics.seen(task.getPlatform(), task.getTinderboxId(),
+                result.getEndTime());
+        buildTime.get(task.getPlatform()).observe(
+                result.getEndTime() - task.getStartTime());
+        statistics.record(task.getPlatform(), task.getParent()
+                .getGerritBranch(), task.getTinderboxId(),
+                result.getEndTime() - task.getStartTime());
+    }
+
+    /** Called for a task that is replaced with a fresh one. */
+    public void taskDetached(BuildbotPlatformJob task) {
+        record("D", task.getParent().getGerritRevision(),
+                task.getPlatformString());
+    }
+
+    /** Called when the job is superseded or its change went away. */
+    public void jobStale(GerritJob job) {
+        record("S", job.getGerritRevision(), job.getAbortReason());
+    }
+
+    public void taskAbortRequested(BuildbotPlatformJob task) {
+        record("X", task.getParent().getGerritRevision(),
+                task.getPlatformString(), task.getAbortReason());
+    }
+
+    private void recordClaim(BuildbotPlatformJob task) {
+        record("C", task.getParent().getGerritRevision(),
+                task.getPlatformString(), task.getTinderboxId(),
+                String.valueOf(task.getStartTime()),
+                String.valueOf(task.getTicket().getAttempt()));
+    }
+
+    private void record(String... fields) {
+        if (journaling) {
+            journal.append(fields);
+        }
+    }
+
+    private void sync() {
+        if (!journaling) {
+            return;
+        }
+        try {
+            journal.sync();
+        } catch (IOException e) {
+            log.error("journal of " + project.getName()
+                    + " failed, replacing it with a snapshot", e);
+            try {
+                compact(true);
+            } catch (IOException e2) {
+                // better no journal than one that restores a wrong state
+                log.error("cannot write the journal of " + project.getName()
+                        + ", journaling stopped", e2);
+                journaling = false;
+                journal.close();
+            }
+        }
+    }
+
+    private static String[] resultRecord(BuildbotPlatformJob task) {
+        TbJobResult result = task.getResult();
+        return new String[] { "R", task.getParent().getGerritRevision(),
+                task.getPlatformString(), task.isStarted() ? "1" : "0",
+                result.getStatus().name(), result.getTinderboxId(),
+                result.getLog() };
+    }
+
+    /**
+     * Rebuild jobs, queues and tickets from the journal. The records are
+     * applied through the same code paths as the live events, with
+     * journaling switched off.
+     */
+    private void replay(List<String[]> records) {
+        // task of a revision and platform by state
+        Map<String, BuildbotPlatformJob> pending = Maps.newHashMap();
+        Map<String, BuildbotPlatformJob> started = Maps.newHashMap();
+        for (String[] r : records) {
+            GerritJob job = jobsByRevision.get(r[1]);
+            if (r[0].equals("J")) {
+                if (job == null) {
+                    job = new GerritJob(this, project.getName(), r[2], r[3],
+                            r[4], r[1]);
+                    job.restoreStartTime(Long.parseLong(r[5]));
+                    gerritJobList.add(job);
+                    indexJob(job);
+                }
+                continue;
+            }
+            if (job == null) {
+                // finished meanwhile
+                log.debug("journal: no job for record {}", r[0]);
+                continue;
+            }
+            if (r[0].equals("S")) {
+                job.restoreStale(r[2]);
+                continue;
+            }
+            Os platform = Os.valueOf(r[2]);
+            String key = r[1] + "_" + r[2];
+            if (r[0].equals("N")) {
+                pending.put(key, job.restoreTask(platform, "1".equals(r[3])));
+            } else if (r[0].equals("C")) {
+                BuildbotPlatformJob task = pending.remove(key);
+                if (task == null) {
+                    continue;
+                }
+                getQueue(platform).remove(task);
+                // journals of older versions have no attempt
+                String ticket = task.restoreTicket(r[3], Long.parseLong(r[4]),
+                        r.length > 5 ? Integer.parseInt(r[5]) : 1);
+                if (ticket != null) {
+                    started.put(key, task);
+                    tasksByTicket.put(ticket, task);
+                    // the box gets a full lease to come back
+                    lease(task);
+                }
+            } else if (r[0].equals("X")) {
+                BuildbotPlatformJob task = started.get(key);
+                if (task != null) {
+                    task.requestAbort(r[3]);
+                }
+            } else if (r[0].equals("D")) {
+                BuildbotPlatformJob task = started.get(key);
+                if (task != null) {
+                    job.detach(task);
+                }
+            } else if (r[0].equals("R")) {
+                boolean claimed = "1".equals(r[3]);
+                BuildbotPlatformJob task = claimed ? started.remove(key)
+                        : pending.remove(key);
+                if (task != null) {
+                    restoreResult(task, TaskStatus.valueOf(r[4]), r[5], r[6]);
+                }
+            }
+        }
+    }
+
+    private void restoreResult(BuildbotPlatformJob task, TaskStatus status,
+            String box, String logurl) {
+        String ticket = task.getTicketString();
+        switch (status) {
+        case DISCARDED:
+            task.discard();
+            getQueue(task.getPlatform()).remove(task);
+            break;
+        case TIMEOUT:
+            task.timeout();
+            getQueue(task.getPlatform()).remove(task);
+            break;
+        case EXPIRED:
+            task.expire();
+            break;
+        default:
+            task.createResult(logurl, status, box,
+                    Collections.<BuildbotPlatformJob> emptySet());
+        }
+        if (ticket != null) {
+            tasksByTicket.remove(ticket, task);
+        }
+    }
+
+    /**
+     * Replace the journal with the records that rebuild the live state, if
+     * it grew enough since the last time or a write failed.
+     */
+    private void compact(boolean force) throws IOException {
+        long size = journal.records();
+        if (!force && !journal.isFailed()
+                && (size < COMPACT_THRESHOLD || size < 2 * snapshotSize)) {
+            return;
+        }
+        long t = System.nanoTime();
+        gate.writeLock().lock();
+        long locked = System.nanoTime();
+        gateWait.observe(locked - t);
+        try {
+            List<String[]> snapshot = snapshot();
+            journal.rewrite(snapshot);
+            snapshotSize = snapshot.size();
+        } finally {
+            gate.writeLock().unlock();
+            gateHold.observe(System.nanoTime() - locked);
+        }
+        log.debug("journal of {} compacted from {} to {} records",
+                new Object[] { project.getName(), size, snapshotSize });
+    }
+
+    // jobs, then the tasks, then the results: a job must not finish
+    // before all of its tasks are back
+    private List<String[]> snapshot() {
+        List<String[]> records = Lists.newArrayList();
+        List<String[]> results = Lists.newArrayList();
+        for (GerritJob job : gerritJobList) {
+            String rev = job.getGerritRevision();
+            records.add(new String[] { "J", rev, job.getGerritChange(),
+                    job.getGerritBranch(), job.getGerritRef(),
+                    String.valueOf(job.getStartTime()) });
+            if (job.isStale()) {
+                records.add(new String[] { "S", rev, job.getAbortReason() });
+            }
+            List<BuildbotPlatformJob> tasks;
+            synchronized (job.getBuildbotList()) {
+                tasks = Lists.newArrayList(job.getBuildbotList());
+            }
+            for (BuildbotPlatformJob task : tasks) {
+                if (task.isDiscardable()) {
+                    // queued below, in queue order
+                    continue;
+                }
+                String platform = task.getPlatformString();
+                records.add(new String[] { "N", rev, platform, "0" });
+                if (task.isStarted()) {
+                    records.add(new String[] { "C", rev, platform,
+                            task.getTinderboxId(),
+                            String.valueOf(task.getStartTime()),
+                            String.valueOf(task.getTicket().getAttempt()) });
+                    if (task.isAbortRequested()) {
+                        records.add(new String[] { "X", rev, platform,
+                                task.getAbortReason() });
+                    }
+                }
+                if (task.getResult() != null) {
+                    results.add(resultRecord(task));
+                }
+            }
+        }
+        for (Os p : Os.values()) {
+            for (BuildbotPlatformJob task : getQueue(p).snapshot()) {
+                records.add(new String[] { "N",
+                        task.getParent().getGerritRevision(), p.name(), "0" });
+            }
+        }
+        records.addAll(results);
+        return records;
+    }
+
+    public Map<Os, TBBlockingQueue> getTbQueueMap() {
+        return tbQueueMap;
+    }
+
+    public Clock getClock() {
+        return clock;
+    }
+}
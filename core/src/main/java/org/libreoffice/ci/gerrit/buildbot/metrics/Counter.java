@@ -0,0 +1,32 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Monotonic counter. */
+public class Counter {
+    private final AtomicLong value = new AtomicLong();
+
+    Counter() {
+    }
+
+    public void inc() {
+        value.incrementAndGet();
+    }
+
+    public void add(long n) {
+        value.addAndGet(n);
+    }
+
+    public long get() {
+        return value.get();
+    }
+}
@@ -0,0 +1,77 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Distribution over fixed buckets. Recording is a bucket search and three
+ * atomic increments, nothing is allocated or locked.
+ */
+public class Histogram {
+    /** Bounds in ns for lock waits and holds, 1 us to 1 s. */
+    public static final long[] LOCK = { 1000, 10000, 100000, 1000000,
+            10000000, 100000000, 1000000000 };
+    /** Bounds in ns for command latencies, 100 us to 1 min. */
+    public static final long[] LATENCY = { 100000, 1000000, 5000000,
+            10000000, 50000000, 100000000, 500000000, 1000000000L,
+            5000000000L, 10000000000L, 60000000000L };
+    /** Bounds in ms for the lag of queued events and reviews, 10 ms to 5 min. */
+    public static final long[] LAG = { 10, 50, 100, 500, 1000, 5000, 10000,
+            30000, 60000, 300000 };
+    /** Bounds in ms for queue waits and build times, 1 s to 1 day. */
+    public static final long[] BUILD = { 1000, 10000, 60000, 300000,
+            900000, 1800000, 3600000, 7200000, 14400000, 28800000, 86400000 };
+
+    /** Recorded units per second. */
+    public static final long NANOS = 1000000000L;
+    public static final long MILLIS = 1000L;
+
+    final long[] bounds;
+    final long unit;
+    // the last bucket takes everything above the last bound
+    private final AtomicLongArray buckets;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+
+    Histogram(long[] bounds, long unit) {
+        this.bounds = bounds;
+        this.unit = unit;
+        this.buckets = new AtomicLongArray(bounds.length + 1);
+    }
+
+    public void observe(long value) {
+        int i = 0;
+        while (i < bounds.length && value > bounds[i]) {
+            i++;
+        }
+        buckets.incrementAndGet(i);
+        sum.addAndGet(value);
+        count.incrementAndGet();
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /** @return observations up to and including the bound of the bucket */
+    long getCumulative(int bucket) {
+        long n = 0;
+        for (int i = 0; i <= bucket; i++) {
+            n += buckets.get(i);
+        }
+        return n;
+    }
+
+    long getSum() {
+        return sum.get();
+    }
+}
@@ -0,0 +1,203 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Registry of the plugin metrics, written in the Prometheus text format.
+ * A counter or histogram is looked up by name and labels without locking,
+ * recording to it does not touch the registry at all.
+ */
+public class Metrics {
+    private enum Type {
+        counter, gauge, histogram
+    }
+
+    // name -> family, in registration order
+    private final Map<String, Family> families = Maps.newLinkedHashMap();
+    // name and labels -> counter or histogram
+    private final ConcurrentMap<String, Object> index =
+            new ConcurrentHashMap<String, Object>();
+
+    /**
+     * @param labels pairs of label name and value
+     * @return the counter with the name and labels, created on first use
+     */
+    public Counter counter(String name, String help, String... labels) {
+        Counter c = (Counter) index.get(name + labels(labels));
+        if (c == null) {
+            c = (Counter) put(name, help, Type.counter, labels, new Counter());
+        }
+        return c;
+    }
+
+    /**
+     * @param bounds upper bounds of the buckets, in the recorded unit
+     * @param unit recorded units per second
+     */
+    public Histogram histogram(String name, String help, long[] bounds,
+            long unit, String... labels) {
+        Histogram h = (Histogram) index.get(name + labels(labels));
+        if (h == null) {
+            h = (Histogram) put(name, help, Type.histogram, labels,
+                    new Histogram(bounds, unit));
+        }
+        return h;
+    }
+
+    /** Register the gauge, replacing the one with the same labels. */
+    public void gauge(String name, String help, Gauge gauge,
+            String... labels) {
+        synchronized (families) {
+            family(name, help, Type.gauge).metrics.put(labels(labels), gauge);
+        }
+    }
+
+    private Object put(String name, String help, Type type, String[] labels,
+            Object metric) {
+        synchronized (families) {
+            Map<String, Object> metrics = family(name, help, type).metrics;
+            String key = labels(labels);
+            Object m = metrics.get(key);
+            if (m == null) {
+                metrics.put(key, metric);
+                index.put(name + key, metric);
+                m = metric;
+            }
+            return m;
+        }
+    }
+
+    // caller holds the monitor
+    private Family family(String name, String help, Type type) {
+        Family f = families.get(name);
+        if (f == null) {
+            f = new Family(help, type);
+            families.put(name, f);
+        } else if (f.type != type) {
+            throw new IllegalArgumentException(name + " is a " + f.type);
+        }
+        return f;
+    }
+
+    public void write(Writer out) throws IOException {
+        List<Map.Entry<String, Family>> snapshot;
+        synchronized (families) {
+            snapshot = Lists.newArrayList();
+            for (Map.Entry<String, Family> e : families.entrySet()) {
+                snapshot.add(Maps.immutableEntry(e.getKey(), new Family(
+                        e.getValue())));
+            }
+        }
+        StringBuilder b = new StringBuilder(4096);
+        for (Map.Entry<String, Family> e : snapshot) {
+            String name = e.getKey();
+            Family f = e.getValue();
+            b.append("# HELP ").append(name).append(' ').append(f.help)
+                    .append('\n');
+            b.append("# TYPE ").append(name).append(' ').append(f.type)
+                    .append('\n');
+            for (Map.Entry<String, Object> m : f.metrics.entrySet()) {
+                String labels = m.getKey();
+                switch (f.type) {
+                case counter:
+                    sample(b, name, labels, ((Counter) m.getValue()).get());
+                    break;
+                case gauge:
+                    sample(b, name, labels, ((Gauge) m.getValue()).get());
+                    break;
+                case histogram:
+                    histogram(b, name, labels, (Histogram) m.getValue());
+                    break;
+                }
+            }
+        }
+        out.write(b.toString());
+    }
+
+    private static void histogram(StringBuilder b, String name,
+            String labels, Histogram h) {
+        String sep = labels.isEmpty() ? "{" : labels.substring(0,
+                labels.length() - 1) + ",";
+        for (int i = 0; i < h.bounds.length; i++) {
+            b.append(name).append("_bucket").append(sep).append("le=\"")
+                    .append((double) h.bounds[i] / h.unit).append("\"} ")
+                    .append(h.getCumulative(i)).append('\n');
+        }
+        // consistent with the buckets, even while recording goes on
+        long count = h.getCumulative(h.bounds.length);
+        b.append(name).append("_bucket").append(sep).append("le=\"+Inf\"} ")
+                .append(count).append('\n');
+        b.append(name).append("_sum").append(labels).append(' ')
+                .append((double) h.getSum() / h.unit).append('\n');
+        b.append(name).append("_count").append(labels).append(' ')
+                .append(count).append('\n');
+    }
+
+    private static void sample(StringBuilder b, String name, String labels,
+            long value) {
+        b.append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+    // {a="1",b="2"}, empty if there are none
+    private static String labels(String[] labels) {
+        if (labels.length == 0) {
+            return "";
+        }
+        StringBuilder b = new StringBuilder("{");
+        for (int i = 0; i + 1 < labels.length; i += 2) {
+            if (i > 0) {
+                b.append(',');
+            }
+            b.append(labels[i]).append("=\"");
+            String v = labels[i + 1] == null ? "" : labels[i + 1];
+            for (int j = 0; j < v.length(); j++) {
+                char c = v.charAt(j);
+                if (c == '\\' || c == '"') {
+                    b.append('\\').append(c);
+                } else if (c == '\n') {
+                    b.append("\\n");
+                } else {
+                    b.append(c);
+                }
+            }
+            b.append('"');
+        }
+        return b.append('}').toString();
+    }
+
+    private static final class Family {
+        final String help;
+        final Type type;
+        // labels -> metric, in registration order
+        final Map<String, Object> metrics;
+
+        Family(String help, Type type) {
+            this.help = help;
+            this.type = type;
+            this.metrics = Maps.newLinkedHashMap();
+        }
+
+        Family(Family f) {
+            this.help = f.help;
+            this.type = f.type;
+            this.metrics = Maps.newLinkedHashMap(f.metrics);
+        }
+    }
+}
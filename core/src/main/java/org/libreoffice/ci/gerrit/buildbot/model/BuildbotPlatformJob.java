@@ -0,0 +1,266 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.model;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.lang.StringUtils;
+import org.libreoffice.ci.gerrit.buildbot.commands.TaskStatus;
+
+/**
+ * Platform specific build task of a {@link GerritJob}. A task is a plain
+ * state machine: INIT -> STARTED (ticket handed out) -> READY (result
+ * reported or discarded). No thread is attached to it; interested parties
+ * register a {@link TaskCompletionListener} that is fired on the transition
+ * to READY.
+ */
+public class BuildbotPlatformJob {
+	Ticket ticket;
+	AtomicBoolean started;
+	AtomicBoolean ready;
+	GerritJob parent;
+	Os platform;
+	TbJobResult result;
+	long startTime;
+	// put into the platform queue
+	private final long queuedTime;
+	// TB id
+	private String box;
+	// set when the change went away while the task was running
+	private volatile String abortReason;
+	// 0: no lease
+	private volatile long leaseExpiry;
+	private final List<TaskCompletionListener> listeners =
+			new CopyOnWriteArrayList<TaskCompletionListener>();
+
+	public BuildbotPlatformJob(GerritJob parent, Os platform) {
+		this.platform = platform;
+		started = new AtomicBoolean();
+		ready = new AtomicBoolean();
+		this.parent = parent;
+		queuedTime = parent.getClock().currentTimeMillis();
+	}
+
+	@Override
+	public String toString() {
+		return "BuildbotPlatformJob " + parent.getGerritBranch() + " "
+				+ parent.getId() + " " + platform.name();
+	}
+
+	public String testBuildOnly(Os tbPlatform) {
+	    ticket = new Ticket(parent.getId(), tbPlatform, now());
+	    return ticket.toString();
+	}
+
+	/**
+	 * Claim the task for a tinderbox.
+	 *
+	 * @return the ticket, or null if the task was discarded meanwhile
+	 */
+	public synchronized String createAndSetTicket(Os tbPlatform, String box) {
+		if (started.get() || result != null) {
+			return null;
+		}
+		return claim(tbPlatform, box, parent.nextAttempt(platform), now());
+	}
+
+	/**
+	 * Claim the task again for the tinderbox that held it before a
+	 * restart. The ticket string does not change.
+	 */
+	public synchronized String restoreTicket(String box, long startTime,
+			int attempt) {
+		if (started.get() || result != null) {
+			return null;
+		}
+		parent.restoreAttempt(platform, attempt);
+		return claim(platform, box, attempt, startTime);
+	}
+
+	private String claim(Os tbPlatform, String box, int attempt, long startTime) {
+		this.startTime = startTime;
+		ticket = new Ticket(parent.getId(), tbPlatform, attempt, startTime);
+		this.box = box;
+		started.set(true);
+		return ticket.toString();
+	}
+
+	public TbJobResult createResult(String log, TaskStatus status, String boxId, Set<BuildbotPlatformJob> discardedTasks) {
+		synchronized (this) {
+			result = new TbJobResult(this, ticket.getId(), platform, status, log, boxId, discardedTasks, now());
+		}
+		complete();
+		return result;
+	}
+
+	/**
+	 * Discard the task if it is still pending.
+	 *
+	 * @return the DISCARDED result, or null if a tinderbox claimed the
+	 *         task first
+	 */
+	public TbJobResult discard() {
+		return close(TaskStatus.DISCARDED);
+	}
+
+	/**
+	 * Give up the task if no tinderbox claimed it in time.
+	 *
+	 * @return the TIMEOUT result, or null if a tinderbox claimed the
+	 *         task first
+	 */
+	public TbJobResult timeout() {
+		return close(TaskStatus.TIMEOUT);
+	}
+
+	private TbJobResult close(TaskStatus status) {
+		synchronized (this) {
+			if (!isDiscardable()) {
+				return null;
+			}
+			result = new TbJobResult(this, StringUtils.EMPTY, platform, status, null, null, null, now());
+		}
+		complete();
+		return result;
+	}
+
+	/**
+	 * Extend the lease of the running task.
+	 *
+	 * @return false if the task is not running
+	 */
+	public boolean renewLease(long duration) {
+		synchronized (this) {
+			if (!isStarted() || result != null) {
+				return false;
+			}
+			leaseExpiry = now() + duration;
+			return true;
+		}
+	}
+
+	public long getLeaseExpiry() {
+		return leaseExpiry;
+	}
+
+	/**
+	 * Give up the task of a tinderbox that stopped renewing its lease.
+	 *
+	 * @return the EXPIRED result, or null if a result was reported first
+	 */
+	public TbJobResult expire() {
+		synchronized (this) {
+			if (!isStarted() || result != null) {
+				return null;
+			}
+			result = new TbJobResult(this, ticket.getId(), platform, TaskStatus.EXPIRED, null, box, null, now());
+		}
+		complete();
+		return result;
+	}
+
+	private void complete() {
+		if (!ready.compareAndSet(false, true)) {
+			return;
+		}
+		for (TaskCompletionListener listener : listeners) {
+			listener.taskCompleted(this);
+		}
+	}
+
+	/**
+	 * Ask the tinderbox building this task to stop early. The flag is
+	 * reported back on the next request of the box.
+	 *
+	 * @return false if the task is not running
+	 */
+	public boolean requestAbort(String reason) {
+		synchronized (this) {
+			if (!isStarted() || result != null) {
+				return false;
+			}
+			// keep the first reason
+			if (abortReason == null) {
+				abortReason = reason;
+			}
+			return true;
+		}
+	}
+
+	public boolean isAbortRequested() {
+		return abortReason != null;
+	}
+
+	public String getAbortReason() {
+		return abortReason;
+	}
+
+	public void addCompletionListener(TaskCompletionListener listener) {
+		listeners.add(listener);
+	}
+
+	public GerritJob getParent() {
+		return parent;
+	}
+
+	public boolean isReady() {
+		return ready.get();
+	}
+
+	public String getTicketString() {
+		if (ticket == null) {
+			return null;
+		}
+		return ticket.toString();
+	}
+
+	public TbJobResult getResult() {
+		return result;
+	}
+
+	public boolean isDiscardable() {
+		return !isStarted() && result == null;
+	}
+	
+	public boolean isStarted() {
+		return started.get();
+	}
+	
+	public Ticket getTicket() {
+		return ticket;
+	}
+
+	public String getPlatformString() {
+		return platform.name();
+	}
+	
+	public long getStartTime() {
+		return startTime;
+	}
+
+	public long getQueuedTime() {
+		return queuedTime;
+	}
+	
+	public Os getPlatform() {
+		return platform;
+	}
+
+	public String getTinderboxId() {
+		return box;
+	}
+
+	private long now() {
+		return parent.getClock().currentTimeMillis();
+	}
+}
@@ -0,0 +1,429 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.libreoffice.ci.gerrit.buildbot.commands.TaskStatus;
+import org.libreoffice.ci.gerrit.buildbot.logic.impl.ProjectControlImpl;
+
+import com.google.common.collect.Sets;
+
+public class GerritJob implements TaskCompletionListener {
+    private static final String REFS_CHANGES = "refs/changes/";
+
+    String gerritProject;
+    String gerritChange;
+    String gerritBranch;
+    String gerritRef;
+    String gerritRevision;
+    // 0 if the ref is not a change ref
+    int changeNumber;
+    int patchSetNumber;
+    String id;
+    long startTime;
+    private final AtomicBoolean finished = new AtomicBoolean();
+    // claims per platform, numbers the tickets
+    private final Map<Os, AtomicInteger> attempts = new EnumMap<Os, AtomicInteger>(
+            Os.class);
+
+    final List<BuildbotPlatformJob> tinderBoxThreadList = Collections
+            .synchronizedList(new ArrayList<BuildbotPlatformJob>());
+    List<TbJobResult> tbResultList;
+    ProjectControlImpl control;
+    // written under the job lock, read without it
+    private volatile boolean stale;
+    private volatile String abortReason;
+
+    public GerritJob(ProjectControlImpl control, String project, String change,
+            String gerritBranch, String gerritRef, String gerritRevision) {
+        this.control = control;
+        this.gerritProject = project;
+        this.gerritChange = change;
+        this.gerritBranch = gerritBranch;
+        this.gerritRef = gerritRef;
+        this.gerritRevision = gerritRevision;
+        parseRef(gerritRef);
+        this.id = abbreviate(gerritRevision);
+        this.startTime = control.getClock().currentTimeMillis();
+        for (Os platform : Os.values()) {
+            attempts.put(platform, new AtomicInteger());
+        }
+    }
+
+    // refs/changes/<last two digits>/<change>/<patch set>
+    private void parseRef(String ref) {
+        if (ref == null || !ref.startsWith(REFS_CHANGES)) {
+            return;
+        }
+        String[] parts = ref.substring(REFS_CHANGES.length()).split("/");
+        if (parts.length != 3) {
+            return;
+        }
+        try {
+            int change = Integer.parseInt(parts[1]);
+            int patchSet = Integer.parseInt(parts[2]);
+            if (change > 0 && patchSet > 0) {
+                changeNumber = change;
+                patchSetNumber = patchSet;
+            }
+        } catch (NumberFormatException e) {
+            // not a change ref
+        }
+    }
+
+    /** Obtain a shorter version of this key string, using a leading prefix. */
+    public String abbreviate(String s) {
+        return s.substring(0, Math.min(s.length(), 9));
+    }
+
+    public Clock getClock() {
+        return control.getClock();
+    }
+
+    public String getGerritChange() {
+        return gerritChange;
+    }
+
+    /** @return number of the change, 0 if the ref is not a change ref */
+    public int getChangeNumber() {
+        return changeNumber;
+    }
+
+    /** @return number of the patch set, 0 if the ref is not a change ref */
+    public int getPatchSetNumber() {
+        return patchSetNumber;
+    }
+
+    public String getGerritBranch() {
+        return gerritBranch;
+    }
+
+    public boolean allJobsReady() {
+        synchronized (tinderBoxThreadList) {
+            for (BuildbotPlatformJob tbJob : tinderBoxThreadList) {
+                if (!tbJob.isReady()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Called by each task on its transition to READY. The job is finished
+     * (and removed from the project) by the last task that completes;
+     * a cancelled task is detached from the list before it completes,
+     * so its replacement keeps the job alive.
+     */
+    @Override
+    public void taskCompleted(BuildbotPlatformJob task) {
+        control.taskClosed(task);
+        synchronized (tinderBoxThreadList) {
+            if (!tinderBoxThreadList.contains(task) || !allJobsReady()) {
+                return;
+            }
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            createTBResultList();
+        }
+        control.finishGerritJob(this);
+    }
+
+    public boolean isFinished() {
+        return finished.get();
+    }
+
+    void createTBResultList() {
+        tbResultList = new ArrayList<TbJobResult>();
+        // GET AND REGISTER RESULTS
+        for (BuildbotPlatformJob tbJob : tinderBoxThreadList) {
+            tbResultList.add(tbJob.getResult());
+        }
+    }
+
+    public void poulateTBPlatformQueueMap(
+            Map<Os, TBBlockingQueue> tbQueueMap) {
+        for (int i = 0; i < Os.values().length; i++) {
+            Os platform = Os.values()[i];
+            initPlatformJob(tbQueueMap, platform, false);
+        }
+    }
+
+    private BuildbotPlatformJob initPlatformJob(
+            Map<Os, TBBlockingQueue> tbQueueMap, Os platform, boolean first) {
+        synchronized (tinderBoxThreadList) {
+            BuildbotPlatformJob tbJob = new BuildbotPlatformJob(this, platform);
+            tbJob.addCompletionListener(this);
+            tinderBoxThreadList.add(tbJob);
+            if (first) {
+                tbQueueMap.get(platform).addFirst(tbJob);
+            } else {
+                tbQueueMap.get(platform).add(tbJob);
+            }
+            control.taskQueued(tbJob, first);
+            return tbJob;
+        }
+    }
+
+    /** Recreate a task from the journal, see {@link #initPlatformJob}. */
+    public BuildbotPlatformJob restoreTask(Os platform, boolean first) {
+        return initPlatformJob(control.getTbQueueMap(), platform, first);
+    }
+
+    /** Recreate the flags of the job from the journal. */
+    public void restoreStale(String abortReason) {
+        setStale(true);
+        this.abortReason = abortReason;
+    }
+
+    /** @return number of the next claim of a task of the platform */
+    public int nextAttempt(Os platform) {
+        return attempts.get(platform).incrementAndGet();
+    }
+
+    /** Recreate the claim count from the journal, see {@link #nextAttempt}. */
+    public void restoreAttempt(Os platform, int attempt) {
+        AtomicInteger count = attempts.get(platform);
+        int n;
+        while (attempt > (n = count.get()) && !count.compareAndSet(n, attempt)) {
+            // another claim counted meanwhile, compare with its number
+        }
+    }
+
+    public void restoreStartTime(long startTime) {
+        this.startTime = startTime;
+    }
+
+    /**
+     * Drop a task that is replaced with a fresh one from the list, its
+     * completion does not count for the job any more.
+     */
+    public void detach(BuildbotPlatformJob task) {
+        synchronized (tinderBoxThreadList) {
+            if (tinderBoxThreadList.remove(task)) {
+                control.taskDetached(task);
+            }
+        }
+    }
+
+    /**
+     * No tinderbox claimed the task in time: drop it from its queue. The
+     * job goes on with the other platforms.
+     *
+     * @return the TIMEOUT result, or null if the task was claimed first
+     */
+    public TbJobResult timeout(BuildbotPlatformJob task,
+            Map<Os, TBBlockingQueue> tbQueueMap) {
+        synchronized (tinderBoxThreadList) {
+            if (!tinderBoxThreadList.contains(task)) {
+                return null;
+            }
+            TbJobResult result = task.timeout();
+            if (result == null) {
+                return null;
+            }
+            tbQueueMap.get(task.getPlatform()).remove(task);
+            result.setJobFinished(isFinished());
+            return result;
+        }
+    }
+
+    /**
+     * The lease of a running task expired: replace it with a fresh task at
+     * the head of the platform queue, it has waited long enough already.
+     * A stale job is not built again, the task just ends as EXPIRED.
+     *
+     * @return the EXPIRED result, or null if a result was reported first
+     */
+    public TbJobResult expire(BuildbotPlatformJob task,
+            Map<Os, TBBlockingQueue> tbQueueMap) {
+        synchronized (tinderBoxThreadList) {
+            if (!tinderBoxThreadList.contains(task) || task.isReady()) {
+                return null;
+            }
+            if (isStale()) {
+                return task.expire();
+            }
+            // results are only reported under the job lock, so the
+            // task is still running
+            detach(task);
+            initPlatformJob(tbQueueMap, task.platform, true);
+            return task.expire();
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public BuildbotPlatformJob getTbJob(String ticket) {
+        synchronized (tinderBoxThreadList) {
+            for (BuildbotPlatformJob job : tinderBoxThreadList) {
+                if (!job.isStarted()) {
+                    continue;
+                }
+
+                if (job.getTicketString() != null
+                        && job.getTicketString().equals(ticket)) {
+                    return job;
+                }
+            }
+            return null;
+        }
+    }
+
+    public TbJobResult setResultPossible(String ticket, String boxId,
+            String log, TaskStatus status) {
+        synchronized (tinderBoxThreadList) {
+            // looked up under the job lock: expire, cancel and restart
+            // replace tasks in the list
+            BuildbotPlatformJob task = getTbJob(ticket);
+            if (task == null || task.getResult() != null) {
+                return null;
+            }
+
+            if (!task.getTinderboxId().equals(boxId)) {
+                // tinderbox doesn't match, ignore
+                return null;
+            }
+
+            Set<BuildbotPlatformJob> discardedTasks = Sets.newHashSet();
+            // Before we report a status back, check different
+            // strategies/optimisations
+            // 1. if status is failed, then discard all pending tasks.
+            if (status.isFailed()) {
+                for (BuildbotPlatformJob task2 : tinderBoxThreadList) {
+                    if (task2.getTicketString() != null
+                            && task2.getTicketString().equals(ticket)) {
+                        // skip the same task
+                        continue;
+                    }
+                    // discard pending tasks, running ones are not worth
+                    // finishing either
+                    if (task2.discard() != null) {
+                        discardedTasks.add(task2);
+                    } else if (task2.requestAbort(String.format(
+                            "build failed on %s", task.getPlatformString()))) {
+                        control.taskAbortRequested(task2);
+                    }
+                }
+            }
+            // 2. if status is canceled, the reschedule a new task for the same
+            // platform
+            // reuse the same id and drop the old task from the list (replace
+            // it)
+            // Important to synchronie the block, so that the job is not ready.
+            // no point in building an abandoned or merged change again
+            if (status.isCancelled() && !isAborted()) {
+                detach(task);
+                initPlatformJob(control.getTbQueueMap(), task.platform, false);
+            }
+            TbJobResult jobResult = task.createResult(log, status, boxId,
+                    discardedTasks);
+            // only one result can complete the job, the job lock
+            // serialises the results of the same job
+            jobResult.setJobFinished(isFinished());
+            return jobResult;
+        }
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public List<BuildbotPlatformJob> getBuildbotList() {
+        return tinderBoxThreadList;
+    }
+
+    public String getGerritRef() {
+        return gerritRef;
+    }
+
+    public List<TbJobResult> getTbResultList() {
+        return tbResultList;
+    }
+
+    public String getGerritRevision() {
+        return gerritRevision;
+    }
+
+    /**
+     * If a new patch for a change is 'submitted' while the verification tinbuild are pending then
+     * If no tasks for the job are running, then the whole job is dropped
+     * already running tinderboxes are asked to abort, if they finish anyway
+     * the result is still reported in the 'review' comment as usual
+     * any platform that is not started yet is 'discarded' for that patch.
+     * IOW the tasks that are not started yet are de-queued by 'Submit'.
+     *
+     * @return number of discarded tasks
+     **/
+    public int handleStale(Map<Os, TBBlockingQueue> tbQueueMap) {
+        return purge("superseded by a newer patch set", tbQueueMap);
+    }
+
+    /**
+     * The change was abandoned or merged: discard the pending tasks and
+     * flag the running ones, so that their tinderboxes can stop early.
+     * Nothing is reported back to the change any more.
+     *
+     * @return number of discarded tasks
+     */
+    public int abort(String reason, Map<Os, TBBlockingQueue> tbQueueMap) {
+        abortReason = reason;
+        return purge(reason, tbQueueMap);
+    }
+
+    // discard pending tasks, ask running ones to abort
+    private int purge(String reason, Map<Os, TBBlockingQueue> tbQueueMap) {
+        this.setStale(true);
+        control.jobStale(this);
+        int discarded = 0;
+        synchronized (tinderBoxThreadList) {
+            for (BuildbotPlatformJob task : tinderBoxThreadList) {
+                if (task.discard() != null) {
+                    tbQueueMap.get(task.getPlatform()).remove(task);
+                    discarded++;
+                } else if (task.requestAbort(reason)) {
+                    control.taskAbortRequested(task);
+                }
+            }
+        }
+        return discarded;
+    }
+
+    public boolean isAborted() {
+        return abortReason != null;
+    }
+
+    public String getAbortReason() {
+        return abortReason;
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+
+    private void setStale(boolean stale) {
+        this.stale = stale;
+    }
+
+    public String getGerritProject() {
+      return gerritProject;
+  }
+}
@@ -0,0 +1,348 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.model;
+
+import java.io.PrintWriter;
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.libreoffice.ci.gerrit.buildbot.stats.QueueEstimate;
+import org.libreoffice.ci.gerrit.buildbot.utils.QueueUtils;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Platform queue. Every task is linked into two FIFO lists at once: the
+ * global arrival order and the lane of its branch. A branch filtered
+ * poll only looks at the heads of the requested lanes, and removal of an
+ * arbitrary task unlinks it from both lists in constant time.
+ * <p>
+ * Long polling tinderboxes register a {@link Waiter}. A new task wakes
+ * the oldest waiter interested in its branch, so waiters are served in
+ * arrival order. No thread is parked for a waiter, a wake up runs its
+ * listener.
+ */
+public class TBBlockingQueue implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    Os platform;
+
+    private final Object lock = new Object();
+    private final Lane all = new Lane();
+    private final Map<String, Lane> lanes = Maps.newHashMap();
+    private final Map<BuildbotPlatformJob, Node> nodes = Maps.newHashMap();
+    private final List<Waiter> waiters = Lists.newLinkedList();
+    private long seq;
+    // decreasing, for tasks queued at the head
+    private long headSeq;
+
+    public TBBlockingQueue(Os platform) {
+        this.platform = platform;
+    }
+
+    public void add(BuildbotPlatformJob tbJob) {
+        synchronized (lock) {
+            if (nodes.containsKey(tbJob)) {
+                return;
+            }
+            Node node = new Node(tbJob, seq++);
+            nodes.put(tbJob, node);
+            all.linkLast(node, true);
+            lane(tbJob).linkLast(node, false);
+            signal(tbJob.getParent().getGerritBranch());
+        }
+    }
+
+    /** Queue a task ahead of all others, e.g. a task that is retried. */
+    public void addFirst(BuildbotPlatformJob tbJob) {
+        synchronized (lock) {
+            if (nodes.containsKey(tbJob)) {
+                return;
+            }
+            Node node = new Node(tbJob, --headSeq);
+            nodes.put(tbJob, node);
+            all.linkFirst(node, true);
+            lane(tbJob).linkFirst(node, false);
+            signal(tbJob.getParent().getGerritBranch());
+        }
+    }
+
+    /**
+     * @param listener run on a wake up while the queue lock is held, it
+     *        must only hand the poll on, e.g. to an executor
+     */
+    public Waiter addWaiter(Set<String> branchSet, Runnable listener) {
+        Waiter waiter = new Waiter(branchSet, listener);
+        synchronized (lock) {
+            waiters.add(waiter);
+        }
+        return waiter;
+    }
+
+    public void removeWaiter(Waiter waiter) {
+        synchronized (lock) {
+            waiters.remove(waiter);
+            // the leaving waiter may have swallowed a wake up: hand it on
+            // to the next waiter that would find a task
+            for (Waiter w : waiters) {
+                if (first(w.branchSet) != null && w.signal()) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /** Wake up all waiters for good, e.g. on plugin shutdown. */
+    public void releaseWaiters() {
+        synchronized (lock) {
+            for (Iterator<Waiter> it = waiters.iterator(); it.hasNext();) {
+                it.next().release();
+                it.remove();
+            }
+        }
+    }
+
+    public BuildbotPlatformJob poll(Set<String> branchSet) {
+        synchronized (lock) {
+            Node node = first(branchSet);
+            if (node == null) {
+                return null;
+            }
+            unlink(node);
+            return node.task;
+        }
+    }
+
+    public BuildbotPlatformJob peek(Set<String> branchSet) {
+        synchronized (lock) {
+            Node node = first(branchSet);
+            return node == null ? null : node.task;
+        }
+    }
+
+    public boolean remove(BuildbotPlatformJob job) {
+        synchronized (lock) {
+            Node node = nodes.get(job);
+            if (node == null) {
+                return false;
+            }
+            unlink(node);
+            return true;
+        }
+    }
+
+    public boolean isEmpty() {
+        synchronized (lock) {
+            return nodes.isEmpty();
+        }
+    }
+
+    public int size() {
+        synchronized (lock) {
+            return nodes.size();
+        }
+    }
+
+    public int dumpTasks(PrintWriter stdout, QueueEstimate estimate) {
+        int pendingTasks = 0;
+        synchronized (lock) {
+            if (nodes.isEmpty()) {
+                stdout.print("empty\n");
+                return pendingTasks;
+            }
+            pendingTasks = QueueUtils.dumpTasks(stdout, pendingTasks,
+                    snapshot(), estimate);
+        }
+        return pendingTasks;
+    }
+
+    /** Tasks in arrival order. */
+    public List<BuildbotPlatformJob> snapshot() {
+        synchronized (lock) {
+            List<BuildbotPlatformJob> list = Lists
+                    .newArrayListWithCapacity(nodes.size());
+            for (Node n = all.head; n != null; n = n.nextAll) {
+                list.add(n.task);
+            }
+            return list;
+        }
+    }
+
+    private void signal(String branch) {
+        for (Waiter w : waiters) {
+            if (w.accepts(branch) && w.signal()) {
+                return;
+            }
+        }
+    }
+
+    // oldest task over all requested lanes: O(number of branches)
+    private Node first(Set<String> branchSet) {
+        if (branchSet.isEmpty()) {
+            return all.head;
+        }
+        Node oldest = null;
+        for (String branch : branchSet) {
+            Lane lane = lanes.get(branch);
+            if (lane == null || lane.head == null) {
+                continue;
+            }
+            if (oldest == null || lane.head.seq < oldest.seq) {
+                oldest = lane.head;
+            }
+        }
+        return oldest;
+    }
+
+    private Lane lane(BuildbotPlatformJob tbJob) {
+        String branch = tbJob.getParent().getGerritBranch();
+        Lane lane = lanes.get(branch);
+        if (lane == null) {
+            lane = new Lane();
+            lanes.put(branch, lane);
+        }
+        return lane;
+    }
+
+    private void unlink(Node node) {
+        nodes.remove(node.task);
+        all.unlink(node, true);
+        String branch = node.task.getParent().getGerritBranch();
+        Lane lane = lanes.get(branch);
+        lane.unlink(node, false);
+        if (lane.head == null) {
+            lanes.remove(branch);
+        }
+    }
+
+    /**
+     * A get request waiting for a task. Wake ups are remembered until
+     * they are taken, so a task added between a failed poll and the next
+     * wake up is not missed.
+     */
+    public static final class Waiter {
+        private final Set<String> branchSet;
+        private final Runnable listener;
+        private boolean signalled;
+        private boolean released;
+
+        Waiter(Set<String> branchSet, Runnable listener) {
+            this.branchSet = branchSet;
+            this.listener = listener;
+        }
+
+        boolean accepts(String branch) {
+            return branchSet.isEmpty() || branchSet.contains(branch);
+        }
+
+        synchronized boolean signal() {
+            if (signalled || released) {
+                return false;
+            }
+            signalled = true;
+            listener.run();
+            return true;
+        }
+
+        synchronized void release() {
+            released = true;
+            listener.run();
+        }
+
+        /**
+         * Take the wake up before polling.
+         *
+         * @return false if the waiter was released
+         */
+        public synchronized boolean take() {
+            signalled = false;
+            return !released;
+        }
+    }
+
+    private static final class Node {
+        final BuildbotPlatformJob task;
+        final long seq;
+        Node prevAll, nextAll;
+        Node prevBranch, nextBranch;
+
+        Node(BuildbotPlatformJob task, long seq) {
+            this.task = task;
+            this.seq = seq;
+        }
+    }
+
+    // doubly linked list threaded either through the "all" or the
+    // "branch" links of the nodes
+    private static final class Lane {
+        Node head, tail;
+
+        void linkLast(Node n, boolean global) {
+            if (global) {
+                n.prevAll = tail;
+            } else {
+                n.prevBranch = tail;
+            }
+            if (tail == null) {
+                head = n;
+            } else if (global) {
+                tail.nextAll = n;
+            } else {
+                tail.nextBranch = n;
+            }
+            tail = n;
+        }
+
+        void linkFirst(Node n, boolean global) {
+            if (global) {
+                n.nextAll = head;
+            } else {
+                n.nextBranch = head;
+            }
+            if (head == null) {
+                tail = n;
+            } else if (global) {
+                head.prevAll = n;
+            } else {
+                head.prevBranch = n;
+            }
+            head = n;
+        }
+
+        void unlink(Node n, boolean global) {
+            Node prev = global ? n.prevAll : n.prevBranch;
+            Node next = global ? n.nextAll : n.nextBranch;
+            if (prev == null) {
+                head = next;
+            } else if (global) {
+                prev.nextAll = next;
+            } else {
+                prev.nextBranch = next;
+            }
+            if (next == null) {
+                tail = prev;
+            } else if (global) {
+                next.prevAll = prev;
+            } else {
+                next.prevBranch = prev;
+            }
+            if (global) {
+                n.prevAll = n.nextAll = null;
+            } else {
+                n.prevBranch = n.nextBranch = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.model;
+
+/**
+ * Notified once a {@link BuildbotPlatformJob} is done, that is a result
+ * was reported for it or it was discarded. Called on the thread that
+ * completed the task, so implementations must not block.
+ */
+public interface TaskCompletionListener {
+    void taskCompleted(BuildbotPlatformJob task);
+}
@@ -21,18 +21,19 @@ public class TbJobResult {
     String log;
     long endTime;
     String tinderboxId;
+    boolean jobFinished;
 
     private Set<BuildbotPlatformJob> discardedTasks;
 
     public TbJobResult(BuildbotPlatformJob tbPlatformJob, String decoratedId,
             Os platform, TaskStatus status, String log, String boxId,
-            Set<BuildbotPlatformJob> discardedTasks) {
+            Set<BuildbotPlatformJob> discardedTasks, long endTime) {
         this.tbPlatformJob = tbPlatformJob;
         this.decoratedId = decoratedId;
         this.platform = platform;
         this.status = status;
         this.log = log;
-        this.endTime = System.currentTimeMillis();
+        this.endTime = endTime;
         this.tinderboxId = boxId;
         this.discardedTasks = discardedTasks;
     }
@@ -62,7 +63,8 @@ public class TbJobResult {
     }
 
     public boolean ignoreJobStatus() {
-        if (getStatus() == TaskStatus.CANCELED) {
+        if (getStatus().isCancelled() || getStatus().isAborted()
+                || getStatus().isExpired() || getStatus().isTimeout()) {
             return true;
         }
         return false;
@@ -76,6 +78,18 @@ public class TbJobResult {
         this.tinderboxId = tinderboxId;
     }
 
+    /**
+     * @return true if this result was the last one of its job, that is the
+     *         combined result has to be reported
+     */
+    public boolean isJobFinished() {
+        return jobFinished;
+    }
+
+    public void setJobFinished(boolean jobFinished) {
+        this.jobFinished = jobFinished;
+    }
+
     public Set<BuildbotPlatformJob> getDiscardedTasks() {
         return discardedTasks;
     }
@@ -13,15 +13,30 @@ public class Ticket {
 	String id;
 	Os tbPlatform;
 	long startTime;
+	// claims of the task of the platform in the job so far, 0 for a peek
+	int attempt;
 
-	public Ticket(String id, Os tbPlatform) {
+	public Ticket(String id, Os tbPlatform, long startTime) {
+		this(id, tbPlatform, 0, startTime);
+	}
+
+	public Ticket(String id, Os tbPlatform, int attempt, long startTime) {
 		this.id = id;
 		this.tbPlatform = tbPlatform;
-		startTime = System.currentTimeMillis();
+		this.attempt = attempt;
+		this.startTime = startTime;
 	}
 
+	/**
+	 * The first claim keeps the plain form, a task claimed again after an
+	 * expired lease or a cancel gets the attempt appended, so that a late
+	 * put or log of the earlier claim can not be taken for the new one.
+	 */
 	@Override
 	public String toString() {
+		if (attempt > 1) {
+			return id + "_" + tbPlatform.name() + "_" + attempt;
+		}
 		return id + "_" + tbPlatform.name();
 	}
 
@@ -36,4 +51,8 @@ public class Ticket {
 	public String getId() {
 		return id;
 	}
+
+	public int getAttempt() {
+		return attempt;
+	}
 }
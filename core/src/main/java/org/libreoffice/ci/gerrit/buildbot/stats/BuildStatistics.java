@@ -0,0 +1,168 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.stats;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.libreoffice.ci.gerrit.buildbot.model.BuildbotPlatformJob;
+import org.libreoffice.ci.gerrit.buildbot.model.Os;
+import org.libreoffice.ci.gerrit.buildbot.model.TBBlockingQueue;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Build durations of one project per platform, per platform and branch and
+ * per platform and tinderbox, and when each tinderbox was last seen.
+ */
+public class BuildStatistics {
+    // a tinderbox that neither asked for a task nor built one for this
+    // long is not counted as active
+    static final long ACTIVE_WINDOW = TimeUnit.MINUTES.toMillis(30);
+    // builds of a branch or box needed before its own average is trusted
+    static final long MIN_SAMPLES = 3;
+
+    private final ConcurrentMap<Os, DurationStats> byPlatform =
+            new ConcurrentHashMap<Os, DurationStats>();
+    private final ConcurrentMap<String, DurationStats> byBranch =
+            new ConcurrentHashMap<String, DurationStats>();
+    private final ConcurrentMap<String, DurationStats> byBox =
+            new ConcurrentHashMap<String, DurationStats>();
+    private final ConcurrentMap<String, Long> lastSeen =
+            new ConcurrentHashMap<String, Long>();
+
+    /** Account a finished build. */
+    public void record(Os platform, String branch, String box, long duration) {
+        get(byPlatform, platform).add(duration);
+        get(byBranch, key(platform, branch)).add(duration);
+        if (box != null) {
+            get(byBox, key(platform, box)).add(duration);
+        }
+    }
+
+    /** The tinderbox asked for, claimed or reported a task. */
+    public void seen(Os platform, String box, long now) {
+        if (box != null) {
+            lastSeen.put(key(platform, box), now);
+        }
+    }
+
+    public DurationStats getPlatform(Os platform) {
+        return byPlatform.get(platform);
+    }
+
+    public DurationStats getBranch(Os platform, String branch) {
+        return byBranch.get(key(platform, branch));
+    }
+
+    public DurationStats getBox(Os platform, String box) {
+        return byBox.get(key(platform, box));
+    }
+
+    /**
+     * @param box may be null if the task is not claimed yet
+     * @return expected build time in ms from the most specific statistics
+     *         with enough builds, 0 if the platform was never built
+     */
+    public long expected(Os platform, String branch, String box) {
+        DurationStats s = box == null ? null : getBox(platform, box);
+        if (s == null || s.getCount() < MIN_SAMPLES) {
+            s = getBranch(platform, branch);
+        }
+        if (s == null || s.getCount() < MIN_SAMPLES) {
+            s = getPlatform(platform);
+        }
+        return s == null ? 0 : s.getAverage();
+    }
+
+    /** @return tinderboxes of the platform seen within the active window */
+    public int getActiveBoxes(Os platform, long now) {
+        String prefix = platform.name() + ":";
+        int n = 0;
+        for (Map.Entry<String, Long> e : lastSeen.entrySet()) {
+            if (e.getKey().startsWith(prefix)
+                    && now - e.getValue() < ACTIVE_WINDOW) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Estimate when the pending tasks will be done. Each platform queue is
+     * played forward: a task goes to the tinderbox that is free first, and
+     * a box is busy for the expected build time. Running tasks keep their
+     * box until their own expected end. Branch restrictions of the boxes
+     * are not taken into account.
+     *
+     * @param engaged tasks claimed by a tinderbox and not yet reported
+     */
+    public QueueEstimate estimate(Map<Os, TBBlockingQueue> queues,
+            Collection<BuildbotPlatformJob> engaged, long now) {
+        Map<BuildbotPlatformJob, Long> etas = Maps.newHashMap();
+        Map<Os, Long> free = Maps.newEnumMap(Os.class);
+        for (Os p : Os.values()) {
+            if (getPlatform(p) == null) {
+                // never built, nothing to go by
+                continue;
+            }
+            PriorityQueue<Long> boxes = new PriorityQueue<Long>();
+            for (BuildbotPlatformJob task : engaged) {
+                if (task.getPlatform() != p || task.isReady()) {
+                    continue;
+                }
+                long end = Math.max(now, task.getStartTime() + expected(p,
+                        task.getParent().getGerritBranch(),
+                        task.getTinderboxId()));
+                etas.put(task, end);
+                boxes.add(end);
+            }
+            for (int i = boxes.size(); i < getActiveBoxes(p, now); i++) {
+                boxes.add(now);
+            }
+            if (boxes.isEmpty()) {
+                // nobody to build the queue
+                continue;
+            }
+            TBBlockingQueue queue = queues.get(p);
+            if (queue != null) {
+                for (BuildbotPlatformJob task : queue.snapshot()) {
+                    long end = boxes.poll() + expected(p,
+                            task.getParent().getGerritBranch(), null);
+                    etas.put(task, end);
+                    boxes.add(end);
+                }
+            }
+            free.put(p, boxes.peek());
+        }
+        return new QueueEstimate(this, etas, free, now);
+    }
+
+    private static String key(Os platform, String name) {
+        return platform.name() + ":" + name;
+    }
+
+    private static <K> DurationStats get(ConcurrentMap<K, DurationStats> map,
+            K key) {
+        DurationStats s = map.get(key);
+        if (s == null) {
+            DurationStats fresh = new DurationStats();
+            s = map.putIfAbsent(key, fresh);
+            if (s == null) {
+                s = fresh;
+            }
+        }
+        return s;
+    }
+}
@@ -0,0 +1,89 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.stats;
+
+/**
+ * Streaming statistics over build durations: an exponentially weighted
+ * moving average, the maximum and a histogram with logarithmic buckets for
+ * the percentiles. The memory used does not grow with the number of
+ * builds.
+ */
+public class DurationStats {
+    // weight of the newest build in the moving average
+    static final double ALPHA = 0.2;
+    // bucket i holds durations up to MIN * 2^(i / STEPS): four buckets per
+    // doubling from one minute to about 68 hours, the last one takes the
+    // rest. A percentile is off by at most 19%.
+    private static final long MIN = 60000;
+    private static final int STEPS = 4;
+    private static final int BUCKETS = 49;
+
+    private final long[] histogram = new long[BUCKETS];
+    private long count;
+    private double average;
+    private long max;
+
+    public synchronized void add(long duration) {
+        if (duration < 0) {
+            return;
+        }
+        histogram[bucket(duration)]++;
+        average = count == 0 ? duration : average + ALPHA
+                * (duration - average);
+        max = Math.max(max, duration);
+        count++;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /** @return moving average in ms, 0 if nothing was built yet */
+    public synchronized long getAverage() {
+        return Math.round(average);
+    }
+
+    public synchronized long getMax() {
+        return max;
+    }
+
+    /**
+     * @param p between 0 and 1
+     * @return upper bound of the bucket the percentile falls into, but not
+     *         more than the maximum; 0 if nothing was built yet
+     */
+    public synchronized long getPercentile(double p) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += histogram[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    private static int bucket(long duration) {
+        if (duration <= MIN) {
+            return 0;
+        }
+        double steps = Math.log((double) duration / MIN) / Math.log(2) * STEPS;
+        return (int) Math.min(BUCKETS - 1, Math.ceil(steps));
+    }
+
+    private static long upperBound(int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : Math.round(MIN
+                * Math.pow(2, (double) bucket / STEPS));
+    }
+}
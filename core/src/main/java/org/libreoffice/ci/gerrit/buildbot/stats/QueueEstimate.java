@@ -0,0 +1,89 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.stats;
+
+import java.util.List;
+import java.util.Map;
+
+import org.libreoffice.ci.gerrit.buildbot.model.BuildbotPlatformJob;
+import org.libreoffice.ci.gerrit.buildbot.model.GerritJob;
+import org.libreoffice.ci.gerrit.buildbot.model.Os;
+
+/**
+ * Expected end of the pending tasks at the time of the estimate, see
+ * {@link BuildStatistics#estimate}. All times are in ms since the epoch, 0
+ * means unknown.
+ */
+public class QueueEstimate {
+    private final BuildStatistics stats;
+    private final Map<BuildbotPlatformJob, Long> etas;
+    // per platform: when the first box is free after the queue
+    private final Map<Os, Long> free;
+    private final long now;
+
+    QueueEstimate(BuildStatistics stats, Map<BuildbotPlatformJob, Long> etas,
+            Map<Os, Long> free, long now) {
+        this.stats = stats;
+        this.etas = etas;
+        this.free = free;
+        this.now = now;
+    }
+
+    public long getNow() {
+        return now;
+    }
+
+    public long getEta(BuildbotPlatformJob task) {
+        Long eta = etas.get(task);
+        return eta == null ? 0 : eta;
+    }
+
+    /** @return when the last open task of the job is done */
+    public long getEta(GerritJob job) {
+        long eta = 0;
+        List<BuildbotPlatformJob> tasks = job.getBuildbotList();
+        synchronized (tasks) {
+            for (BuildbotPlatformJob task : tasks) {
+                if (task.isReady()) {
+                    continue;
+                }
+                long t = getEta(task);
+                if (t == 0) {
+                    return 0;
+                }
+                eta = Math.max(eta, t);
+            }
+        }
+        return eta;
+    }
+
+    /** @return when a job scheduled now for the branch would be done */
+    public long getEtaOfNewJob(String branch) {
+        long eta = 0;
+        for (Os p : Os.values()) {
+            Long start = free.get(p);
+            if (start == null) {
+                return 0;
+            }
+            eta = Math.max(eta, start + stats.expected(p, branch, null));
+        }
+        return eta;
+    }
+
+    /** @return h:mm from the time of the estimate to eta, "-" if unknown */
+    public String format(long eta) {
+        return eta == 0 ? "-" : formatDuration(eta - now);
+    }
+
+    public static String formatDuration(long ms) {
+        long min = (Math.max(0, ms) + 59999) / 60000;
+        return String.format("%d:%02d", min / 60, min % 60);
+    }
+}
@@ -13,6 +13,9 @@ import org.libreoffice.ci.gerrit.buildbot.model.GerritJob;
 import org.libreoffice.ci.gerrit.buildbot.model.Os;
 import org.libreoffice.ci.gerrit.buildbot.model.TBBlockingQueue;
 import org.libreoffice.ci.gerrit.buildbot.model.Ticket;
+import org.libreoffice.ci.gerrit.buildbot.stats.BuildStatistics;
+import org.libreoffice.ci.gerrit.buildbot.stats.DurationStats;
+import org.libreoffice.ci.gerrit.buildbot.stats.QueueEstimate;
 
 public class QueueUtils {
 
@@ -20,33 +23,45 @@ public class QueueUtils {
             BuildbotLogicControl control, String project, boolean dump) {
         stdout.print("----------------------------------------------"
                 + "--------------------------------\n");
-        stdout.print(String.format("%-17s %-12s %-12s %-22s %-3s %s\n", //
-                "Task-Id", "Start/End", "Type/State", "Ref", "Bot", "Branch"));
+        stdout.print(String.format("%-17s %-12s %-12s %-22s %-3s %-5s %s\n", //
+                "Task-Id", "Start/End", "Type/State", "Ref", "Bot", "ETA",
+                "Branch"));
         int numberOfPendingTasks = 0;
+        QueueEstimate estimate = control.estimate(project);
         List<GerritJob> changes = control.getGerritJobs(project);
-        synchronized (changes) {
-            for (GerritJob change : changes) {
-                if (type == null || type.equals(TaskType.CHANGE)) {
-                    numberOfPendingTasks++;
-                    stdout.print(String.format(
-                            "%-17s %-12s %-12s %-22s %-3s %s\n", //
-                            change.getId(), time(change.getStartTime(), 0),
-                            "Change", change.getGerritRef(),
-                            "-",
-                            change.getGerritBranch()));
-                }
-                if (type == null || type.equals(TaskType.JOB)) {
-                    List<BuildbotPlatformJob> list = change.getBuildbotList();
-                    synchronized (list) {
-                        numberOfPendingTasks = dumpTasks(stdout,
-                                numberOfPendingTasks, list);
-                    }
+        for (GerritJob change : changes) {
+            if (type == null || type.equals(TaskType.CHANGE)) {
+                numberOfPendingTasks++;
+                stdout.print(String.format(
+                        "%-17s %-12s %-12s %-22s %-3s %-5s %s\n", //
+                        change.getId(), time(change.getStartTime(), 0),
+                        "Change", change.getGerritRef(),
+                        "-",
+                        estimate.format(estimate.getEta(change)),
+                        change.getGerritBranch()));
+            }
+            if (type == null || type.equals(TaskType.JOB)) {
+                List<BuildbotPlatformJob> list = change.getBuildbotList();
+                synchronized (list) {
+                    numberOfPendingTasks = dumpTasks(stdout,
+                            numberOfPendingTasks, list, estimate);
                 }
             }
         }
         stdout.print("----------------------------------------------"
                 + "--------------------------------\n");
         stdout.print("  " + numberOfPendingTasks + " task(s)\n");
+        long superseded = control.getSupersededTasks(project);
+        if (superseded > 0) {
+            stdout.print("  " + superseded
+                    + " build(s) saved by newer patch sets\n");
+        }
+        long timedOut = control.getTimedOutTasks(project);
+        if (timedOut > 0) {
+            stdout.print("  " + timedOut
+                    + " task(s) not picked up in time\n");
+        }
+        dumpStatistics(stdout, control.getStatistics(project), estimate);
         
         if (dump) {
             numberOfPendingTasks = 0;
@@ -55,12 +70,10 @@ public class QueueUtils {
                     + "--------------------------------\n");
             Map<Os, TBBlockingQueue> map = 
                     control.getTBQueueMap(project);
-            synchronized (map) {
-                for (Os p : Os.values()) {
-                    TBBlockingQueue queue = map.get(p);
-                    stdout.print("Queue for platform: " + p.name() + "\n"); 
-                    numberOfPendingTasks += queue.dumpTasks(stdout);
-                }
+            for (Os p : Os.values()) {
+                TBBlockingQueue queue = map.get(p);
+                stdout.print("Queue for platform: " + p.name() + "\n"); 
+                numberOfPendingTasks += queue.dumpTasks(stdout, estimate);
             }
             stdout.print("----------------------------------------------"
                     + "--------------------------------\n");
@@ -68,8 +81,25 @@ public class QueueUtils {
         }
     }
 
+    private static void dumpStatistics(PrintWriter stdout,
+            BuildStatistics stats, QueueEstimate estimate) {
+        for (Os p : Os.values()) {
+            DurationStats s = stats.getPlatform(p);
+            if (s == null) {
+                continue;
+            }
+            stdout.print(String.format(
+                    "  %s: %d box(es) active, %d build(s), avg %s, p50 %s, p90 %s, max %s\n",
+                    p.name(), stats.getActiveBoxes(p, estimate.getNow()),
+                    s.getCount(), QueueEstimate.formatDuration(s.getAverage()),
+                    QueueEstimate.formatDuration(s.getPercentile(0.5)),
+                    QueueEstimate.formatDuration(s.getPercentile(0.9)),
+                    QueueEstimate.formatDuration(s.getMax())));
+        }
+    }
+
     public static int dumpTasks(PrintWriter stdout, int numberOfPendingTasks,
-            List<BuildbotPlatformJob> list) {
+            List<BuildbotPlatformJob> list, QueueEstimate estimate) {
         for (BuildbotPlatformJob job : list) {
             String jobId = job.getParent().getId() + "_"
                     + job.getPlatformString();
@@ -83,15 +113,19 @@ public class QueueUtils {
             } else if (job.isReady()) {
                 status += job.getResult().getStatus().name();
                 time = time(job.getResult().getEndTime(), 0);
+            } else if (job.isAbortRequested()) {
+                status += "ABORT_REQUESTED";
+                time = time(t.getStartTime(), 0);
             } else {
                 status += "STARTED";
                 time = time(t.getStartTime(), 0);
             }
             stdout.print(String.format(
-                    "%-17s %-12s %-12s %-22s %-3s %s\n", //
+                    "%-17s %-12s %-12s %-22s %-3s %-5s %s\n", //
                     jobId, time, status, job.getParent()
                             .getGerritRef(),
                             job.getTinderboxId() == null ? "-" : job.getTinderboxId(),
+                            job.isReady() ? "-" : estimate.format(estimate.getEta(job)),
                             job.getParent()
                             .getGerritBranch()));
             numberOfPendingTasks++;
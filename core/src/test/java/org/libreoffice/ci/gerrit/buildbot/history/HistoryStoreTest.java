@@ -0,0 +1,88 @@
+package org.libreoffice.ci.gerrit.buildbot.history;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.libreoffice.ci.gerrit.buildbot.commands.TaskStatus;
+import org.libreoffice.ci.gerrit.buildbot.config.SchedulerConfig;
+import org.libreoffice.ci.gerrit.buildbot.config.SchedulerProject;
+import org.libreoffice.ci.gerrit.buildbot.logic.BuildbotLogicControl;
+import org.libreoffice.ci.gerrit.buildbot.model.Os;
+import org.libreoffice.ci.gerrit.buildbot.model.TbJobDescriptor;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+public class HistoryStoreTest {
+
+    SchedulerConfig<SchedulerProject> config;
+    BuildbotLogicControl control;
+    static final String PROJECT = "FOO";
+    static final String TB1 = "42";
+    static final String TB2 = "43";
+    static final String URL = "url";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        config = new SchedulerConfig<SchedulerProject>();
+        config.setProjects(ImmutableList.of(new SchedulerProject(PROJECT)));
+        config.setHistoryDir(tmp.getRoot());
+        control = new BuildbotLogicControl(config);
+        control.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        control.stop();
+    }
+
+    @Test()
+    public void testHistoryQuery() throws Exception {
+        Set<String> branchSet = Sets.newHashSet();
+        for (int i = 0; i < 3; i++) {
+            control.startGerritJob(PROJECT, "I471" + i, "master", "refs/changes/1" + i + "/471" + i + "/1", i + "bcdefghijklmnopqrstuvwxyz");
+            for (Os os : Os.values()) {
+                TbJobDescriptor task = control.launchTbJob(PROJECT, os, branchSet, os == Os.Linux ? TB1 : TB2, false);
+                Assert.assertNotNull(control.setResultPossible(task.getTicket(), os == Os.Linux ? TB1 : TB2, TaskStatus.SUCCESS, URL));
+            }
+        }
+        // the archive survives a restart
+        control.stop();
+        control = new BuildbotLogicControl(config);
+        control.start();
+        HistoryStore history = control.getHistory();
+        Assert.assertEquals(9, history.size());
+        HistoryStore.Page page = history.query(new HistoryQuery().setProject(PROJECT).setBox(TB1));
+        Assert.assertEquals(3, page.getEntries().size());
+        Assert.assertNull(page.getNext());
+        Assert.assertEquals("2bcdefghijklmnopqrstuvwxyz", page.getEntries().get(0).getRevision());
+
+        page = history.query(new HistoryQuery().setChange("4711").setPlatform(Os.Windows.name()));
+        Assert.assertEquals(1, page.getEntries().size());
+        Assert.assertEquals(TB2, page.getEntries().get(0).getBox());
+        Assert.assertEquals(1, history.query(new HistoryQuery().setRevision("1bcdefghijklm")
+                .setPlatform(Os.Linux.name())).getEntries().size());
+
+        // newest first, page by page
+        List<HistoryEntry> all = Lists.newArrayList();
+        page = history.query(new HistoryQuery().setBranch("master").setLimit(4));
+        all.addAll(page.getEntries());
+        while (page.getNext() != null) {
+            page = history.query(new HistoryQuery().setBranch("master").setLimit(4).setCursor(page.getNext()));
+            all.addAll(page.getEntries());
+        }
+        Assert.assertEquals(9, all.size());
+        Assert.assertEquals("0bcdefghijklmnopqrstuvwxyz", all.get(8).getRevision());
+        Assert.assertTrue(history.query(new HistoryQuery().setUntil(1)).getEntries().isEmpty());
+    }
+}
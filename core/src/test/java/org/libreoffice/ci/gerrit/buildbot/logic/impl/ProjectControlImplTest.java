@@ -0,0 +1,87 @@
+package org.libreoffice.ci.gerrit.buildbot.logic.impl;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.libreoffice.ci.gerrit.buildbot.commands.TaskStatus;
+import org.libreoffice.ci.gerrit.buildbot.config.SchedulerConfig;
+import org.libreoffice.ci.gerrit.buildbot.config.SchedulerProject;
+import org.libreoffice.ci.gerrit.buildbot.metrics.Metrics;
+import org.libreoffice.ci.gerrit.buildbot.model.BuildbotPlatformJob;
+import org.libreoffice.ci.gerrit.buildbot.model.Clock;
+import org.libreoffice.ci.gerrit.buildbot.model.Os;
+import org.libreoffice.ci.gerrit.buildbot.model.TbJobDescriptor;
+import org.libreoffice.ci.gerrit.buildbot.model.TbJobResult;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+public class ProjectControlImplTest {
+
+    SchedulerConfig<SchedulerProject> config;
+    ScheduledExecutorService timer;
+    ProjectControlImpl control;
+    static final String PROJECT = "FOO";
+    static final String TB1 = "42";
+    static final String URL = "url";
+    static final Set<String> ANY_BRANCH = Collections.emptySet();
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        config = new SchedulerConfig<SchedulerProject>();
+        config.setProjects(ImmutableList.of(new SchedulerProject(PROJECT)));
+        config.setJournalDir(tmp.getRoot());
+        timer = Executors.newSingleThreadScheduledExecutor();
+        control = newControl();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        control.stop();
+        timer.shutdownNow();
+    }
+
+    private ProjectControlImpl newControl() {
+        ProjectControlImpl c = new ProjectControlImpl(config,
+                config.findProject(PROJECT), timer, timer, null, null,
+                new Metrics(), Clock.SYSTEM);
+        c.start();
+        return c;
+    }
+
+    @Test()
+    public void testClosedTaskReleasesTicket() throws Exception {
+        control.startGerritJob(PROJECT, "I4711", "master", "refs/changes/11/4711/1", "abcdefghijklmnopqrstuvwxyz");
+        TbJobDescriptor linux = control.launchTbJob(Os.Linux, ANY_BRANCH, TB1, false);
+        TbJobDescriptor windows = control.launchTbJob(Os.Windows, ANY_BRANCH, TB1, false);
+        TbJobResult result = control.setResultPossible(linux.getTicket(), TB1, TaskStatus.SUCCESS, URL);
+        Assert.assertFalse(result.isJobFinished());
+        // the job goes on, the closed task is no longer engaged
+        Assert.assertNull(control.findTaskByTicket(linux.getTicket()));
+        Assert.assertNull(control.findJobByTicket(linux.getTicket()));
+        Assert.assertNull(control.renewLease(linux.getTicket(), TB1));
+        Assert.assertEquals(Lists.newArrayList(windows.getBuildbotPlatformJob()),
+                Lists.newArrayList(control.getEngagedTasks()));
+
+        // nor after a restart
+        control.stop();
+        control = newControl();
+        Assert.assertEquals(1, control.getGerritJobs().size());
+        Assert.assertNull(control.findTaskByTicket(linux.getTicket()));
+        BuildbotPlatformJob task = control.findTaskByTicket(windows.getTicket());
+        Assert.assertNotNull(task);
+        Assert.assertEquals(Lists.newArrayList(task),
+                Lists.newArrayList(control.getEngagedTasks()));
+    }
+}
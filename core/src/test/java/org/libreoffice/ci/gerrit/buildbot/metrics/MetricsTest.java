@@ -0,0 +1,71 @@
+package org.libreoffice.ci.gerrit.buildbot.metrics;
+
+import java.io.StringWriter;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.libreoffice.ci.gerrit.buildbot.commands.TaskStatus;
+import org.libreoffice.ci.gerrit.buildbot.config.SchedulerConfig;
+import org.libreoffice.ci.gerrit.buildbot.config.SchedulerProject;
+import org.libreoffice.ci.gerrit.buildbot.logic.BuildbotLogicControl;
+import org.libreoffice.ci.gerrit.buildbot.model.Os;
+import org.libreoffice.ci.gerrit.buildbot.model.TbJobDescriptor;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+
+public class MetricsTest {
+
+    SchedulerConfig<SchedulerProject> config;
+    BuildbotLogicControl control;
+    static final String PROJECT = "FOO";
+    static final String TB1 = "42";
+    static final String URL = "url";
+
+    @Before
+    public void setUp() throws Exception {
+        config = new SchedulerConfig<SchedulerProject>();
+        config.setProjects(ImmutableList.of(new SchedulerProject(PROJECT)));
+        control = new BuildbotLogicControl(config);
+        control.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        control.stop();
+    }
+
+    @Test()
+    public void testMetrics() throws Exception {
+        control.startGerritJob(PROJECT, "I4711", "master", "refs/changes/11/4711/1", "abcdefghijklmnopqrstuvwxyz");
+        Set<String> branchSet = Sets.newHashSet();
+        TbJobDescriptor task = control.launchTbJob(PROJECT, Os.Linux, branchSet, TB1, false);
+        Assert.assertNotNull(control.setResultPossible(task.getTicket(), TB1, TaskStatus.SUCCESS, URL));
+        StringWriter out = new StringWriter();
+        control.getMetrics().write(out);
+        String text = out.toString();
+        Assert.assertTrue(text.contains("# TYPE buildbot_queue_wait_seconds histogram\n"));
+        Assert.assertTrue(text.contains("buildbot_queue_depth{project=\"FOO\",platform=\"Linux\"} 0\n"));
+        Assert.assertTrue(text.contains("buildbot_queue_depth{project=\"FOO\",platform=\"Windows\"} 1\n"));
+        Assert.assertTrue(text.contains("buildbot_queue_wait_seconds_count{project=\"FOO\",platform=\"Linux\"} 1\n"));
+        Assert.assertTrue(text.contains("buildbot_queue_wait_seconds_bucket{project=\"FOO\",platform=\"Linux\",le=\"+Inf\"} 1\n"));
+        Assert.assertTrue(text.contains("buildbot_build_seconds_count{project=\"FOO\",platform=\"Linux\"} 1\n"));
+        Assert.assertTrue(text.contains("buildbot_build_seconds_count{project=\"FOO\",platform=\"Windows\"} 0\n"));
+        // missing series read as -1
+        Assert.assertTrue(sample(text, "buildbot_lock_wait_seconds_count{project=\"FOO\",lock=\"gate\"}") > 0);
+        Assert.assertTrue(sample(text, "buildbot_lock_hold_seconds_count{project=\"FOO\",lock=\"registry\"}") > 0);
+    }
+
+    // value of a series in the text format, -1 if there is none
+    private static double sample(String text, String series) {
+        for (String line : text.split("\n")) {
+            if (line.startsWith(series + " ")) {
+                return Double.parseDouble(line.substring(series.length() + 1));
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,74 @@
+package org.libreoffice.ci.gerrit.buildbot.stats;
+
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.libreoffice.ci.gerrit.buildbot.config.SchedulerConfig;
+import org.libreoffice.ci.gerrit.buildbot.config.SchedulerProject;
+import org.libreoffice.ci.gerrit.buildbot.logic.BuildbotLogicControl;
+import org.libreoffice.ci.gerrit.buildbot.model.GerritJob;
+import org.libreoffice.ci.gerrit.buildbot.model.Os;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+
+public class BuildStatisticsTest {
+
+    SchedulerConfig<SchedulerProject> config;
+    BuildbotLogicControl control;
+    static final String PROJECT = "FOO";
+    static final String TB1 = "42";
+
+    @Before
+    public void setUp() throws Exception {
+        config = new SchedulerConfig<SchedulerProject>();
+        config.setProjects(ImmutableList.of(new SchedulerProject(PROJECT)));
+        control = new BuildbotLogicControl(config);
+        control.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        control.stop();
+    }
+
+    @Test()
+    public void testBuildTimeEstimate() {
+        final long hour = 3600 * 1000L;
+        BuildStatistics stats = control.getStatistics(PROJECT);
+        for (Os os : Os.values()) {
+            for (int i = 0; i < 9; i++) {
+                stats.record(os, "master", TB1, hour);
+            }
+        }
+        stats.record(Os.Linux, "master", TB1, 4 * hour);
+        DurationStats linux = stats.getPlatform(Os.Linux);
+        Assert.assertEquals(10, linux.getCount());
+        Assert.assertEquals(4 * hour, linux.getMax());
+        // a bucket bound, within 19%
+        Assert.assertEquals(hour, linux.getPercentile(0.5), hour / 5);
+        Assert.assertEquals(4 * hour, linux.getPercentile(1));
+        Assert.assertEquals(hour + 3 * hour / 5, linux.getAverage());
+        Assert.assertEquals(hour, stats.getPlatform(Os.Windows).getAverage());
+
+        // one box per platform: the second job waits for the first
+        control.startGerritJob(PROJECT, "I4711", "master", "refs/changes/11/4711/1", "abcdefghijklmnopqrstuvwxyz");
+        control.startGerritJob(PROJECT, "I4712", "master", "refs/changes/12/4712/1", "bcdefghijklmnopqrstuvwxyz");
+        Set<String> branchSet = Sets.newHashSet();
+        for (Os os : Os.values()) {
+            Assert.assertNotNull(control.launchTbJob(PROJECT, os, branchSet, TB1, false));
+        }
+        QueueEstimate estimate = control.estimate(PROJECT);
+        GerritJob first = control.findJobByRevision(PROJECT, "abcdefghijklmnopqrstuvwxyz");
+        GerritJob second = control.findJobByRevision(PROJECT, "bcdefghijklmnopqrstuvwxyz");
+        long now = estimate.getNow();
+        // Linux is the slowest platform
+        Assert.assertEquals(hour + 3 * hour / 5, estimate.getEta(first) - now, 1000);
+        Assert.assertEquals(2 * (hour + 3 * hour / 5), estimate.getEta(second) - now, 1000);
+        Assert.assertEquals(3 * (hour + 3 * hour / 5), estimate.getEtaOfNewJob("master") - now, 1000);
+        Assert.assertEquals("3:12", estimate.format(estimate.getEta(second)));
+    }
+}
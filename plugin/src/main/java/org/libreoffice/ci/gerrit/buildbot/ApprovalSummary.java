@@ -0,0 +1,96 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot;
+
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.gerrit.reviewdb.client.Account;
+
+/**
+ * Current votes on one patch set, kept up to date from the approvals of
+ * comment events, so that the positive review trigger does not reload
+ * them for every comment.
+ */
+public class ApprovalSummary {
+    static final String VERIFIED = "Verified";
+    static final String CODE_REVIEW = "Code-Review";
+
+    // voter -> label -> value
+    private final Map<Account.Id, Map<String, Short>> votes = Maps.newHashMap();
+    private final Set<Account.Id> reviewers = Sets.newHashSet();
+
+    /**
+     * Record the vote of a user, replacing an earlier vote on the same
+     * label.
+     *
+     * @param reviewer whether the user is a member of the reviewer group
+     */
+    public synchronized void put(Account.Id who, String label, short value,
+            boolean reviewer) {
+        Map<String, Short> labels = votes.get(who);
+        if (labels == null) {
+            labels = Maps.newHashMap();
+            votes.put(who, labels);
+        }
+        labels.put(label, value);
+        if (reviewer) {
+            reviewers.add(who);
+        } else {
+            reviewers.remove(who);
+        }
+    }
+
+    public synchronized short worst(String label) {
+        short worst = 0;
+        for (Map<String, Short> labels : votes.values()) {
+            Short v = labels.get(label);
+            if (v != null && v < worst) {
+                worst = v;
+            }
+        }
+        return worst;
+    }
+
+    public synchronized short best(String label) {
+        short best = 0;
+        for (Map<String, Short> labels : votes.values()) {
+            Short v = labels.get(label);
+            if (v != null && v > best) {
+                best = v;
+            }
+        }
+        return best;
+    }
+
+    /** At least one positive code review from a reviewer group member. */
+    public synchronized boolean approvedByReviewer() {
+        for (Account.Id who : reviewers) {
+            Short v = votes.get(who).get(CODE_REVIEW);
+            if (v != null && v > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The patch set has no negative code review, no verification in
+     * either direction and is approved by a reviewer group member.
+     */
+    public synchronized boolean isPositive() {
+        return worst(CODE_REVIEW) >= 0
+                && worst(VERIFIED) >= 0
+                && best(VERIFIED) <= 0
+                && approvedByReviewer();
+    }
+}
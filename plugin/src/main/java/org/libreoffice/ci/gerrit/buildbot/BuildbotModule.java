@@ -16,8 +16,12 @@ import org.libreoffice.ci.gerrit.buildbot.config.BuildbotConfig;
 import org.libreoffice.ci.gerrit.buildbot.config.BuildbotConfigProvider;
 import org.libreoffice.ci.gerrit.buildbot.logic.BuildbotLogicControl;
 import org.libreoffice.ci.gerrit.buildbot.logic.BuildbotLogicControlProvider;
+import org.libreoffice.ci.gerrit.buildbot.metrics.Metrics;
 import org.libreoffice.ci.gerrit.buildbot.publisher.BuildbotLogPublisher;
 import org.libreoffice.ci.gerrit.buildbot.publisher.JenkinsLogPublisher;
+import org.libreoffice.ci.gerrit.buildbot.review.BuildbotIdentity;
+import org.libreoffice.ci.gerrit.buildbot.review.ReviewCache;
+import org.libreoffice.ci.gerrit.buildbot.review.ReviewQueue;
 import org.libreoffice.ci.gerrit.buildbot.webui.BuildbotTopMenu;
 import org.libreoffice.ci.gerrit.buildbot.webui.ScheduleAction;
 import org.slf4j.Logger;
@@ -40,6 +44,7 @@ public class BuildbotModule extends AbstractModule {
 
     @Override
     protected void configure() {
+        bind(Metrics.class).in(SINGLETON);
         bind(BuildbotConfig.class)
             .toProvider(BuildbotConfigProvider.class)
             .in(SINGLETON);
@@ -50,6 +55,13 @@ public class BuildbotModule extends AbstractModule {
             .toProvider(AllProjectsNameProvider.class);
         bind(BuildbotLogPublisher.class).in(SINGLETON);
         bind(JenkinsLogPublisher.class).in(SINGLETON);
+        bind(BuildbotIdentity.class).in(SINGLETON);
+        bind(ReviewCache.class).in(SINGLETON);
+        bind(ReviewQueue.class).in(SINGLETON);
+        bind(LifecycleListener.class)
+            .annotatedWith(UniqueAnnotations.create())
+            .to(ReviewQueue.class);
+        bind(EventQueue.class).in(SINGLETON);
         bind(StreamEventPipeline.class).in(SINGLETON);
         bind(LifecycleListener.class)
             .annotatedWith(UniqueAnnotations.create())
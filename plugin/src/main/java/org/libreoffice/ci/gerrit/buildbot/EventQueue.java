@@ -0,0 +1,219 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot;
+
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.libreoffice.ci.gerrit.buildbot.metrics.Gauge;
+import org.libreoffice.ci.gerrit.buildbot.metrics.Histogram;
+import org.libreoffice.ci.gerrit.buildbot.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Intake stage for change events, so that Gerrit's event dispatch thread
+ * does not wait for database lookups of the buildbot.
+ * <p>
+ * Events of one change are handled one after another on a small worker
+ * pool. An event is merged into a pending one with the same key, e.g.
+ * a patch set created event delivered twice.
+ */
+@Singleton
+public class EventQueue {
+    static final Logger log = LoggerFactory.getLogger(EventQueue.class);
+
+    static final int THREADS = 2;
+    static final int MAX_PENDING = 1000;
+
+    // change -> events, head is in flight
+    private final Map<String, LinkedList<Entry>> pending = Maps.newHashMap();
+    private int size;
+    private ExecutorService executor;
+
+    private final AtomicLong handled = new AtomicLong();
+    private final AtomicLong merged = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong lastLatency = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+    private final Histogram lag;
+
+    @Inject
+    public EventQueue(Metrics metrics) {
+        lag = metrics.histogram("buildbot_event_lag_seconds",
+                "Time from the arrival of a change event to its completion.",
+                Histogram.LAG, Histogram.MILLIS);
+        metrics.gauge("buildbot_event_queue_depth",
+                "Change events waiting or in flight.", new Gauge() {
+                    @Override
+                    public long get() {
+                        return getDepth();
+                    }
+                });
+    }
+
+    public synchronized void start() {
+        executor = Executors.newFixedThreadPool(THREADS,
+                new ThreadFactoryBuilder()
+                        .setNameFormat("buildbot-events-%d")
+                        .setDaemon(true).build());
+    }
+
+    public void stop() {
+        ExecutorService e;
+        synchronized (this) {
+            e = executor;
+            executor = null;
+            pending.clear();
+            size = 0;
+        }
+        if (e == null) {
+            return;
+        }
+        e.shutdownNow();
+        try {
+            e.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queue an event.
+     *
+     * @param change events with the same change are serialized
+     * @param key events with the same key pending for the change are
+     *        merged into one, null if the event must never be merged
+     * @param task handles the event on a worker thread
+     * @return false if the event was dropped
+     */
+    public boolean submit(String change, String key, Runnable task) {
+        synchronized (this) {
+            if (executor == null || size >= MAX_PENDING) {
+                dropped.incrementAndGet();
+                log.warn("event queue {}, dropping {} for change {}",
+                        new Object[] {executor == null ? "stopped" : "full",
+                                key, change});
+                return false;
+            }
+            LinkedList<Entry> list = pending.get(change);
+            if (list == null) {
+                list = new LinkedList<Entry>();
+                pending.put(change, list);
+            } else if (key != null) {
+                // the head may already be running, do not merge into it
+                for (int i = 1; i < list.size(); i++) {
+                    if (key.equals(list.get(i).key)) {
+                        merged.incrementAndGet();
+                        return true;
+                    }
+                }
+            }
+            Entry entry = new Entry(change, key, task);
+            list.add(entry);
+            size++;
+            if (list.size() == 1) {
+                execute(entry);
+            }
+            return true;
+        }
+    }
+
+    // caller holds the monitor
+    private void execute(final Entry entry) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                handle(entry);
+            }
+        });
+    }
+
+    private void handle(Entry entry) {
+        try {
+            entry.task.run();
+        } catch (RuntimeException e) {
+            log.error(String.format("cannot handle %s for change %s",
+                    entry.key, entry.change), e);
+        }
+        long latency = System.currentTimeMillis() - entry.submitted;
+        handled.incrementAndGet();
+        lag.observe(latency);
+        lastLatency.set(latency);
+        long max;
+        while (latency > (max = maxLatency.get())
+                && !maxLatency.compareAndSet(max, latency)) {
+        }
+        next(entry);
+    }
+
+    private synchronized void next(Entry done) {
+        LinkedList<Entry> list = pending.get(done.change);
+        if (executor == null || list == null) {
+            // stopped meanwhile
+            return;
+        }
+        size--;
+        list.removeFirst();
+        if (list.isEmpty()) {
+            pending.remove(done.change);
+        } else {
+            execute(list.getFirst());
+        }
+    }
+
+    /** Events waiting or in flight. */
+    public synchronized int getDepth() {
+        return size;
+    }
+
+    public long getHandled() {
+        return handled.get();
+    }
+
+    public long getMerged() {
+        return merged.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /** Milliseconds from arrival to completion of the latest event. */
+    public long getLastLatency() {
+        return lastLatency.get();
+    }
+
+    public long getMaxLatency() {
+        return maxLatency.get();
+    }
+
+    private static final class Entry {
+        final String change;
+        final String key;
+        final Runnable task;
+        final long submitted = System.currentTimeMillis();
+
+        Entry(String change, String key, Runnable task) {
+            this.change = change;
+            this.key = key;
+            this.task = task;
+        }
+    }
+}
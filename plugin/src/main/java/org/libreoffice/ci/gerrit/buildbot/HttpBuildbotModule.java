@@ -9,7 +9,9 @@
 
 package org.libreoffice.ci.gerrit.buildbot;
 
+import org.libreoffice.ci.gerrit.buildbot.servlets.HistoryServlet;
 import org.libreoffice.ci.gerrit.buildbot.servlets.LogfileServlet;
+import org.libreoffice.ci.gerrit.buildbot.servlets.MetricsServlet;
 import org.libreoffice.ci.gerrit.buildbot.servlets.QueueServlet;
 
 import com.google.gerrit.extensions.registration.DynamicSet;
@@ -23,6 +25,8 @@ class HttpBuildbotModule extends HttpPluginModule {
 	  serve("/log").with(LogfileServlet.class);
 	  serve("/queue").with(QueueServlet.class);
 	  serve("/queue/*").with(QueueServlet.class);
+	  serve("/history").with(HistoryServlet.class);
+	  serve("/metrics").with(MetricsServlet.class);
 	  DynamicSet.bind(binder(), WebUiPlugin.class)
           .toInstance(new JavaScriptPlugin("schedule.js"));
   }
@@ -10,9 +10,12 @@
 package org.libreoffice.ci.gerrit.buildbot;
 
 import org.libreoffice.ci.gerrit.buildbot.commands.GetCommand;
+import org.libreoffice.ci.gerrit.buildbot.commands.HeartbeatCommand;
+import org.libreoffice.ci.gerrit.buildbot.commands.HistoryCommand;
 import org.libreoffice.ci.gerrit.buildbot.commands.PutCommand;
 import org.libreoffice.ci.gerrit.buildbot.commands.ScheduleCommand;
 import org.libreoffice.ci.gerrit.buildbot.commands.ShowCommand;
+import org.libreoffice.ci.gerrit.buildbot.commands.StatusCommand;
 import org.libreoffice.ci.gerrit.buildbot.commands.TestLogChannelCommand;
 import org.libreoffice.ci.gerrit.buildbot.commands.VerifyCommand;
 import org.libreoffice.ci.gerrit.buildbot.commands.VersionCommand;
@@ -26,7 +29,10 @@ public class SshBuildbotModule extends PluginCommandModule {
 		command(ShowCommand.class);
 		command(GetCommand.class);
 		command(PutCommand.class);
+		command(HeartbeatCommand.class);
+		command(HistoryCommand.class);
 		command(ScheduleCommand.class);
+		command(StatusCommand.class);
 		command(TestLogChannelCommand.class);
 		command(VerifyCommand.class);
 		command(VersionCommand.class);
@@ -0,0 +1,411 @@
+package org.libreoffice.ci.gerrit.buildbot;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.libreoffice.ci.gerrit.buildbot.config.BuildbotConfig;
+import org.libreoffice.ci.gerrit.buildbot.config.BuildbotProject;
+import org.libreoffice.ci.gerrit.buildbot.config.TriggerStrategy;
+import org.libreoffice.ci.gerrit.buildbot.logic.BuildbotLogicControl;
+import org.libreoffice.ci.gerrit.buildbot.logic.IdleTimeoutListener;
+import org.libreoffice.ci.gerrit.buildbot.model.GerritJob;
+import org.libreoffice.ci.gerrit.buildbot.review.BuildbotIdentity;
+import org.libreoffice.ci.gerrit.buildbot.review.ReviewCache;
+import org.libreoffice.ci.gerrit.buildbot.review.ReviewPublisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gerrit.common.ChangeHooks;
+import com.google.gerrit.common.ChangeListener;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gerrit.reviewdb.client.Account;
+import com.google.gerrit.reviewdb.client.Change;
+import com.google.gerrit.reviewdb.client.PatchSet;
+import com.google.gerrit.reviewdb.client.PatchSetApproval;
+import com.google.gerrit.reviewdb.server.ReviewDb;
+import com.google.gerrit.server.IdentifiedUser;
+import com.google.gerrit.server.account.AccountByEmailCache;
+import com.google.gerrit.server.account.GroupMembership;
+import com.google.gerrit.server.config.SitePaths;
+import com.google.gerrit.server.data.AccountAttribute;
+import com.google.gerrit.server.data.ApprovalAttribute;
+import com.google.gerrit.server.data.ChangeAttribute;
+import com.google.gerrit.server.data.PatchSetAttribute;
+import com.google.gerrit.server.events.ChangeAbandonedEvent;
+import com.google.gerrit.server.events.ChangeEvent;
+import com.google.gerrit.server.events.ChangeMergedEvent;
+import com.google.gerrit.server.events.ChangeRestoredEvent;
+import com.google.gerrit.server.events.CommentAddedEvent;
+import com.google.gerrit.server.events.DraftPublishedEvent;
+import com.google.gerrit.server.events.PatchSetCreatedEvent;
+import com.google.gwtorm.server.OrmException;
+import com.google.gwtorm.server.SchemaFactory;
+import com.google.inject.Inject;
+
+public class StreamEventPipeline implements LifecycleListener {
+
+	static final Logger log = LoggerFactory.getLogger(StreamEventPipeline.class);
+	
+    @Inject
+    private ChangeHooks hooks;
+
+    IdentifiedUser buildbot;
+
+    @Inject
+    SchemaFactory<ReviewDb> schema;
+
+    @Inject
+    private IdentifiedUser.GenericFactory identifiedUserFactory;
+
+    @Inject
+    private AccountByEmailCache byEmailCache;
+    
+    @Inject
+    BuildbotConfig config;
+
+    @Inject
+    private SitePaths site;
+    
+    @Inject
+    BuildbotLogicControl control;
+
+    @Inject
+    private ReviewCache reviewCache;
+
+    @Inject
+    private EventQueue eventQueue;
+
+    @Inject
+    private ReviewPublisher publisher;
+
+    @Inject
+    private BuildbotIdentity identity;
+
+    private final Cache<PatchSet.Id, ApprovalSummary> approvalCache = CacheBuilder
+            .newBuilder().maximumSize(1024).expireAfterAccess(1, TimeUnit.DAYS)
+            .build();
+
+    // account:group -> membership
+    private final Cache<String, Boolean> reviewerCache = CacheBuilder
+            .newBuilder().maximumSize(1024)
+            .expireAfterWrite(10, TimeUnit.MINUTES).build();
+
+    @Override
+    public void stop() {
+    	hooks.removeChangeListener(listener);
+    	eventQueue.stop();
+    	control.stop();
+    }
+
+    @Override
+    public void start() {
+        Set<Account.Id> ids = byEmailCache.get(config.getEmail());
+        if (CollectionUtils.isEmpty(ids)) {
+            throw new IllegalStateException("user not found for email: "
+                    + config.getEmail());
+        }
+        Account.Id id = ids.iterator().next();
+        buildbot = identifiedUserFactory.create(id);
+        identity.set(buildbot);
+        control.setIdleTimeoutListener(new IdleTimeoutListener() {
+            @Override
+            public void jobTimedOut(GerritJob job) {
+                publisher.postJobResult(job);
+            }
+        });
+        control.start();
+        eventQueue.start();
+        hooks.addChangeListener(listener, buildbot);
+    }
+
+    private final ChangeListener listener = new ChangeListener() {
+        // runs on Gerrit's event dispatch thread: only cheap checks here,
+        // the rest is done by the intake queue
+        @Override
+        public void onChangeEvent(final ChangeEvent event) {
+        	
+            if (event instanceof PatchSetCreatedEvent) {
+                final PatchSetCreatedEvent patchSetCreatedEvent = (PatchSetCreatedEvent) event;
+                log.debug("patch-set-created project: {}", patchSetCreatedEvent.change.project);
+                if (!config.isProjectSupported(patchSetCreatedEvent.change.project)) {
+                    log.debug("skip event: buildbot is not activated for project: {} ", patchSetCreatedEvent.change.project);
+                    return;
+                }
+                evict(patchSetCreatedEvent.change);
+                intake(patchSetCreatedEvent.change, "patchset-created:"
+                        + patchSetCreatedEvent.patchSet.revision, new Runnable() {
+                    @Override
+                    public void run() {
+                        onPatchSetCreated(patchSetCreatedEvent);
+                    }
+                });
+            } else if (event instanceof CommentAddedEvent) {
+                final CommentAddedEvent commentAddedEvent = (CommentAddedEvent) event;
+                if (!config.isProjectSupported(commentAddedEvent.change.project)) {
+                    log.debug("skip event: buildbot is not activated for project: {} ", commentAddedEvent.change.project);
+                    return;
+                }
+                // never merged: each comment only carries the votes of
+                // its author, the summary needs all of them
+                intake(commentAddedEvent.change, null, new Runnable() {
+                    @Override
+                    public void run() {
+                        onCommentAdded(commentAddedEvent);
+                    }
+                });
+            } else if (event instanceof ChangeAbandonedEvent) {
+                ChangeAbandonedEvent abandonedEvent = (ChangeAbandonedEvent) event;
+                onChangeClosed(abandonedEvent.change, "change was abandoned");
+            } else if (event instanceof ChangeMergedEvent) {
+                ChangeMergedEvent mergedEvent = (ChangeMergedEvent) event;
+                onChangeClosed(mergedEvent.change, "change was merged");
+            } else if (event instanceof ChangeRestoredEvent) {
+                ChangeRestoredEvent restoredEvent = (ChangeRestoredEvent) event;
+                onChangeReopened(restoredEvent.change, restoredEvent.patchSet);
+            } else if (event instanceof DraftPublishedEvent) {
+                DraftPublishedEvent draftPublishedEvent = (DraftPublishedEvent) event;
+                onChangeReopened(draftPublishedEvent.change,
+                        draftPublishedEvent.patchSet);
+            }
+        }
+
+        // state changes must be handled in order: they are never merged
+        private void onChangeClosed(final ChangeAttribute change,
+                final String reason) {
+            if (!config.isProjectSupported(change.project)) {
+                return;
+            }
+            evict(change);
+            intake(change, null, new Runnable() {
+                @Override
+                public void run() {
+                    int discarded = control.abortChange(change.project,
+                            change.id, change.number == null ? 0 : Change.Id
+                                    .parse(change.number).get(),
+                            change.branch, reason);
+                    log.debug("{} {}: {} task(s) discarded", new Object[] {
+                            change.id, reason, discarded });
+                }
+            });
+        }
+
+        // a restored change or a published draft is built like a new
+        // patch set
+        private void onChangeReopened(final ChangeAttribute change,
+                final PatchSetAttribute patchSet) {
+            if (!config.isProjectSupported(change.project)) {
+                return;
+            }
+            evict(change);
+            intake(change, null, new Runnable() {
+                @Override
+                public void run() {
+                    BuildbotProject p = config.findProject(change.project);
+                    if (TriggerStrategy.PATCHSET_CREATED != p.getTriggerStrategy()
+                            || patchSet == null) {
+                        return;
+                    }
+                    control.startPatchSet(change.project, change.id,
+                            change.branch, patchSet.ref, patchSet.revision);
+                }
+            });
+        }
+
+        // reviews are only posted to supported projects, the cache has
+        // nothing of the others
+        private void evict(ChangeAttribute change) {
+            if (change.number != null) {
+                reviewCache.evict(Change.Id.parse(change.number));
+            }
+        }
+
+        private void intake(ChangeAttribute change, String key, Runnable task) {
+            eventQueue.submit(change.project + "/" + change.number, key, task);
+        }
+
+        private void onPatchSetCreated(PatchSetCreatedEvent patchSetCreatedEvent) {
+            BuildbotProject p = config.findProject(patchSetCreatedEvent.change.project);
+
+            if (TriggerStrategy.PATCHSET_CREATED != p.getTriggerStrategy()) {
+                log.debug("skip event: non PATCHSET_CREATED trigger strategie for project: {} ", 
+                        patchSetCreatedEvent.change.project);
+                GerritJob job = control.findJobByChange(
+                        patchSetCreatedEvent.change.project, 
+                        patchSetCreatedEvent.change.id);
+                if (job == null) {
+                    return;
+                }
+                control.handleStaleJob(patchSetCreatedEvent.change.project, job);
+                return;
+            }
+            log.debug("dispatch event branch: {}, ref: {}",
+                    patchSetCreatedEvent.change.branch,
+                    patchSetCreatedEvent.patchSet.ref);
+            control.startPatchSet(patchSetCreatedEvent.change.project,
+                    patchSetCreatedEvent.change.id,
+                    patchSetCreatedEvent.change.branch,
+                    patchSetCreatedEvent.patchSet.ref,
+                    patchSetCreatedEvent.patchSet.revision);
+        }
+
+        private void onCommentAdded(CommentAddedEvent commentAddedEvent) {
+            BuildbotProject p = config.findProject(commentAddedEvent.change.project);
+
+            if (TriggerStrategy.POSITIVE_REVIEW != p.getTriggerStrategy()) {
+                log.debug("skip event: non POSITIVE_REVIEW trigger strategie for project: {} ", commentAddedEvent.change.project);
+                return;
+            }
+            log.debug("investigating commentAddedEvent branch: {}, ref: {}", 
+                    commentAddedEvent.change.branch,
+                    commentAddedEvent.patchSet.ref);
+            Account.Id author = findAccount(commentAddedEvent.author);
+            // votes of the buildbot count as well
+            ApprovalSummary summary = updateApprovals(p, commentAddedEvent, author);
+            if (isEventOriginatorBuildbot(commentAddedEvent, author)) {
+                log.debug("ignore comment (buildbot is the originator)");
+                return;
+            }
+
+            if (checkPositiveReviewApply(commentAddedEvent, summary)) {
+                log.debug("dispatch event branch: {}, ref: {}",
+                        commentAddedEvent.change.branch,
+                        commentAddedEvent.patchSet.ref);
+                control.startGerritJob(commentAddedEvent.change.project,
+                        commentAddedEvent.change.id,
+                        commentAddedEvent.change.branch,
+                        commentAddedEvent.patchSet.ref,
+                        commentAddedEvent.patchSet.revision);
+            }
+        }
+
+        private boolean isEventOriginatorBuildbot(
+                CommentAddedEvent commentAddedEvent, Account.Id author) {
+            // check if the buildbot itself is the originator of this event
+            if (config.getEmail().equalsIgnoreCase(commentAddedEvent.author.email)) {
+                return true;
+            }
+            return buildbot.getAccountId().equals(author);
+        }
+    };
+
+    private Account.Id findAccount(AccountAttribute author) {
+        if (author == null || author.email == null) {
+            return null;
+        }
+        Set<Account.Id> ids = byEmailCache.get(author.email);
+        return ids.isEmpty() ? null : ids.iterator().next();
+    }
+
+    private ApprovalSummary updateApprovals(BuildbotProject p,
+            CommentAddedEvent commentAddedEvent, Account.Id author) {
+        PatchSet.Id id = PatchSet.Id.fromRef(commentAddedEvent.patchSet.ref);
+        if (author == null) {
+            // the votes can not be put into the summary without their
+            // author, load it again with them
+            approvalCache.invalidate(id);
+        }
+        ApprovalSummary summary = approvals(p, id);
+        if (summary == null || author == null
+                || commentAddedEvent.approvals == null) {
+            return summary;
+        }
+        // a freshly loaded summary has these already, putting them
+        // again does no harm
+        boolean reviewer = isReviewer(p, author);
+        for (ApprovalAttribute a : commentAddedEvent.approvals) {
+            summary.put(author, a.type, Short.parseShort(a.value), reviewer);
+        }
+        return summary;
+    }
+
+    private ApprovalSummary approvals(final BuildbotProject p,
+            final PatchSet.Id id) {
+        try {
+            return approvalCache.get(id, new Callable<ApprovalSummary>() {
+                @Override
+                public ApprovalSummary call() throws OrmException {
+                    return loadApprovals(p, id);
+                }
+            });
+        } catch (ExecutionException e) {
+            log.error("Cannot load patch set data for " + id, e.getCause());
+            return null;
+        }
+    }
+
+    private ApprovalSummary loadApprovals(BuildbotProject p, PatchSet.Id id)
+            throws OrmException {
+        ApprovalSummary summary = new ApprovalSummary();
+        final ReviewDb db = schema.open();
+        try {
+            for (PatchSetApproval a : db.patchSetApprovals().byPatchSet(id)) {
+                summary.put(a.getAccountId(), a.getLabel(), a.getValue(),
+                        isReviewer(p, a.getAccountId()));
+            }
+        } finally {
+            db.close();
+        }
+        return summary;
+    }
+
+    private boolean isReviewer(final BuildbotProject p, final Account.Id id) {
+        try {
+            return reviewerCache.get(id.get() + ":" + p.getReviewerGroupId().get(),
+                    new Callable<Boolean>() {
+                        @Override
+                        public Boolean call() {
+                            GroupMembership members = identifiedUserFactory
+                                    .create(id).getEffectiveGroups();
+                            return members.contains(p.getReviewerGroupId());
+                        }
+                    });
+        } catch (ExecutionException e) {
+            log.error("Cannot check group membership of " + id, e.getCause());
+            return false;
+        }
+    }
+
+    private boolean checkPositiveReviewApply(CommentAddedEvent commentAddedEvent,
+            ApprovalSummary summary) {
+        // this value seems not to be set
+        // only check if value is set (new gerrit release)
+        if (commentAddedEvent.change.status != null) {
+            // check if the patch set is NEW
+            if (Change.Status.NEW != commentAddedEvent.change.status) {
+                log.debug("ignore this comment: status of this patch set {} is not NEW", commentAddedEvent.patchSet.revision);
+                return false;
+            }
+        }
+
+        // check if build job is pending for this patch set
+        GerritJob job = control.findJobByRevision(commentAddedEvent.change.project, 
+        		commentAddedEvent.patchSet.revision);
+        if (job != null) {
+            log.debug("ignore this comment: build job was already scheduled at {}", job.getStartTime());
+            return false;
+        }
+
+        BuildbotProject p = config.findProject(commentAddedEvent.change.project);
+        // check branch if configured
+        if (!p.getBranches().isEmpty()) {
+        	if (!p.getBranches().contains(commentAddedEvent.change.branch)) {
+        		log.debug("ignore this comment: branch not match {}", commentAddedEvent.change.branch);
+        		return false;
+        	}
+        }
+        
+        /**
+         * it has no review < 0,
+         * it has no verify < 0,
+         * it has no verify > 0 and
+         * it has at least 1 review > 0 from a user that belongs to the `Reviewer` Group
+         */
+        return summary != null && summary.isPositive();
+    }
+
+}
@@ -15,7 +15,10 @@ import java.util.Date;
 
 import org.libreoffice.ci.gerrit.buildbot.config.BuildbotConfig;
 import org.libreoffice.ci.gerrit.buildbot.logic.BuildbotLogicControl;
+import org.libreoffice.ci.gerrit.buildbot.metrics.Histogram;
+import org.libreoffice.ci.gerrit.buildbot.metrics.Metrics;
 
+import com.google.gerrit.sshd.CommandMetaData;
 import com.google.gerrit.sshd.SshCommand;
 import com.google.gwtorm.server.OrmException;
 import com.google.inject.Inject;
@@ -27,12 +30,25 @@ public abstract class BuildbotSshCommand extends SshCommand {
 
 	@Inject
 	protected BuildbotConfig config;
+
+	@Inject
+	protected Metrics metrics;
     
 	protected abstract void doRun() throws UnloggedFailure, OrmException, Failure;
 
 	@Override
     protected final void run() throws UnloggedFailure, OrmException, Failure {
-	    doRun();
+	    long t = System.nanoTime();
+	    try {
+	        doRun();
+	    } finally {
+	        CommandMetaData meta = getClass().getAnnotation(CommandMetaData.class);
+	        metrics.histogram("buildbot_command_seconds",
+	                "Latency of the buildbot ssh commands.", Histogram.LATENCY,
+	                Histogram.NANOS, "command",
+	                meta == null ? getClass().getSimpleName() : meta.name())
+	                .observe(System.nanoTime() - t);
+	    }
 	}
 
     protected static String time(final long now, final long delay) {
@@ -0,0 +1,268 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.commands;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.sshd.server.Environment;
+import org.kohsuke.args4j.Argument;
+import org.kohsuke.args4j.Option;
+import org.libreoffice.ci.gerrit.buildbot.BuildbotModule;
+import org.libreoffice.ci.gerrit.buildbot.config.BuildbotConfig;
+import org.libreoffice.ci.gerrit.buildbot.logic.BuildbotLogicControl;
+import org.libreoffice.ci.gerrit.buildbot.metrics.Histogram;
+import org.libreoffice.ci.gerrit.buildbot.metrics.Metrics;
+import org.libreoffice.ci.gerrit.buildbot.model.BuildbotPlatformJob;
+import org.libreoffice.ci.gerrit.buildbot.model.Os;
+import org.libreoffice.ci.gerrit.buildbot.model.TbJobDescriptor;
+import org.libreoffice.ci.gerrit.buildbot.review.ReviewPublisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.gerrit.common.data.GlobalCapability;
+import com.google.gerrit.extensions.annotations.CapabilityScope;
+import com.google.gerrit.extensions.annotations.RequiresCapability;
+import com.google.gerrit.server.IdentifiedUser;
+import com.google.gerrit.server.project.ProjectControl;
+import com.google.gerrit.server.util.RequestScopePropagator;
+import com.google.gerrit.sshd.BaseCommand;
+import com.google.gerrit.sshd.CommandMetaData;
+import com.google.inject.Inject;
+
+/**
+ * Unlike the other commands, get does not run on a ssh worker thread.
+ * Like stream-events it returns from {@link #start(Environment)} at once:
+ * the request waits in the scheduler without a thread, and the outcome is
+ * written and the command exits when a task arrives or the wait is over.
+ */
+@RequiresCapability(value = GlobalCapability.VIEW_QUEUE, scope = CapabilityScope.CORE)
+@CommandMetaData(name="get", descr="Get a task from platform specific queue")
+public final class GetCommand extends BaseCommand {
+    static final Logger log = LoggerFactory.getLogger(GetCommand.class);
+
+    @Option(name = "--project", aliases = { "-p" }, required = true, metaVar = "PROJECT", usage = "name of the project for which the task should be polled")
+    private ProjectControl projectControl;
+
+    @Option(name = "--platform", aliases = { "-a" }, required = false, metaVar = "PLATFORM", usage = "name of the platform (deprecated, use --os instead)")
+    private Platform platform;
+    
+    @Option(name = "--os", aliases = { "-o" }, required = false, metaVar = "OS", usage = "name of the operating system")
+    private Os os;
+
+    @Option(name = "--id", aliases = { "-i" }, required = false, metaVar = "TB", usage = "id of the tinderbox")
+    private String box;
+
+    @Option(name = "--format", aliases = { "-f" }, required = false, metaVar = "FORMAT", usage = "output display format")
+    private FormatType format = FormatType.TEXT;
+
+    @Argument(index = 0, required = false, multiValued = true, metaVar = "BRANCH", usage = "branch[es] to get a task for")
+    void addPatchSetId(final String branch) {
+        branchSet.add(branch);
+    }
+
+    @Option(name = "--test", aliases = { "-t" }, required = false, metaVar = "TEST", usage = "peek a task for test only. Task is not removed from the queue and no reporting a result is possible.")
+    boolean test = false;
+
+    @Option(name = "--wait", aliases = { "-w" }, required = false, metaVar = "SECONDS", usage = "wait up to SECONDS for a task if the queue is empty, at most get.maxWait")
+    private int wait;
+
+    @Inject
+    private BuildbotLogicControl control;
+
+    @Inject
+    private BuildbotConfig config;
+
+    @Inject
+    private Metrics metrics;
+
+    @Inject
+    private IdentifiedUser user;
+
+    @Inject
+    private ReviewPublisher publisher;
+
+    // the outcome is reported on a pool thread, in the request scope
+    // of the command
+    @Inject
+    private RequestScopePropagator propagator;
+
+    private Set<String> branchSet = Sets.newHashSet();
+
+    private PrintWriter stdout;
+    private PrintWriter stderr;
+    private long started;
+    private volatile ListenableFuture<TbJobDescriptor> pending;
+
+    @Override
+    public void start(Environment env) throws IOException {
+        started = System.nanoTime();
+        stdout = toPrintWriter(out);
+        stderr = toPrintWriter(err);
+        try {
+            parseCommandLine();
+        } catch (UnloggedFailure e) {
+            String msg = e.getMessage();
+            stderr.print(msg.endsWith("\n") ? msg : msg + "\n");
+            finish(1);
+            return;
+        }
+        BuildbotModule.tbActivity.info(String.format("GET:%s:%s",
+            user.getUserName(), projectControl.getProject().getName()));
+        log.debug("project: {}", projectControl.getProject().getName());
+        if (!config.isProjectSupported(projectControl.getProject().getName())) {
+            String message = String.format(
+                    "project <%s> is not enabled for building!", projectControl
+                            .getProject().getName());
+            stderr.print(message);
+            stderr.write("\n");
+            finish(0);
+            return;
+        }
+        if (os == null && platform == null) {
+            stderr.print("os or platorm parameter must be not empty!");
+            stderr.write("\n");
+            finish(0);
+            return;
+        }
+        if (platform != null) {
+            os = platform.toOs();
+        }
+        if (box != null) {
+            if (!config.isIdentityBuildbotAdmin4Project(projectControl
+                    .getProject().getName(), user)) {
+                String message = String.format(
+                        "only member of buildbot admin group allowed to pass --id option!",
+                        projectControl.getProject().getName());
+                stderr.print(message);
+                stderr.write("\n");
+                finish(0);
+                return;
+            }
+        } else {
+            // default is to use username as TB-ID
+            box = user.getUserName();
+        }
+        if (wait < 0) {
+            stderr.print("wait parameter must not be negative!");
+            stderr.write("\n");
+            finish(0);
+            return;
+        }
+        // tasks of this box whose change went away meanwhile
+        for (BuildbotPlatformJob task : control.findAbortedTasks(
+                projectControl.getProject().getName(), box)) {
+            stderr.print(String.format("abort: ticket=%s reason=%s\n",
+                    task.getTicketString(), task.getAbortReason()));
+        }
+        final ListenableFuture<TbJobDescriptor> future = control.awaitTbJob(
+                projectControl.getProject().getName(), os, branchSet, box,
+                test, Math.min(TimeUnit.SECONDS.toMillis(wait),
+                        config.getMaxWait()));
+        pending = future;
+        final Callable<Void> report = propagator.wrap(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                report(future.get());
+                return null;
+            }
+        });
+        future.addListener(new Runnable() {
+            @Override
+            public void run() {
+                if (future.isCancelled()) {
+                    // the session is gone
+                    return;
+                }
+                try {
+                    report.call();
+                    finish(0);
+                } catch (Exception e) {
+                    log.error("cannot report the task", e);
+                    finish(1);
+                }
+            }
+        }, MoreExecutors.sameThreadExecutor());
+    }
+
+    /** The session is closed: give up the wait. */
+    @Override
+    public void destroy() {
+        ListenableFuture<TbJobDescriptor> f = pending;
+        if (f != null) {
+            f.cancel(false);
+        }
+    }
+
+    private void finish(int rc) {
+        stdout.flush();
+        stderr.flush();
+        metrics.histogram("buildbot_command_seconds",
+                "Latency of the buildbot ssh commands.", Histogram.LATENCY,
+                Histogram.NANOS, "command", "get").observe(
+                System.nanoTime() - started);
+        onExit(rc);
+    }
+
+    private void report(TbJobDescriptor jobDescriptor) {
+        if (jobDescriptor == null) {
+            if (format != null && format == FormatType.BASH) {
+                stdout.print(String.format("GERRIT_TASK_TICKET=\nGERRIT_TASK_BRANCH=\nGERRIT_TASK_REF=\n"));
+            } else {
+                stdout.print("empty");
+            }
+            BuildbotModule.tbActivity.info(String.format("GET:%s:empty",
+                user.getUserName()));
+        } else {
+            if (!test) {
+        			notifyGerritBuildbotPlatformJobStarted(jobDescriptor.getBuildbotPlatformJob());
+            }
+            reportOutcome(jobDescriptor);
+        }
+    }
+
+    private void reportOutcome(TbJobDescriptor jobDescriptor) {
+		String output;
+		if (format != null && format == FormatType.BASH) {
+		    output = String.format("GERRIT_TASK_TICKET=%s\nGERRIT_TASK_BRANCH=%s\nGERRIT_TASK_REF=%s\n",
+		            jobDescriptor.getTicket(),
+		            jobDescriptor.getBranch(),
+		            jobDescriptor.getRef());
+		} else {
+		    output = String.format("engaged: ticket=%s branch=%s ref=%s\n",
+		            jobDescriptor.getTicket(),
+		            jobDescriptor.getBranch(),
+		            jobDescriptor.getRef());
+		}
+        BuildbotModule.tbActivity.info(String.format("GET:%s:engaged:ticket=%s:branch=%s:ref=%s",
+            user.getUserName(),
+            jobDescriptor.getTicket(),
+            jobDescriptor.getBranch(),
+            jobDescriptor.getRef()));
+		stdout.print(output);
+	}
+
+    void notifyGerritBuildbotPlatformJobStarted(final BuildbotPlatformJob job) {
+        final short status = 0;
+        String changeComment = String.format(
+                "%s build started for %s on %s at %s\n\n", job
+                        .getPlatformString(), job
+                        .getTicket().getId(), job
+                        .getTinderboxId(),
+                BuildbotSshCommand.time(job.getStartTime(), 0));
+        publisher.approveOne(job.getParent(), changeComment, "Code-Review", status);
+    }
+}
@@ -0,0 +1,67 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.commands;
+
+import org.kohsuke.args4j.Option;
+import org.libreoffice.ci.gerrit.buildbot.model.BuildbotPlatformJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gerrit.common.data.GlobalCapability;
+import com.google.gerrit.extensions.annotations.CapabilityScope;
+import com.google.gerrit.extensions.annotations.RequiresCapability;
+import com.google.gerrit.server.IdentifiedUser;
+import com.google.gerrit.sshd.CommandMetaData;
+import com.google.inject.Inject;
+
+/**
+ * Renew the lease of an engaged ticket. The answer is the same as for
+ * the status command, so the tinderbox learns about an abort request
+ * with the same round trip.
+ */
+@RequiresCapability(value = GlobalCapability.VIEW_QUEUE, scope = CapabilityScope.CORE)
+@CommandMetaData(name="heartbeat", descr="Renew the lease of an engaged task")
+public final class HeartbeatCommand extends BuildbotSshCommand {
+    static final Logger log = LoggerFactory.getLogger(HeartbeatCommand.class);
+
+    @Option(metaVar = "TICKET", name = "--ticket", aliases = { "-t" }, required = true, usage = "ticket of the task")
+    private String ticket;
+
+    @Option(name = "--id", aliases = { "-i" }, required = false, metaVar = "TB", usage = "id of the tinderbox")
+    private String box;
+
+    @Option(name = "--format", aliases = { "-f" }, required = false, metaVar = "FORMAT", usage = "output display format")
+    private FormatType format = FormatType.TEXT;
+
+    @Inject
+    private IdentifiedUser user;
+
+    @Override
+    public void doRun() {
+        log.debug("ticket: {}", ticket);
+        if (box != null) {
+            String project = control.findProjectByTicket(ticket);
+            if (project != null
+                    && !config.isIdentityBuildbotAdmin4Project(project, user)) {
+                stderr.print("only member of buildbot admin group allowed to pass --id option!");
+                stderr.write("\n");
+                return;
+            }
+        } else {
+            // default is to use username as TB-ID
+            box = user.getUserName();
+        }
+        BuildbotPlatformJob task = control.renewLease(ticket, box);
+        if (task == null && control.isLeaseExpired(ticket)) {
+            stderr.print(String.format("Lease of ticket %s expired\n", ticket));
+        }
+        StatusCommand.printState(stdout, format, ticket, task);
+    }
+}
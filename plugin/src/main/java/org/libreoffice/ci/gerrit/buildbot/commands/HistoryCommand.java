@@ -0,0 +1,164 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.commands;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+
+import org.kohsuke.args4j.Option;
+import org.libreoffice.ci.gerrit.buildbot.history.HistoryEntry;
+import org.libreoffice.ci.gerrit.buildbot.history.HistoryQuery;
+import org.libreoffice.ci.gerrit.buildbot.history.HistoryStore;
+import org.libreoffice.ci.gerrit.buildbot.model.Os;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+import com.google.gerrit.server.CurrentUser;
+import com.google.gerrit.server.project.ProjectControl;
+import com.google.gerrit.sshd.CommandMetaData;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+
+@CommandMetaData(name="history", descr="Display finished buildbot tasks")
+public final class HistoryCommand extends BuildbotSshCommand {
+    private static final Logger log = LoggerFactory.getLogger(HistoryCommand.class);
+
+    @Option(name = "--project", aliases = { "-p" }, required = true, metaVar = "PROJECT", usage = "name of the project for which the history should be shown")
+    private ProjectControl projectControl;
+
+    @Option(name = "--change", aliases = { "-c" }, required = false, metaVar = "CHANGE", usage = "change number or Change-Id")
+    private String change;
+
+    @Option(name = "--revision", aliases = { "-r" }, required = false, metaVar = "REVISION", usage = "patch set revision, may be abbreviated")
+    private String revision;
+
+    @Option(name = "--branch", aliases = { "-b" }, required = false, metaVar = "BRANCH", usage = "branch name")
+    private String branch;
+
+    @Option(name = "--os", aliases = { "-o" }, required = false, metaVar = "OS", usage = "name of the operating system")
+    private Os os;
+
+    @Option(name = "--id", aliases = { "-i" }, required = false, metaVar = "TB", usage = "id of the tinderbox")
+    private String box;
+
+    @Option(name = "--since", required = false, metaVar = "DATE", usage = "tasks finished at or after, yyyy-MM-dd[ HH:mm]")
+    private String since;
+
+    @Option(name = "--until", required = false, metaVar = "DATE", usage = "tasks finished at or before, yyyy-MM-dd[ HH:mm]")
+    private String until;
+
+    @Option(name = "--limit", aliases = { "-n" }, required = false, metaVar = "N", usage = "number of tasks per page")
+    private int limit = HistoryQuery.DEFAULT_LIMIT;
+
+    @Option(name = "--cursor", required = false, metaVar = "CURSOR", usage = "continue after the page that returned this cursor")
+    private String cursor;
+
+    @Inject
+    private Provider<CurrentUser> cu;
+
+    @Override
+    public void doRun() throws UnloggedFailure {
+        final String p = projectControl.getProject().getName();
+        log.debug("project: {}", p);
+        if (!config.isProjectSupported(p)) {
+            stderr.print(String.format(
+                    "project <%s> is not enabled for building!\n", p));
+            return;
+        }
+        if (!cu.get().getEffectiveGroups()
+                .contains(config.findProject(p).getBuildbotAdminGroupId())
+                &&
+                !cu.get().getEffectiveGroups()
+                .contains(config.findProject(p).getBuildbotUserGroupId())) {
+            String tmp = String.format(
+                    "error: %s has not the ACL to call history command",
+                    Objects.firstNonNull(cu.get().getUserName(), "n/a"));
+            log.warn(tmp);
+            stderr.print(tmp + "\n");
+            return;
+        }
+        HistoryStore history = control.getHistory();
+        if (history == null) {
+            throw new UnloggedFailure(1, "fatal: no task history is kept");
+        }
+        HistoryStore.Page page;
+        try {
+            page = history.query(new HistoryQuery()
+                    .setProject(p)
+                    .setChange(change)
+                    .setRevision(revision)
+                    .setBranch(branch)
+                    .setPlatform(os == null ? null : os.name())
+                    .setBox(box)
+                    .setSince(parseDate(since, 0))
+                    .setUntil(parseDate(until, 60000 - 1))
+                    .setCursor(cursor)
+                    .setLimit(limit));
+        } catch (NumberFormatException e) {
+            throw new UnloggedFailure(1, "fatal: invalid cursor " + cursor);
+        } catch (IOException e) {
+            log.error("cannot read the task history", e);
+            throw new UnloggedFailure(1, "fatal: cannot read the task history");
+        }
+        stdout.print("----------------------------------------------"
+                + "--------------------------------\n");
+        stdout.print(String.format("%-17s %-12s %-8s %-10s %-22s %-3s %s\n", //
+                "Task-Id", "End", "Duration", "Status", "Ref", "Bot", "Branch"));
+        for (HistoryEntry e : page.getEntries()) {
+            stdout.print(String.format(
+                    "%-17s %-12s %-8s %-10s %-22s %-3s %s\n", //
+                    e.getRevision().substring(0,
+                            Math.min(9, e.getRevision().length()))
+                            + "_" + e.getPlatform(),
+                    time(e.getEnded(), 0),
+                    duration(e.getDuration()),
+                    e.getStatus(),
+                    e.getRef(),
+                    e.getBox() == null ? "-" : e.getBox(),
+                    e.getBranch()));
+        }
+        stdout.print("----------------------------------------------"
+                + "--------------------------------\n");
+        stdout.print("  " + page.getEntries().size() + " task(s)\n");
+        if (page.getNext() != null) {
+            stdout.print("  more: --cursor " + page.getNext() + "\n");
+        }
+    }
+
+    // 0 if not given; a date without time covers the whole day
+    private static long parseDate(String date, long slack)
+            throws UnloggedFailure {
+        if (date == null) {
+            return 0;
+        }
+        try {
+            return new SimpleDateFormat("yyyy-MM-dd HH:mm").parse(date)
+                    .getTime() + slack;
+        } catch (ParseException e) {
+            try {
+                long day = new SimpleDateFormat("yyyy-MM-dd").parse(date)
+                        .getTime();
+                return slack == 0 ? day : day + 24 * 3600 * 1000L - 1;
+            } catch (ParseException e2) {
+                throw new UnloggedFailure(1, "fatal: invalid date " + date);
+            }
+        }
+    }
+
+    private static String duration(long ms) {
+        if (ms <= 0) {
+            return "-";
+        }
+        long min = ms / 60000;
+        return String.format("%d:%02d", min / 60, min % 60);
+    }
+}
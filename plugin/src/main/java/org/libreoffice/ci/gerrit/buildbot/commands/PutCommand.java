@@ -13,6 +13,8 @@ import javax.annotation.Nullable;
 
 import org.kohsuke.args4j.Option;
 import org.libreoffice.ci.gerrit.buildbot.BuildbotModule;
+import org.libreoffice.ci.gerrit.buildbot.metrics.Counter;
+import org.libreoffice.ci.gerrit.buildbot.model.BuildbotPlatformJob;
 import org.libreoffice.ci.gerrit.buildbot.model.GerritJob;
 import org.libreoffice.ci.gerrit.buildbot.model.TbJobResult;
 import org.libreoffice.ci.gerrit.buildbot.review.ReviewPublisher;
@@ -20,6 +22,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Strings;
+import com.google.common.io.CountingInputStream;
 import com.google.gerrit.common.data.GlobalCapability;
 import com.google.gerrit.extensions.annotations.CapabilityScope;
 import com.google.gerrit.extensions.annotations.RequiresCapability;
@@ -60,8 +63,7 @@ public final class PutCommand extends BuildbotSshCommand {
 
 	@Override
 	public void doRun() throws UnloggedFailure, OrmException, Failure {
-	    synchronized (control) {
-	        BuildbotModule.tbActivity.info(String.format("PUT:%s:%s",
+	    BuildbotModule.tbActivity.info(String.format("PUT:%s:%s",
                 user.getUserName(), ticket));
     		log.debug("ticket: {}", ticket);
     		if (Strings.isNullOrEmpty(ticket)) {
@@ -103,70 +105,72 @@ public final class PutCommand extends BuildbotSshCommand {
                     return;
                 }
             }
+    		if (status.isDiscarded() || status.isExpired() || status.isTimeout()) {
+    			String tmp = String.format("Status %s can not be reported",
+    					status.name());
+    			stderr.print(tmp);
+    			stderr.write("\n");
+    			log.warn(tmp);
+    			return;
+    		}
+    		// checked before the log is stored: a rejected put must not
+    		// replace the log of the ticket
+    		BuildbotPlatformJob task = control.findTaskByTicket(ticket);
+    		if (task == null || !box.equals(task.getTinderboxId())) {
+    			unknownTicket();
+    			return;
+    		}
+    		if (status.isAborted() && !task.isAbortRequested()) {
+    			String tmp = String.format("No abort was requested for ticket %s",
+    					ticket);
+    			stderr.print(tmp);
+    			stderr.write("\n");
+    			log.warn(tmp);
+    			return;
+    		}
             if ("-".equals(urllog)) {
+                CountingInputStream logIn = new CountingInputStream(in);
                 urllog = config.getPublisher().publishLog(config, ticket,
-                        box, status, in);
+                        box, status, logIn);
+                Counter ingested = metrics.counter(
+                        "buildbot_log_ingest_bytes_total",
+                        "Compressed log bytes received with put.");
+                ingested.add(logIn.getCount());
             }
     		TbJobResult result = control.setResultPossible(ticket, box, status,
     				urllog);
     		if (result == null) {
-    			String tmp = String.format("Can not find task for ticket %s",
-    					ticket);
+    			// the lease expired or a result came first during the
+    			// upload, the log is the one of this claim only
+    			unknownTicket();
+    			return;
+    		}
+    		GerritJob job = result.getTbPlatformJob().getParent();
+    		if (job.isAborted()) {
+    			// nothing to report to an abandoned or merged change
+    			String tmp = String.format("Result for ticket %s not reported: %s",
+    					ticket, job.getAbortReason());
     			stderr.print(tmp);
     			stderr.write("\n");
-    			log.warn(tmp);
+    			log.debug(tmp);
     			return;
     		}
     		publisher.postResultToReview(result);
-    		try {
-    			Thread.sleep(1000);
-    		} catch(InterruptedException e) {
-    			log.error("fatal: internal server error", e);
-    			die(e);
-    		}
-    
-    		if (result.getTbPlatformJob().getParent().allJobsReady()) {
-    			notifyGerritJobFinished(result.getTbPlatformJob().getParent());
+    		// decided under the job lock: only the put that completed the
+    		// last task sees it, so the combined vote is posted once
+    		if (result.isJobFinished()) {
+    			publisher.postJobResult(job);
     		}
-	    }
 	}
 
-	public void notifyGerritJobFinished(GerritJob job) {
-		StringBuilder builder = new StringBuilder(256);
-		builder.append(String.format("Build %s:\n", job.getId()));
-		short combinedStatus = 1;
-		for (TbJobResult tbResult : job.getTbResultList()) {
-			// ignore canceled tasks
-			if (tbResult.ignoreJobStatus()) {
-				continue;
-			}
-			if (!tbResult.getStatus().isSuccess()) {
-				combinedStatus = -1;
-			}
-			// old not pulished impl on 2.5 branch was
-			//short combinedStatus = verifiedType.getMax().getValue();
-			//if (!tbResult.getStatus().isSuccess() || job.isStale()) {
-            //    // Later we want this to be configurable
-            //    // currently only report success and ignore failure
-            //    // Note we reported already -1 on per platform task base
-            //    log.warn("notifyGerritJobFinished return");
-            //    return;
-            //}
-            builder.append(String.format("* on %s %s : %s\n",
-                    tbResult.getPlatform()
-                            .name(),
-                    tbResult
-                            .getStatus().name(),
-                    Strings.nullToEmpty(tbResult.getLog())));
-		}
-		try {
-		  publisher.approveOne(job, builder.toString(),
-              "Verified", combinedStatus);
-		} catch (Exception e) {
-        	String tmp = String.format("fatal: internal server error while approving\n");
-        	writeError(tmp);
-        	log.error(tmp, e);
-			die(e);
-		}
+	private void unknownTicket() {
+		String tmp = control.isLeaseExpired(ticket)
+				? String.format("Lease of ticket %s expired, the task was handed out again: result ignored",
+						ticket)
+				: String.format("Can not find task for ticket %s",
+						ticket);
+		stderr.print(tmp);
+		stderr.write("\n");
+		log.warn(tmp);
 	}
 }
@@ -71,33 +71,31 @@ public final class ScheduleCommand extends SshCommand {
 
     @Override
     public void run() throws UnloggedFailure, Failure, Exception {
-        synchronized (control) {
-            log.debug("schedule");
-            BuildbotModule.admActivity.info(String.format("SCHEDULE:%s:%s",
-                cu.get().getUserName(), projectControl.getProject().getName()));
-            final String p = projectControl.getProject().getName();
-            if (!config.isProjectSupported(p)) {
-                String tmp = String.format(
-                        "error: project %s is not supported", p);
-                log.warn(tmp);
-                stderr.print(tmp + "\n");
-                return;
-            }
-            if (!cu.get().getEffectiveGroups()
-                    .contains(config.findProject(p).getBuildbotAdminGroupId())
-                    && 
-                    !cu.get().getEffectiveGroups()
-                    .contains(config.findProject(p).getBuildbotUserGroupId())) {
-                String tmp = String.format(
-                        "error: %s has not the ACL to call schedule command",
-                        Objects.firstNonNull(cu.get().getUserName(), "n/a"));
-                log.warn(tmp);
-                stderr.print(tmp + "\n");
-                return;
-            }
-            for (PatchSet.Id id : patchSetIds) {
-                doSchedule(id);
-            }
+        log.debug("schedule");
+        BuildbotModule.admActivity.info(String.format("SCHEDULE:%s:%s",
+            cu.get().getUserName(), projectControl.getProject().getName()));
+        final String p = projectControl.getProject().getName();
+        if (!config.isProjectSupported(p)) {
+            String tmp = String.format(
+                    "error: project %s is not supported", p);
+            log.warn(tmp);
+            stderr.print(tmp + "\n");
+            return;
+        }
+        if (!cu.get().getEffectiveGroups()
+                .contains(config.findProject(p).getBuildbotAdminGroupId())
+                && 
+                !cu.get().getEffectiveGroups()
+                .contains(config.findProject(p).getBuildbotUserGroupId())) {
+            String tmp = String.format(
+                    "error: %s has not the ACL to call schedule command",
+                    Objects.firstNonNull(cu.get().getUserName(), "n/a"));
+            log.warn(tmp);
+            stderr.print(tmp + "\n");
+            return;
+        }
+        for (PatchSet.Id id : patchSetIds) {
+            doSchedule(id);
         }
     }
 
@@ -121,8 +119,8 @@ public final class ScheduleCommand extends SshCommand {
         }
 
         // check if build job is pending for this patch set
-        GerritJob job = control.findJobByPatchSet(projectControl.getProject()
-                .getName(), patchSet);
+        GerritJob job = control.findJobByRevision(projectControl.getProject()
+                .getName(), patchSet.getRevision().get());
         if (job != null) {
             String tmp = String.format(
                     "error: build job already scheduled at %s",
@@ -147,7 +145,9 @@ public final class ScheduleCommand extends SshCommand {
          log.debug("dispatch event branch: {}, ref: {}",
                  change.getDest().getShortName(),
                  patchSet.getRefName());
-         control.startGerritJob(projectControl.getProject().getName(), change, patchSet);
+         control.startGerritJob(projectControl.getProject().getName(),
+                 change.getKey().toString(), change.getDest().getShortName(),
+                 patchSet.getRefName(), patchSet.getRevision().get());
     }
 
     private Set<PatchSet.Id> parsePatchSetId(final String patchIdentity)
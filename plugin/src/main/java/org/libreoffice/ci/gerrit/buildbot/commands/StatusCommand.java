@@ -0,0 +1,74 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.commands;
+
+import java.io.PrintWriter;
+
+import org.kohsuke.args4j.Option;
+import org.libreoffice.ci.gerrit.buildbot.model.BuildbotPlatformJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Strings;
+import com.google.gerrit.common.data.GlobalCapability;
+import com.google.gerrit.extensions.annotations.CapabilityScope;
+import com.google.gerrit.extensions.annotations.RequiresCapability;
+import com.google.gerrit.sshd.CommandMetaData;
+
+/**
+ * Cheap poll for a running build: tells the tinderbox whether it should
+ * go on or abort.
+ */
+@RequiresCapability(value = GlobalCapability.VIEW_QUEUE, scope = CapabilityScope.CORE)
+@CommandMetaData(name="status", descr="Show the state of an engaged task")
+public final class StatusCommand extends BuildbotSshCommand {
+    static final Logger log = LoggerFactory.getLogger(StatusCommand.class);
+
+    static final String RUNNING = "RUNNING";
+    static final String ABORT_REQUESTED = "ABORT_REQUESTED";
+    static final String UNKNOWN = "UNKNOWN";
+
+    @Option(metaVar = "TICKET", name = "--ticket", aliases = { "-t" }, required = true, usage = "ticket of the task")
+    private String ticket;
+
+    @Option(name = "--format", aliases = { "-f" }, required = false, metaVar = "FORMAT", usage = "output display format")
+    private FormatType format = FormatType.TEXT;
+
+    @Override
+    public void doRun() {
+        log.debug("ticket: {}", ticket);
+        printState(stdout, format, ticket, control.findTaskByTicket(ticket));
+    }
+
+    static void printState(PrintWriter stdout, FormatType format,
+            String ticket, BuildbotPlatformJob task) {
+        String state;
+        String reason = null;
+        if (task == null || task.isReady()) {
+            // finished, discarded or never handed out
+            state = UNKNOWN;
+        } else if (task.isAbortRequested()) {
+            state = ABORT_REQUESTED;
+            reason = task.getAbortReason();
+        } else {
+            state = RUNNING;
+        }
+        if (format == FormatType.BASH) {
+            stdout.print(String.format(
+                    "GERRIT_TASK_STATE=%s\nGERRIT_TASK_ABORT_REASON='%s'\n",
+                    state, Strings.nullToEmpty(reason).replace("'", "'\\''")));
+        } else if (reason != null) {
+            stdout.print(String.format("%s: ticket=%s reason=%s\n", state,
+                    ticket, reason));
+        } else {
+            stdout.print(String.format("%s: ticket=%s\n", state, ticket));
+        }
+    }
+}
@@ -91,7 +91,6 @@ public final class VerifyCommand extends BuildbotSshCommand {
 
 	@Override
 	public void doRun() throws UnloggedFailure, OrmException {
-	    synchronized (control) {
     		log.debug("verify");
     		final String p = projectControl.getProject().getName();
     		if (!config.isProjectSupported(p)) {
@@ -110,7 +109,6 @@ public final class VerifyCommand extends BuildbotSshCommand {
     		for (PatchSet.Id id : patchSetIds) {
     			doVerify(id);
     		}
-	    }
 	}
 
 	private void doVerify(PatchSet.Id id) throws OrmException {
@@ -138,14 +136,7 @@ public final class VerifyCommand extends BuildbotSshCommand {
 		final String changeComment = String
 				.format("Verification status of the Buildbot is manually set to %d by %s",
 						v, user.getUserName());
-		try {
-		  publisher.approveOne(ps.getId(), changeComment, optionList);
-		} catch (Exception e) {
-        	String tmp = String.format("fatal: internal server error while approving %s\n", ps.getId());
-        	writeError(tmp);
-        	log.error(tmp, e);
-			die(e);
-        }
+		publisher.approveOne(ps.getId(), changeComment, optionList);
 	}
 
 	private Set<PatchSet.Id> parsePatchSetId(final String patchIdentity)
@@ -9,21 +9,16 @@
 
 package org.libreoffice.ci.gerrit.buildbot.config;
 
-import java.util.List;
-
 import org.libreoffice.ci.gerrit.buildbot.publisher.LogPublisher;
 
-import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableList;
 import com.google.gerrit.reviewdb.client.AccountGroup;
 import com.google.gerrit.reviewdb.client.AccountGroup.UUID;
 import com.google.gerrit.server.IdentifiedUser;
 
-public class BuildbotConfig {
+public class BuildbotConfig extends SchedulerConfig<BuildbotProject> {
 
     private String email;
     private String logDir;
-    private ImmutableList<BuildbotProject> projects;
     private boolean forgeReviewerIdentity;
 
     private boolean externalLogViewer;
@@ -33,6 +28,8 @@ public class BuildbotConfig {
     private LogPublisher publisher;
     private AccountGroup.UUID buildbotAdminGroupId;
     private AccountGroup.UUID buildbotUserGroupId;
+    private long reviewWindow;
+    private long maxWait;
 
     public String getEmail() {
         return email;
@@ -50,28 +47,6 @@ public class BuildbotConfig {
         this.logDir = logDir;
     }
 
-    public void setProjects(ImmutableList<BuildbotProject> projects) {
-        this.projects = projects;
-    }
-
-    public List<BuildbotProject> getProjects() {
-        return projects;
-    }
-
-    public BuildbotProject findProject(String name) {
-        Preconditions.checkNotNull(name, "name must not be null");
-        for (BuildbotProject p : projects) {
-            if (p.getName().equals(name)) {
-                return p;
-            }
-        }
-        return null;
-    }
-
-    public boolean isProjectSupported(String name) {
-        return findProject(name) == null ? false : true;
-    }
-
     public void setForgeReviewerIdentity(boolean forge) {
         this.forgeReviewerIdentity = forge;
     }
@@ -144,5 +119,22 @@ public class BuildbotConfig {
     public UUID getBuildbotUserGroupId() {
         return this.buildbotUserGroupId;
     }
-}
 
+    /** Milliseconds to hold back a review for merging. */
+    public long getReviewWindow() {
+        return reviewWindow;
+    }
+
+    public void setReviewWindow(long reviewWindow) {
+        this.reviewWindow = reviewWindow;
+    }
+
+    /** Milliseconds a get request may wait for a task at most. */
+    public long getMaxWait() {
+        return maxWait;
+    }
+
+    public void setMaxWait(long maxWait) {
+        this.maxWait = maxWait;
+    }
+}
@@ -13,10 +13,12 @@ import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jgit.errors.ConfigInvalidException;
 import org.eclipse.jgit.storage.file.FileBasedConfig;
 import org.eclipse.jgit.util.FS;
+import org.libreoffice.ci.gerrit.buildbot.model.Os;
 import org.libreoffice.ci.gerrit.buildbot.publisher.BuildbotLogPublisher;
 import org.libreoffice.ci.gerrit.buildbot.publisher.JenkinsLogPublisher;
 
@@ -26,6 +28,7 @@ import com.google.common.collect.Lists;
 import com.google.gerrit.common.errors.NoSuchGroupException;
 import com.google.gerrit.reviewdb.client.AccountGroup;
 import com.google.gerrit.server.account.GroupCache;
+import com.google.gerrit.server.config.ConfigUtil;
 import com.google.gerrit.server.config.SitePaths;
 import com.google.gwtorm.server.OrmException;
 import com.google.inject.Inject;
@@ -46,10 +49,28 @@ public class BuildbotConfigProvider implements Provider<BuildbotConfig> {
     private final static String KEY_JOB = "job";
     private final static String KEY_URL = "url";
 
+    private final static String SECTION_REVIEW = "review";
+    private final static String KEY_WINDOW = "window";
+    private final static long DEFAULT_REVIEW_WINDOW = 5000;
+
+    private final static String SECTION_GET = "get";
+    private final static String KEY_MAX_WAIT = "maxWait";
+    private final static long DEFAULT_MAX_WAIT = TimeUnit.MINUTES.toMillis(5);
+
+    private final static String SECTION_LEASE = "lease";
+    private final static String KEY_DURATION = "duration";
+    // off: tinderbox scripts that send no heartbeat would lose their builds
+    private final static long DEFAULT_LEASE = 0;
+
+    private final static String SECTION_JOURNAL = "journal";
+    private final static String SECTION_HISTORY = "history";
+
     private final static String SECTION_PROJECT = "project";
     private final static String KEY_BRANCH = "branch";
     private final static String KEY_TRIGGER = "trigger";
     private final static String KEY_REVIEWER_GROUP_NAME = "reviewerGroupName";
+    private final static String KEY_IDLE_TIMEOUT = "idleTimeout";
+    private final static long DEFAULT_IDLE_TIMEOUT = TimeUnit.DAYS.toMillis(7);
 
     private SitePaths site;
 
@@ -130,6 +151,30 @@ public class BuildbotConfigProvider implements Provider<BuildbotConfig> {
             config.setlogPublisher(jenkinsLogPublisher);
         }
 
+        config.setReviewWindow(ConfigUtil.getTimeUnit(cfg, SECTION_REVIEW,
+                null, KEY_WINDOW, DEFAULT_REVIEW_WINDOW, TimeUnit.MILLISECONDS));
+        config.setMaxWait(ConfigUtil.getTimeUnit(cfg, SECTION_GET, null,
+                KEY_MAX_WAIT, DEFAULT_MAX_WAIT, TimeUnit.MILLISECONDS));
+
+        long lease = ConfigUtil.getTimeUnit(cfg, SECTION_LEASE, null,
+                KEY_DURATION, DEFAULT_LEASE, TimeUnit.MILLISECONDS);
+        config.setLease(lease);
+        for (Os platform : Os.values()) {
+            String key = platform.name().toLowerCase();
+            if (cfg.getString(SECTION_LEASE, null, key) != null) {
+                config.setLease(platform, ConfigUtil.getTimeUnit(cfg,
+                        SECTION_LEASE, null, key, lease,
+                        TimeUnit.MILLISECONDS));
+            }
+        }
+
+        String journalDir = cfg.getString(SECTION_JOURNAL, null, KEY_DIRECTORY);
+        config.setJournalDir(journalDir != null ? new File(journalDir)
+                : new File(site.data_dir, "buildbot"));
+        String historyDir = cfg.getString(SECTION_HISTORY, null, KEY_DIRECTORY);
+        config.setHistoryDir(historyDir != null ? new File(historyDir)
+                : new File(site.data_dir, "buildbot"));
+
         ImmutableList.Builder<BuildbotProject> dest = ImmutableList.builder();
 
         for (BuildbotProject p : allProjects(config, cfg)) {
@@ -185,6 +230,17 @@ public class BuildbotConfigProvider implements Provider<BuildbotConfig> {
                 KEY_BUILDBOT_USER_GROUP_NAME);
         p.setBuildbotUserGroupId(buildbotUserGroupName == null ? config
                 .getBuildbotUserGroupId() : getGroup(buildbotUserGroupName));
+        long idleTimeout = ConfigUtil.getTimeUnit(cfg, SECTION_PROJECT, name,
+                KEY_IDLE_TIMEOUT, DEFAULT_IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+        p.setIdleTimeout(idleTimeout);
+        for (Os platform : Os.values()) {
+            String key = KEY_IDLE_TIMEOUT + platform.name();
+            if (cfg.getString(SECTION_PROJECT, name, key) != null) {
+                p.setIdleTimeout(platform, ConfigUtil.getTimeUnit(cfg,
+                        SECTION_PROJECT, name, key, idleTimeout,
+                        TimeUnit.MILLISECONDS));
+            }
+        }
         return p;
     }
 
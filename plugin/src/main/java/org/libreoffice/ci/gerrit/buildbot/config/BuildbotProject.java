@@ -1,27 +1,16 @@
 package org.libreoffice.ci.gerrit.buildbot.config;
 
-import java.io.Serializable;
-import java.util.Arrays;
-import java.util.List;
-
-import com.google.common.collect.Lists;
 import com.google.gerrit.reviewdb.client.AccountGroup;
 
-public class BuildbotProject implements Serializable {
+public class BuildbotProject extends SchedulerProject {
     private static final long serialVersionUID = 1L;
-    private String name;
     private TriggerStrategy triggerStrategy;
     private AccountGroup.UUID reviewerGroupId;
     private AccountGroup.UUID buildbotAdminGroupId;
     private AccountGroup.UUID buildbotUserGroupId;
-    private List<String> branches = Lists.newArrayList();
 
     public BuildbotProject(String name) {
-        this.name = name;
-    }
-
-    public String getName() {
-        return name;
+        super(name);
     }
 
     public void setTriggerStrategy(TriggerStrategy triggerStrategy) {
@@ -32,14 +21,6 @@ public class BuildbotProject implements Serializable {
         return this.triggerStrategy;
     }
 
-    public List<String> getBranches() {
-        return branches;
-    }
-
-    public void setBranches(String[] branches) {
-        this.branches = Arrays.asList(branches);
-    }
-
     public AccountGroup.UUID getReviewerGroupId() {
         return reviewerGroupId;
     }
@@ -1,6 +1,7 @@
 package org.libreoffice.ci.gerrit.buildbot.logic;
 
 import org.libreoffice.ci.gerrit.buildbot.config.BuildbotConfig;
+import org.libreoffice.ci.gerrit.buildbot.metrics.Metrics;
 
 import com.google.inject.Inject;
 import com.google.inject.Provider;
@@ -8,13 +9,15 @@ import com.google.inject.Provider;
 public class BuildbotLogicControlProvider implements Provider<BuildbotLogicControl> {
 
 	BuildbotConfig config;
+	Metrics metrics;
 
 	@Inject
-	BuildbotLogicControlProvider(BuildbotConfig config) {
+	BuildbotLogicControlProvider(BuildbotConfig config, Metrics metrics) {
 		this.config = config;
+		this.metrics = metrics;
 	}
 
 	public BuildbotLogicControl get() {
-		return new BuildbotLogicControl(config);
+		return new BuildbotLogicControl(config, metrics);
 	}
 }
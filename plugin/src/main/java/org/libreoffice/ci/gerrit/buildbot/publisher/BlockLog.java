@@ -0,0 +1,212 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.publisher;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A log stored as independently compressed blocks, written by
+ * {@link BlockLogWriter}. The file is
+ * <pre>
+ * header   gzip header
+ * block*   deflate data of BLOCK_SIZE bytes of the log ending with a full
+ *          flush, the last one may be shorter
+ * trailer  end of the deflate stream, gzip trailer of the whole log
+ * entry*   per block: uncompressed offset (long), offset of its deflate
+ *          data (long), number of newlines in the block (int)
+ * footer   offset of the first entry (long), number of blocks (int),
+ *          length of the log (long), number of newlines (long), MAGIC (int)
+ * </pre>
+ * all numbers of the index and footer big endian. Up to the index the
+ * file is a gzip stream of the whole log with a single member, see
+ * {@link #dataLength()}. Reads inflate only the blocks they touch. Not
+ * thread safe, open it per request.
+ */
+public class BlockLog implements Closeable {
+    public static final String SUFFIX = ".blk";
+    static final int BLOCK_SIZE = 64 * 1024;
+    static final int MAGIC = 0x424c4b32; // "BLK2"
+    static final int ENTRY_SIZE = 20;
+    static final int FOOTER_SIZE = 32;
+
+    private final RandomAccessFile file;
+    // per block and one past the last: uncompressed offset, compressed
+    // offset and newlines before the block
+    private final long[] offsets;
+    private final long[] positions;
+    private final long[] lines;
+
+    private BlockLog(RandomAccessFile file, long[] offsets, long[] positions,
+            long[] lines) {
+        this.file = file;
+        this.offsets = offsets;
+        this.positions = positions;
+        this.lines = lines;
+    }
+
+    public static BlockLog open(File f) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(f, "r");
+        try {
+            long size = file.length();
+            if (size < FOOTER_SIZE) {
+                throw new IOException("not a block log: " + f);
+            }
+            file.seek(size - FOOTER_SIZE);
+            long index = file.readLong();
+            int blocks = file.readInt();
+            long length = file.readLong();
+            long newlines = file.readLong();
+            int magic = file.readInt();
+            if (magic != MAGIC || blocks < 0
+                    || index + (long) blocks * ENTRY_SIZE + FOOTER_SIZE != size) {
+                throw new IOException("not a block log: " + f);
+            }
+            long[] offsets = new long[blocks + 1];
+            long[] positions = new long[blocks + 1];
+            long[] lines = new long[blocks + 1];
+            byte[] entries = new byte[blocks * ENTRY_SIZE];
+            file.seek(index);
+            file.readFully(entries);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                    entries));
+            for (int b = 0; b < blocks; b++) {
+                offsets[b] = in.readLong();
+                positions[b] = in.readLong();
+                lines[b + 1] = lines[b] + in.readInt();
+            }
+            offsets[blocks] = length;
+            positions[blocks] = index;
+            if (lines[blocks] != newlines) {
+                throw new IOException("corrupt block log index: " + f);
+            }
+            return new BlockLog(file, offsets, positions, lines);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /** @return length of the uncompressed log */
+    public long length() {
+        return offsets[offsets.length - 1];
+    }
+
+    /** @return number of newlines in the log */
+    public long lines() {
+        return lines[lines.length - 1];
+    }
+
+    /**
+     * @return length of the gzip stream of the log at the start of the
+     *         file
+     */
+    public long dataLength() {
+        return positions[positions.length - 1];
+    }
+
+    public FileChannel getChannel() {
+        return file.getChannel();
+    }
+
+    /** Copy the bytes from {@code from} up to {@code to} of the log. */
+    public void copy(long from, long to, OutputStream out) throws IOException {
+        from = Math.max(0, from);
+        to = Math.min(to, length());
+        if (from >= to) {
+            return;
+        }
+        for (int b = blockOf(from); b < offsets.length - 1 && offsets[b] < to; b++) {
+            byte[] data = block(b);
+            int start = (int) (Math.max(from, offsets[b]) - offsets[b]);
+            int end = (int) (Math.min(to, offsets[b + 1]) - offsets[b]);
+            out.write(data, start, end - start);
+        }
+    }
+
+    /** Copy lines {@code first} up to {@code last}, counted from 0. */
+    public void copyLines(long first, long last, OutputStream out)
+            throws IOException {
+        copy(lineOffset(first), lineOffset(last), out);
+    }
+
+    /** @return offset of the line, the length of the log if there is none */
+    long lineOffset(long line) throws IOException {
+        if (line <= 0) {
+            return 0;
+        }
+        if (line > lines()) {
+            return length();
+        }
+        // the block holding the newline that ends the line before
+        int b = Arrays.binarySearch(lines, line);
+        if (b < 0) {
+            b = -b - 2;
+        } else {
+            // the newline ends a block, find the first one that does
+            while (lines[b - 1] == line) {
+                b--;
+            }
+            b--;
+        }
+        byte[] data = block(b);
+        long seen = lines[b];
+        for (int i = 0; i < data.length; i++) {
+            if (data[i] == '\n' && ++seen == line) {
+                return offsets[b] + i + 1;
+            }
+        }
+        throw new IOException("corrupt block log index");
+    }
+
+    private int blockOf(long offset) {
+        int b = Arrays.binarySearch(offsets, 0, offsets.length - 1, offset);
+        return b < 0 ? -b - 2 : b;
+    }
+
+    private byte[] block(int b) throws IOException {
+        byte[] compressed = new byte[(int) (positions[b + 1] - positions[b])];
+        byte[] data = new byte[(int) (offsets[b + 1] - offsets[b])];
+        file.seek(positions[b]);
+        file.readFully(compressed);
+        // the full flush before the block reset the dictionary
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+            int n = 0;
+            while (n < data.length) {
+                int r = inflater.inflate(data, n, data.length - n);
+                if (r == 0 && (inflater.needsInput() || inflater.finished())) {
+                    throw new IOException("corrupt block log");
+                }
+                n += r;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("corrupt block log", e);
+        } finally {
+            inflater.end();
+        }
+        return data;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,157 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.publisher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a {@link BlockLog} while the log is streamed in. Only the current
+ * block and the index are kept in memory, the footer is written on close.
+ * <p>
+ * The log is one deflate stream: a full flush at the end of each block
+ * aligns it to a byte and resets the dictionary, so that a block can be
+ * inflated on its own.
+ */
+public class BlockLogWriter extends OutputStream {
+    // gzip header: magic, deflate, no flags, no mtime, no extra flags, unknown os
+    private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, 8, 0, 0, 0,
+            0, 0, 0, (byte) 0xff };
+
+    private final DataOutputStream out;
+    private final byte[] block = new byte[BlockLog.BLOCK_SIZE];
+    private final byte[] buffer = new byte[8192];
+    private final Deflater deflater = new Deflater(
+            Deflater.DEFAULT_COMPRESSION, true);
+    // of the whole log, for the gzip trailer
+    private final CRC32 crc = new CRC32();
+    private final ByteArrayOutputStream entries = new ByteArrayOutputStream();
+    private final DataOutputStream index = new DataOutputStream(entries);
+    private int fill;
+    private int blocks;
+    // compressed bytes written so far
+    private long position;
+    private long length;
+    private long lines;
+    private boolean started;
+    private boolean closed;
+
+    public BlockLogWriter(OutputStream out) {
+        this.out = new DataOutputStream(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        block[fill++] = (byte) b;
+        if (fill == block.length) {
+            writeBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, block.length - fill);
+            System.arraycopy(b, off, block, fill, n);
+            fill += n;
+            off += n;
+            len -= n;
+            if (fill == block.length) {
+                writeBlock();
+            }
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (fill == 0) {
+            return;
+        }
+        writeHeader();
+        int newlines = 0;
+        for (int i = 0; i < fill; i++) {
+            if (block[i] == '\n') {
+                newlines++;
+            }
+        }
+        index.writeLong(length);
+        index.writeLong(position);
+        index.writeInt(newlines);
+
+        crc.update(block, 0, fill);
+        deflater.setInput(block, 0, fill);
+        // all input is consumed once the output does not fill the buffer
+        int n;
+        do {
+            n = deflater.deflate(buffer, 0, buffer.length,
+                    Deflater.FULL_FLUSH);
+            out.write(buffer, 0, n);
+            position += n;
+        } while (n == buffer.length);
+
+        blocks++;
+        length += fill;
+        lines += newlines;
+        fill = 0;
+    }
+
+    private void writeHeader() throws IOException {
+        if (!started) {
+            started = true;
+            out.write(GZIP_HEADER);
+            position += GZIP_HEADER.length;
+        }
+    }
+
+    private void writeIntLE(int v) throws IOException {
+        out.write(v);
+        out.write(v >>> 8);
+        out.write(v >>> 16);
+        out.write(v >>> 24);
+    }
+
+    /**
+     * Write the last block, the end of the deflate stream and the gzip
+     * trailer, then the index and the footer.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeBlock();
+            writeHeader();
+            // an empty final block, it goes with the last block
+            deflater.finish();
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+                position += n;
+            }
+            writeIntLE((int) crc.getValue());
+            writeIntLE((int) length);
+            position += 8;
+            entries.writeTo(out);
+            out.writeLong(position);
+            out.writeInt(blocks);
+            out.writeLong(length);
+            out.writeLong(lines);
+            out.writeInt(BlockLog.MAGIC);
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+}
@@ -9,9 +9,12 @@
 
 package org.libreoffice.ci.gerrit.buildbot.publisher;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.zip.GZIPInputStream;
 
 import javax.annotation.Nullable;
@@ -21,6 +24,7 @@ import org.libreoffice.ci.gerrit.buildbot.config.BuildbotConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.io.ByteStreams;
 import com.google.gerrit.server.config.CanonicalWebUrl;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
@@ -36,27 +40,44 @@ public class BuildbotLogPublisher implements LogPublisher {
 
     private final static String LOGFILE_SUFFIX = ".log";
 
+    /**
+     * Logs were stored gzip compressed as uploaded before they were stored
+     * as a {@link BlockLog}, the name in the log url is the one without
+     * this suffix.
+     */
+    public final static String GZIP_SUFFIX = ".gz";
+
     private final static String LOGFILE_SERVLET_SUFFIX = "plugins/buildbot/log?file=";
 
     @Override
     public String publishLog(BuildbotConfig config, String ticket,
             String boxId, TaskStatus status, InputStream in) {
         String urllog = ticket + LOGFILE_SUFFIX;
+        File file = new File(config.getLogDir(), urllog + BlockLog.SUFFIX);
+        // the log servlet must never see a partial file
+        File tmp = new File(config.getLogDir(), urllog + BlockLog.SUFFIX
+                + ".tmp");
         try {
-            String file = config.getLogDir() + File.separator + urllog;
-            int sChunk = 8192;
-            GZIPInputStream zipin = new GZIPInputStream(in);
-            byte[] buffer = new byte[sChunk];
-            FileOutputStream out = new FileOutputStream(file);
-            int length;
-            while ((length = zipin.read(buffer, 0, sChunk)) != -1)
-                out.write(buffer, 0, length);
-            out.flush();
-            out.close();
-            zipin.close();
-            in.close();
+            try {
+                // inflated and compressed again block by block while it
+                // is streamed in, the upload is never held in memory
+                InputStream gz = new GZIPInputStream(in, 8192);
+                OutputStream out = new BlockLogWriter(new BufferedOutputStream(
+                        new FileOutputStream(tmp)));
+                try {
+                    ByteStreams.copy(gz, out);
+                } finally {
+                    out.close();
+                }
+            } finally {
+                in.close();
+            }
+            if (!tmp.renameTo(file)) {
+                throw new IOException("can not rename " + tmp + " to " + file);
+            }
         } catch (Exception e) {
             log.error("can not save log file: ", e);
+            tmp.delete();
             return null;
         }
         return urlProvider.get() + LOGFILE_SERVLET_SUFFIX + urllog;
@@ -0,0 +1,31 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.review;
+
+import com.google.gerrit.server.IdentifiedUser;
+import com.google.inject.Singleton;
+
+/**
+ * The Gerrit account the buildbot reviews as, looked up from the
+ * configured email when the plugin starts.
+ */
+@Singleton
+public class BuildbotIdentity {
+  private volatile IdentifiedUser user;
+
+  /** @return the buildbot account, null before the plugin is started */
+  public IdentifiedUser get() {
+    return user;
+  }
+
+  public void set(IdentifiedUser user) {
+    this.user = user;
+  }
+}
@@ -0,0 +1,90 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.review;
+
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Message and votes of one review waiting in the {@link ReviewQueue}.
+ * Reviews for the same patch set and from the same caller can be merged
+ * into one: the messages are joined and the votes of the later review
+ * win.
+ */
+public class Review {
+  private final String change;
+  private final String target;
+  private final String what;
+  // whose request context the review is applied in
+  private Object caller;
+  private final List<String> messages = Lists.newArrayList();
+  private final Map<String, Short> labels = Maps.newTreeMap();
+  private int parts = 1;
+
+  /**
+   * @param change change the review is ordered by
+   * @param target patch set the review goes to, reviews with the same
+   *        target may be merged
+   * @param what description for the log
+   * @param message comment, may be null
+   */
+  public Review(String change, String target, String what, String message) {
+    this.change = change;
+    this.target = target;
+    this.what = what;
+    if (message != null) {
+      messages.add(message);
+    }
+  }
+
+  public Review label(String name, short value) {
+    labels.put(name, value);
+    return this;
+  }
+
+  /** Set who the review is posted for, see {@link #merge(Review)}. */
+  public Review caller(Object caller) {
+    this.caller = caller;
+    return this;
+  }
+
+  boolean merge(Review other) {
+    // a merged review runs in the context of this one
+    if (!target.equals(other.target) || !Objects.equal(caller, other.caller)) {
+      return false;
+    }
+    messages.addAll(other.messages);
+    labels.putAll(other.labels);
+    parts += other.parts;
+    return true;
+  }
+
+  public String getChange() {
+    return change;
+  }
+
+  public String getMessage() {
+    return messages.isEmpty() ? null : Joiner.on("\n\n").join(messages);
+  }
+
+  public Map<String, Short> getLabels() {
+    return labels;
+  }
+
+  @Override
+  public String toString() {
+    return parts == 1 ? what : String.format("%s (%d merged)", what, parts);
+  }
+}
@@ -0,0 +1,70 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.review;
+
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gerrit.reviewdb.client.Change;
+import com.google.gerrit.reviewdb.client.PatchSet;
+import com.google.gerrit.server.project.ChangeControl;
+import com.google.inject.Singleton;
+
+/**
+ * Patch sets and change controls of the changes being built, so that
+ * publishing a review does not load them again. Entries of a change are
+ * dropped when a new patch set is uploaded for it.
+ */
+@Singleton
+public class ReviewCache {
+  static final int MAX_SIZE = 256;
+
+  private final Cache<PatchSet.Id, PatchSet> patchSets = CacheBuilder
+      .newBuilder().maximumSize(MAX_SIZE).build();
+  private final Cache<Change.Id, ChangeControl> controls = CacheBuilder
+      .newBuilder().maximumSize(MAX_SIZE).build();
+
+  public PatchSet getPatchSet(PatchSet.Id id,
+      Callable<? extends PatchSet> loader) throws Exception {
+    return get(patchSets, id, loader);
+  }
+
+  public ChangeControl getChangeControl(Change.Id id,
+      Callable<? extends ChangeControl> loader) throws Exception {
+    return get(controls, id, loader);
+  }
+
+  public void evict(Change.Id id) {
+    controls.invalidate(id);
+    for (Iterator<PatchSet.Id> it = patchSets.asMap().keySet().iterator();
+        it.hasNext();) {
+      if (it.next().getParentKey().equals(id)) {
+        it.remove();
+      }
+    }
+  }
+
+  private static <K, V> V get(Cache<K, V> cache, K key,
+      Callable<? extends V> loader) throws Exception {
+    try {
+      return cache.get(key, loader);
+    } catch (ExecutionException e) {
+      // hand the loader's own exception to the caller, the review queue
+      // retries on OrmException
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,339 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.review;
+
+import java.lang.reflect.Field;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.libreoffice.ci.gerrit.buildbot.config.BuildbotConfig;
+import org.libreoffice.ci.gerrit.buildbot.logic.BuildbotLogicControl;
+import org.libreoffice.ci.gerrit.buildbot.model.GerritJob;
+import org.libreoffice.ci.gerrit.buildbot.model.TbJobResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.collect.Maps;
+import com.google.gerrit.reviewdb.client.Change;
+import com.google.gerrit.reviewdb.client.PatchSet;
+import com.google.gerrit.reviewdb.client.RevId;
+import com.google.gerrit.reviewdb.server.ReviewDb;
+import com.google.gerrit.server.CurrentUser;
+import com.google.gerrit.server.IdentifiedUser;
+import com.google.gerrit.server.change.ChangeResource;
+import com.google.gerrit.server.change.PostReview;
+import com.google.gerrit.server.change.RevisionResource;
+import com.google.gerrit.server.project.ChangeControl;
+import com.google.gerrit.server.project.NoSuchChangeException;
+import com.google.gerrit.server.project.ProjectControl;
+import com.google.gerrit.server.util.RequestContext;
+import com.google.gerrit.server.util.RequestScopePropagator;
+import com.google.gerrit.server.util.ThreadLocalRequestContext;
+import com.google.gwtorm.server.OrmException;
+import com.google.gwtorm.server.SchemaFactory;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+
+public class ReviewPublisher {
+  static final Logger log = LoggerFactory.getLogger(ReviewPublisher.class);
+  // caller of the reviews posted outside of a request
+  private static final String BUILDBOT = "buildbot";
+  private final BuildbotLogicControl control;
+  private final BuildbotConfig config;
+  private final Provider<ReviewDb> db;
+  private final Provider<PostReview> reviewProvider;
+  private final ChangeControl.Factory changeControlFactory;
+  private final ReviewQueue queue;
+  private final ReviewCache cache;
+  private final BuildbotIdentity buildbot;
+  private final SchemaFactory<ReviewDb> schema;
+  private final ThreadLocalRequestContext requestContext;
+  // only bound inside of a request, e.g. a ssh command
+  private RequestScopePropagator propagator;
+
+  @Inject
+  public ReviewPublisher(BuildbotLogicControl control, BuildbotConfig config,
+      Provider<ReviewDb> db, Provider<PostReview> reviewProvider,
+      ChangeControl.Factory changeControlFactory, ReviewQueue queue,
+      ReviewCache cache, BuildbotIdentity buildbot,
+      SchemaFactory<ReviewDb> schema,
+      ThreadLocalRequestContext requestContext) {
+    this.control = control;
+    this.config = config;
+    this.db = db;
+    this.reviewProvider = reviewProvider;
+    this.changeControlFactory = changeControlFactory;
+    this.queue = queue;
+    this.cache = cache;
+    this.buildbot = buildbot;
+    this.schema = schema;
+    this.requestContext = requestContext;
+  }
+
+  @Inject(optional = true)
+  void setPropagator(RequestScopePropagator propagator) {
+    this.propagator = propagator;
+  }
+
+  /**
+   * Queue the comment for a finished task. Returns at once, the review
+   * is applied by {@link ReviewQueue}.
+   */
+  public void postResultToReview(TbJobResult result) {
+    Preconditions.checkNotNull(result);
+    short status = 0;
+    String msg =
+        String.format("%s %s (%s)\n\nBuild on %s at %s: %s", result
+            .getPlatform().name(), result.getStatus().name(), result
+            .getDecoratedId(), result.getTinderboxId(), time(result
+            .getEndTime()), Strings.nullToEmpty(result.getLog()));
+    GerritJob job = result.getTbPlatformJob().getParent();
+    submit(job, review(job, "result " + result.getDecoratedId(), msg).label(
+        "Code-Review", status));
+  }
+
+  /**
+   * Queue the combined Verified vote of a finished job. A failure counts
+   * more than a platform nobody built in time, which only leaves the vote
+   * neutral.
+   */
+  public void postJobResult(GerritJob job) {
+    StringBuilder builder = new StringBuilder(256);
+    builder.append(String.format("Build %s:\n", job.getId()));
+    short combinedStatus = 1;
+    int built = 0;
+    boolean timedOut = false;
+    for (TbJobResult tbResult : job.getTbResultList()) {
+      if (tbResult.getStatus().isTimeout()) {
+        timedOut = true;
+      } else if (tbResult.ignoreJobStatus()) {
+        // ignore canceled and aborted tasks
+        continue;
+      } else {
+        if (!tbResult.getStatus().isDiscarded()) {
+          built++;
+        }
+        if (!tbResult.getStatus().isSuccess()) {
+          combinedStatus = -1;
+        }
+      }
+      builder.append(String.format("* on %s %s : %s\n", tbResult
+          .getPlatform().name(), tbResult.getStatus().name(), Strings
+          .nullToEmpty(tbResult.getLog())));
+    }
+    if (timedOut) {
+      combinedStatus = (short) Math.min(combinedStatus, 0);
+    } else if (built == 0) {
+      // nothing was built to the end, no vote
+      return;
+    }
+    approveOne(job, builder.toString(), "Verified", combinedStatus);
+  }
+
+  /** Queue a review with one label vote on the patch set of the job. */
+  public void approveOne(GerritJob job, String changeComment,
+      String labelName, short value) {
+    submit(job, review(job, labelName + " on " + job.getId(), changeComment)
+        .label(labelName, value));
+  }
+
+  // reviews are ordered by the change number and merged per patch set,
+  // whichever approveOne they come from. A job not created from a change
+  // ref only has its Change-Id and revision
+  private static Review review(GerritJob job, String what, String message) {
+    if (job.getPatchSetNumber() != 0) {
+      return new Review(String.valueOf(job.getChangeNumber()),
+          new PatchSet.Id(new Change.Id(job.getChangeNumber()),
+              job.getPatchSetNumber()).toString(), what, message);
+    }
+    return new Review(job.getGerritChange(), job.getGerritRevision(), what,
+        message);
+  }
+
+  /** Queue a review with the given votes on a patch set. */
+  public void approveOne(final PatchSet.Id patchSetId,
+      String changeComment, List<ApproveOption> optionList) {
+    final Review review =
+        new Review(String.valueOf(patchSetId.getParentKey().get()),
+            patchSetId.toString(), "review on " + patchSetId, changeComment);
+    for (ApproveOption ao : optionList) {
+      Short v = ao.value();
+      if (v != null) {
+        review.label(ao.getLabelName(), v);
+      }
+    }
+    submit(review, new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        applyReview(patchSetId, review);
+        return null;
+      }
+    });
+  }
+
+  private void submit(final GerritJob job, final Review review) {
+    submit(review, new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        // reviews merged into this one target the same revision
+        applyReview(patchSetId(job), review);
+        return null;
+      }
+    });
+  }
+
+  private void submit(Review review, Callable<Void> task) {
+    // the review needs the request scope of the caller, which is gone
+    // by the time the queue runs it. Without a caller, e.g. on the
+    // timer thread, the buildbot acts on its own behalf.
+    if (propagator != null) {
+      queue.submit(review.caller(caller()), propagator.wrap(task));
+    } else {
+      queue.submit(review.caller(BUILDBOT), asBuildbot(task));
+    }
+  }
+
+  // account of the current request, reviews of different callers are
+  // not merged
+  private Object caller() {
+    RequestContext ctx = requestContext.getContext();
+    CurrentUser user = ctx != null ? ctx.getCurrentUser() : null;
+    if (user instanceof IdentifiedUser) {
+      return ((IdentifiedUser) user).getAccountId();
+    }
+    return user;
+  }
+
+  private <T> Callable<T> asBuildbot(final Callable<T> task) {
+    return new Callable<T>() {
+      @Override
+      public T call() throws Exception {
+        final ReviewDb reviewDb = schema.open();
+        RequestContext old = requestContext.setContext(new RequestContext() {
+          @Override
+          public CurrentUser getCurrentUser() {
+            return buildbot.get();
+          }
+
+          @Override
+          public Provider<ReviewDb> getReviewDbProvider() {
+            return new Provider<ReviewDb>() {
+              @Override
+              public ReviewDb get() {
+                return reviewDb;
+              }
+            };
+          }
+        });
+        try {
+          return task.call();
+        } finally {
+          requestContext.setContext(old);
+          reviewDb.close();
+        }
+      }
+    };
+  }
+
+  private void applyReview(PatchSet.Id patchSetId, Review review)
+      throws Exception {
+    PostReview.Input input = createReview(review.getMessage());
+    input.labels.putAll(review.getLabels());
+    applyReview(patchSetId, input);
+  }
+
+  private PatchSet.Id patchSetId(GerritJob job) throws OrmException {
+    if (job.getPatchSetNumber() != 0) {
+      return new PatchSet.Id(new Change.Id(job.getChangeNumber()),
+          job.getPatchSetNumber());
+    }
+    // job not created from a change ref
+    final List<PatchSet> matches =
+        db.get()
+            .patchSets()
+            .byRevision(
+                new RevId(job.getGerritRevision())).toList();
+    if (matches.size() != 1) {
+      String tmp =
+          String.format("Can not match patch set for revision %s", job.getGerritRevision());
+      log.error(tmp);
+      throw new OrmException("Can not find patch set: " + job.getGerritRevision());
+    }
+    return matches.get(0).getId();
+  }
+
+  private void applyReview(final PatchSet.Id patchSetId, PostReview.Input review)
+      throws Exception {
+    if (!review.labels.isEmpty()) {
+      RevisionResource rsrc =
+          new RevisionResource(new ChangeResource(changeControl(patchSetId
+              .getParentKey())), patchSet(patchSetId));
+      forgeReviewerIdentity(rsrc);
+      reviewProvider.get().apply(rsrc, review);
+    }
+  }
+
+  private PatchSet patchSet(final PatchSet.Id id) throws Exception {
+    return cache.getPatchSet(id, new Callable<PatchSet>() {
+      @Override
+      public PatchSet call() throws OrmException {
+        PatchSet ps = db.get().patchSets().get(id);
+        if (ps == null) {
+          throw new OrmException("Can not find patch set: " + id);
+        }
+        return ps;
+      }
+    });
+  }
+
+  private ChangeControl changeControl(final Change.Id id) throws Exception {
+    Callable<ChangeControl> loader = new Callable<ChangeControl>() {
+      @Override
+      public ChangeControl call() throws NoSuchChangeException {
+        return changeControlFactory.controlFor(id);
+      }
+    };
+    if (!config.isForgeReviewerIdentity()) {
+      // the control carries the caller's identity, it can not be shared
+      return loader.call();
+    }
+    return cache.getChangeControl(id, loader);
+  }
+
+  private PostReview.Input createReview(final String changeComment) {
+    PostReview.Input review = new PostReview.Input();
+    review.message = Strings.emptyToNull(changeComment);
+    review.labels = Maps.newTreeMap();
+    review.drafts = PostReview.DraftHandling.PUBLISH;
+    review.strictLabels = false;
+    return review;
+  }
+
+  private void forgeReviewerIdentity(RevisionResource rsrc) throws OrmException {
+    if (config.isForgeReviewerIdentity()) {
+      try {
+        Field field = ProjectControl.class.getDeclaredField("user");
+        field.setAccessible(true);
+        field.set(rsrc.getControl().getProjectControl(), buildbot.get());
+      } catch (Exception e) {
+        throw new OrmException("Can not forge revviewer identity");
+      }
+    }
+  }
+
+  private static String time(final long now) {
+    final Date when = new Date(now);
+    return new SimpleDateFormat("MMM-dd HH:mm").format(when);
+  }
+}
@@ -0,0 +1,266 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.review;
+
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.libreoffice.ci.gerrit.buildbot.config.BuildbotConfig;
+import org.libreoffice.ci.gerrit.buildbot.metrics.Gauge;
+import org.libreoffice.ci.gerrit.buildbot.metrics.Histogram;
+import org.libreoffice.ci.gerrit.buildbot.metrics.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gerrit.extensions.events.LifecycleListener;
+import com.google.gwtorm.server.OrmException;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Publishes review comments off the ssh and http threads.
+ * <p>
+ * Reviews for the same change are applied one after another in
+ * submission order, so the "build started" comment always precedes the
+ * result. A review failing with {@link OrmException} is retried with
+ * exponential backoff; the next review of that change waits for it.
+ * <p>
+ * A review is held back for the configured window. Reviews for the same
+ * patch set and from the same caller queued behind it meanwhile are
+ * merged into it, see {@link Review#merge(Review)}, so a build
+ * on several platforms ends up in few review writes, and the combined
+ * Verified vote is folded into the last result.
+ */
+@Singleton
+public class ReviewQueue implements LifecycleListener {
+  static final Logger log = LoggerFactory.getLogger(ReviewQueue.class);
+
+  static final int THREADS = 2;
+  static final int MAX_PENDING = 1000;
+  static final int MAX_ATTEMPTS = 5;
+  static final long INITIAL_BACKOFF = 1000;
+
+  // change -> reviews waiting for it, head is in flight
+  private final Map<String, LinkedList<Entry>> pending = Maps.newHashMap();
+  private final long window;
+  private int size;
+  private ScheduledExecutorService executor;
+
+  private final AtomicLong published = new AtomicLong();
+  private final AtomicLong coalesced = new AtomicLong();
+  private final AtomicLong retried = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  private final AtomicLong lastLag = new AtomicLong();
+  private final AtomicLong maxLag = new AtomicLong();
+  private final Histogram latency;
+
+  @Inject
+  public ReviewQueue(BuildbotConfig config, Metrics metrics) {
+    this(config.getReviewWindow(), metrics);
+  }
+
+  ReviewQueue(long window, Metrics metrics) {
+    this.window = window;
+    latency = metrics.histogram("buildbot_review_publish_seconds",
+        "Time from a get or put to its comment on the change.",
+        Histogram.LAG, Histogram.MILLIS);
+    metrics.gauge("buildbot_review_queue_depth",
+        "Reviews waiting to be published.", new Gauge() {
+          @Override
+          public long get() {
+            return getPending();
+          }
+        });
+  }
+
+  @Override
+  public synchronized void start() {
+    executor = new ScheduledThreadPoolExecutor(THREADS,
+        new ThreadFactoryBuilder().setNameFormat("buildbot-review-%d")
+            .setDaemon(true).build());
+  }
+
+  @Override
+  public void stop() {
+    ScheduledExecutorService e;
+    synchronized (this) {
+      e = executor;
+      executor = null;
+    }
+    if (e == null) {
+      return;
+    }
+    e.shutdown();
+    try {
+      if (!e.awaitTermination(10, TimeUnit.SECONDS)) {
+        log.warn("{} review(s) not published on shutdown",
+            e.shutdownNow().size());
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Queue a review.
+   *
+   * @param review message and votes, reviews for the same change are
+   *        serialized
+   * @param task applies the review, including everything merged into it
+   *        by then; runs on a pool thread
+   */
+  public void submit(Review review, Callable<?> task) {
+    Entry entry = new Entry(review, task);
+    String change = review.getChange();
+    synchronized (this) {
+      if (executor == null || size >= MAX_PENDING) {
+        dropped.incrementAndGet();
+        log.error("review queue {}, dropping {} for change {}",
+            new Object[] {executor == null ? "stopped" : "full", review, change});
+        return;
+      }
+      size++;
+      LinkedList<Entry> list = pending.get(change);
+      if (list == null) {
+        list = new LinkedList<Entry>();
+        pending.put(change, list);
+        list.add(entry);
+        schedule(entry, window);
+      } else {
+        list.add(entry);
+      }
+    }
+  }
+
+  // caller holds the monitor
+  private void schedule(final Entry entry, long delay) {
+    executor.schedule(new Runnable() {
+      @Override
+      public void run() {
+        publish(entry);
+      }
+    }, delay, TimeUnit.MILLISECONDS);
+  }
+
+  private void publish(Entry entry) {
+    coalesce(entry);
+    try {
+      entry.task.call();
+      long lag = System.currentTimeMillis() - entry.submitted;
+      published.incrementAndGet();
+      latency.observe(lag);
+      lastLag.set(lag);
+      long max;
+      while (lag > (max = maxLag.get()) && !maxLag.compareAndSet(max, lag)) {
+      }
+    } catch (OrmException e) {
+      if (++entry.attempt < MAX_ATTEMPTS) {
+        long delay = INITIAL_BACKOFF << (entry.attempt - 1);
+        retried.incrementAndGet();
+        log.warn(String.format("cannot publish %s for change %s, retry in %d ms",
+            entry.review, entry.change, delay), e);
+        synchronized (this) {
+          if (executor != null) {
+            schedule(entry, delay);
+            return;
+          }
+        }
+      }
+      failed.incrementAndGet();
+      log.error(String.format("giving up to publish %s for change %s",
+          entry.review, entry.change), e);
+    } catch (Exception e) {
+      failed.incrementAndGet();
+      log.error(String.format("fatal: internal server error while publishing %s for change %s",
+          entry.review, entry.change), e);
+    }
+    next(entry);
+  }
+
+  // merge the reviews queued right behind the head for the same patch set,
+  // they run in the request context of the head
+  private synchronized void coalesce(Entry head) {
+    LinkedList<Entry> list = pending.get(head.change);
+    while (list.size() > 1 && head.review.merge(list.get(1).review)) {
+      list.remove(1);
+      size--;
+      coalesced.incrementAndGet();
+    }
+  }
+
+  private synchronized void next(Entry done) {
+    size--;
+    LinkedList<Entry> list = pending.get(done.change);
+    list.removeFirst();
+    if (list.isEmpty()) {
+      pending.remove(done.change);
+    } else if (executor != null) {
+      Entry head = list.getFirst();
+      long left = head.submitted + window - System.currentTimeMillis();
+      schedule(head, Math.max(0, left));
+    }
+  }
+
+  public synchronized int getPending() {
+    return size;
+  }
+
+  public long getPublished() {
+    return published.get();
+  }
+
+  /** Reviews merged into another one instead of being written. */
+  public long getCoalesced() {
+    return coalesced.get();
+  }
+
+  public long getRetried() {
+    return retried.get();
+  }
+
+  public long getFailed() {
+    return failed.get();
+  }
+
+  public long getDropped() {
+    return dropped.get();
+  }
+
+  /** Milliseconds from submission to publication of the latest review. */
+  public long getLastLag() {
+    return lastLag.get();
+  }
+
+  public long getMaxLag() {
+    return maxLag.get();
+  }
+
+  private static final class Entry {
+    final String change;
+    final Review review;
+    final Callable<?> task;
+    final long submitted = System.currentTimeMillis();
+    int attempt;
+
+    Entry(Review review, Callable<?> task) {
+      this.change = review.getChange();
+      this.review = review;
+      this.task = task;
+    }
+  }
+}
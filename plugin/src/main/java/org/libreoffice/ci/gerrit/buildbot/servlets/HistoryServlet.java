@@ -0,0 +1,164 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.servlets;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.libreoffice.ci.gerrit.buildbot.history.HistoryEntry;
+import org.libreoffice.ci.gerrit.buildbot.history.HistoryQuery;
+import org.libreoffice.ci.gerrit.buildbot.history.HistoryStore;
+import org.libreoffice.ci.gerrit.buildbot.logic.BuildbotLogicControl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.collect.Maps;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.template.soy.data.SoyListData;
+import com.google.template.soy.data.SoyMapData;
+
+/**
+ * Finished tasks, newest first. The request parameters {@code project},
+ * {@code change}, {@code revision}, {@code branch}, {@code os},
+ * {@code box}, {@code since} and {@code until} (yyyy-MM-dd) filter the
+ * tasks, {@code cursor} and {@code limit} page through them.
+ */
+@Singleton
+public class HistoryServlet extends HttpServlet {
+  private static final long serialVersionUID = 1L;
+  static final Logger log = LoggerFactory.getLogger(HistoryServlet.class);
+
+  private static final String[] FILTERS = {"project", "change", "revision",
+      "branch", "os", "box", "since", "until", "limit"};
+
+  private final BuildbotLogicControl control;
+
+  private final Renderer renderer;
+
+  @Inject
+  public HistoryServlet(BuildbotLogicControl control) {
+    this.control = control;
+    renderer = new DefaultRenderer(null, "Buildbot History");
+  }
+
+  @Override
+  protected void doGet(final HttpServletRequest req,
+      final HttpServletResponse rsp) throws IOException, ServletException {
+    HistoryStore history = control.getHistory();
+    if (history == null) {
+      rsp.sendError(HttpServletResponse.SC_NOT_FOUND, "no task history is kept");
+      return;
+    }
+    HistoryStore.Page page;
+    try {
+      HistoryQuery query = new HistoryQuery()
+          .setProject(param(req, "project"))
+          .setChange(param(req, "change"))
+          .setRevision(param(req, "revision"))
+          .setBranch(param(req, "branch"))
+          .setPlatform(param(req, "os"))
+          .setBox(param(req, "box"))
+          .setSince(date(param(req, "since"), false))
+          .setUntil(date(param(req, "until"), true))
+          .setCursor(param(req, "cursor"));
+      if (param(req, "limit") != null) {
+        query.setLimit(Integer.parseInt(param(req, "limit")));
+      }
+      page = history.query(query);
+    } catch (NumberFormatException e) {
+      rsp.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+      return;
+    } catch (ParseException e) {
+      rsp.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+      return;
+    }
+    Map<String, Object> allData = Maps.newHashMapWithExpectedSize(4);
+    allData.put("title", "Buildbot History");
+    SoyListData tasks = new SoyListData();
+    for (HistoryEntry e : page.getEntries()) {
+      tasks.add(toSoy(e));
+    }
+    allData.put("tasks", tasks);
+    if (page.getNext() != null) {
+      allData.put("next", nextUrl(req, page.getNext()));
+    }
+    rsp.setContentType(RenderType.HTML.getMimeType());
+    rsp.setCharacterEncoding(Charsets.UTF_8.name());
+    QueueServlet.setNotCacheable(rsp);
+    rsp.setStatus(HttpServletResponse.SC_OK);
+    renderer.render(rsp, "buildbot.history", allData);
+  }
+
+  private static SoyMapData toSoy(HistoryEntry e) {
+    SoyMapData task = new SoyMapData();
+    task.put("taskid", e.getRevision().substring(0,
+        Math.min(9, e.getRevision().length())) + "_" + e.getPlatform());
+    task.put("project", e.getProject());
+    task.put("end", time(e.getEnded()));
+    long d = e.getDuration() / 60000;
+    task.put("duration", e.getDuration() <= 0 ? "-"
+        : String.format("%d:%02d", d / 60, d % 60));
+    task.put("ref", e.getRef());
+    task.put("bot", e.getBox() == null ? "-" : e.getBox());
+    task.put("branch", e.getBranch());
+    task.put("status", e.getStatus());
+    SoyListData href = new SoyListData();
+    if (!Strings.isNullOrEmpty(e.getLog())) {
+      href.add(e.getLog());
+    }
+    task.put("href", href);
+    return task;
+  }
+
+  // same filters, next cursor
+  private static String nextUrl(HttpServletRequest req, String cursor)
+      throws IOException {
+    StringBuilder url = new StringBuilder("history?cursor=").append(cursor);
+    for (String name : FILTERS) {
+      String value = param(req, name);
+      if (value != null) {
+        url.append('&').append(name).append('=')
+            .append(URLEncoder.encode(value, Charsets.UTF_8.name()));
+      }
+    }
+    return url.toString();
+  }
+
+  private static String param(HttpServletRequest req, String name) {
+    return Strings.emptyToNull(req.getParameter(name));
+  }
+
+  // 0 if not given, the end of the day for the upper bound
+  private static long date(String date, boolean endOfDay)
+      throws ParseException {
+    if (date == null) {
+      return 0;
+    }
+    long day = new SimpleDateFormat("yyyy-MM-dd").parse(date).getTime();
+    return endOfDay ? day + 24 * 3600 * 1000L - 1 : day;
+  }
+
+  private static String time(final long now) {
+    final Date when = new Date(now);
+    return new SimpleDateFormat("MMM-dd HH:mm").format(when);
+  }
+}
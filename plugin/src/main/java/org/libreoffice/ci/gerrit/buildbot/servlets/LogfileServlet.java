@@ -0,0 +1,405 @@
+package org.libreoffice.ci.gerrit.buildbot.servlets;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.libreoffice.ci.gerrit.buildbot.config.BuildbotConfig;
+import org.libreoffice.ci.gerrit.buildbot.publisher.BlockLog;
+import org.libreoffice.ci.gerrit.buildbot.publisher.BuildbotLogPublisher;
+
+import com.google.common.io.ByteStreams;
+import com.google.gerrit.httpd.HtmlDomUtil;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Shows the logs stored by {@link BuildbotLogPublisher}. A {@link BlockLog}
+ * is sent as stored to clients that accept gzip. The tail view, line ranges
+ * ({@code lines=first-last}, counted from 1) and HTTP Range requests
+ * inflate only the blocks they need. The gzip and plain logs of older
+ * versions are served as before, without line ranges and Range support.
+ */
+@Singleton
+public class LogfileServlet extends HttpServlet {
+	private static final long serialVersionUID = -500973237863842149L;
+	// bytes shown by the tail view
+	static final int TAIL = 4000;
+
+	@Inject
+	BuildbotConfig config;
+
+	@Override
+	protected void doGet(final HttpServletRequest req,
+			final HttpServletResponse rsp) throws IOException, ServletException {
+		doPost(req, rsp);
+	}
+
+	@Override
+	protected void doPost(final HttpServletRequest req,
+			final HttpServletResponse rsp) throws IOException, ServletException {
+		rsp.setHeader("Expires", "Fri, 01 Jan 1980 00:00:00 GMT");
+		rsp.setHeader("Pragma", "no-cache");
+		rsp.setHeader("Cache-Control", "no-cache, must-revalidate");
+		rsp.setCharacterEncoding(HtmlDomUtil.ENC);
+
+		String fileName = req.getParameter("file");
+		File blocks = new File(config.getLogDir(), fileName + BlockLog.SUFFIX);
+		if (blocks.exists()) {
+			BlockLog log = BlockLog.open(blocks);
+			try {
+				printBlockLog(req, rsp, fileName, log);
+			} finally {
+				log.close();
+			}
+			return;
+		}
+		File compressed = new File(config.getLogDir(), fileName
+				+ BuildbotLogPublisher.GZIP_SUFFIX);
+		File logFile = new File(config.getLogDir(), fileName);
+		if (!compressed.exists() && !logFile.exists()) {
+			rsp.setContentType("text/html");
+			final Writer out = rsp.getWriter();
+			out.write("<html>");
+			out.write("<body>");
+			out.write("<h2>File not found</h2>");
+			out.write("</body>");
+			out.write("</html>");
+			out.close();
+			return;
+		}
+
+		if (req.getParameter("full") != null) {
+			rsp.setContentType("text/plain");
+			if (compressed.exists()) {
+				printFullCompressed(req, rsp, compressed);
+			} else {
+				transfer(logFile, rsp);
+			}
+			return;
+		}
+
+		rsp.setContentType("text/html");
+		final Writer out = rsp.getWriter();
+		Tail tail;
+		if (compressed.exists()) {
+			InputStream in = new GZIPInputStream(new FileInputStream(
+					compressed), 8192);
+			try {
+				tail = Tail.of(in);
+			} finally {
+				in.close();
+			}
+		} else {
+			tail = Tail.of(logFile);
+		}
+		printTail(out, fileName, tail);
+		out.close();
+	}
+
+	private void printBlockLog(HttpServletRequest req,
+			HttpServletResponse rsp, String fileName, BlockLog log)
+			throws IOException {
+		String lines = req.getParameter("lines");
+		if (lines != null) {
+			long[] range = parseLines(lines);
+			if (range == null) {
+				rsp.sendError(HttpServletResponse.SC_BAD_REQUEST,
+						"lines must be first-last");
+				return;
+			}
+			rsp.setContentType("text/plain");
+			log.copyLines(range[0], range[1], rsp.getOutputStream());
+			return;
+		}
+
+		if (req.getParameter("full") != null) {
+			rsp.setContentType("text/plain");
+			rsp.setHeader("Accept-Ranges", "bytes");
+			String header = req.getHeader("Range");
+			// there is no validator to check an If-Range against
+			long[] range = header == null || req.getHeader("If-Range") != null
+					? null : parseRange(header, log.length());
+			if (range != null && range.length == 0) {
+				rsp.setHeader("Content-Range", "bytes */" + log.length());
+				rsp.sendError(
+						HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+				return;
+			}
+			if (range != null) {
+				rsp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+				rsp.setHeader("Content-Range", "bytes " + range[0] + "-"
+						+ range[1] + "/" + log.length());
+				rsp.setHeader("Content-Length",
+						String.valueOf(range[1] - range[0] + 1));
+				log.copy(range[0], range[1] + 1, rsp.getOutputStream());
+				return;
+			}
+			rsp.setHeader("Vary", "Accept-Encoding");
+			if (acceptsGzip(req.getHeader("Accept-Encoding"))) {
+				rsp.setHeader("Content-Encoding", "gzip");
+				transfer(log.getChannel(), log.dataLength(), rsp);
+			} else {
+				rsp.setHeader("Content-Length", String.valueOf(log.length()));
+				log.copy(0, log.length(), rsp.getOutputStream());
+			}
+			return;
+		}
+
+		rsp.setContentType("text/html");
+		final Writer out = rsp.getWriter();
+		printTail(out, fileName, Tail.of(log));
+		out.close();
+	}
+
+	/**
+	 * @return first and last byte of a single range, an empty array if it
+	 *         is not satisfiable and null to ignore the header, e.g. for
+	 *         several ranges
+	 */
+	static long[] parseRange(String header, long length) {
+		if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+			return null;
+		}
+		String spec = header.substring("bytes=".length());
+		int dash = spec.indexOf('-');
+		if (dash < 0) {
+			return null;
+		}
+		String from = spec.substring(0, dash).trim();
+		String to = spec.substring(dash + 1).trim();
+		long first;
+		long last;
+		try {
+			if (from.isEmpty()) {
+				// the last bytes
+				if (to.isEmpty()) {
+					return null;
+				}
+				first = Math.max(0, length - Long.parseLong(to));
+				last = length - 1;
+			} else {
+				first = Long.parseLong(from);
+				last = length - 1;
+				if (!to.isEmpty()) {
+					if (Long.parseLong(to) < first) {
+						return null;
+					}
+					last = Math.min(last, Long.parseLong(to));
+				}
+			}
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		if (first < 0 || first >= length) {
+			return new long[0];
+		}
+		return new long[] { first, last };
+	}
+
+	/**
+	 * @return the lines {@code first-last}, {@code first-} or {@code first}
+	 *         counted from 1 as first and end line counted from 0, null if
+	 *         malformed
+	 */
+	static long[] parseLines(String lines) {
+		int dash = lines.indexOf('-');
+		try {
+			long first = Long.parseLong((dash < 0 ? lines : lines.substring(0,
+					dash)).trim());
+			long last;
+			if (dash < 0) {
+				last = first;
+			} else if (lines.substring(dash + 1).trim().isEmpty()) {
+				last = Long.MAX_VALUE;
+			} else {
+				last = Long.parseLong(lines.substring(dash + 1).trim());
+			}
+			if (first < 1 || last < first) {
+				return null;
+			}
+			return new long[] { first - 1, last };
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	static void printFullCompressed(HttpServletRequest req,
+			HttpServletResponse rsp, File logFile) throws IOException {
+		rsp.setHeader("Vary", "Accept-Encoding");
+		if (acceptsGzip(req.getHeader("Accept-Encoding"))) {
+			rsp.setHeader("Content-Encoding", "gzip");
+			transfer(logFile, rsp);
+			return;
+		}
+		InputStream in = new GZIPInputStream(new FileInputStream(logFile),
+				8192);
+		try {
+			ByteStreams.copy(in, rsp.getOutputStream());
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Send the file as it is. The servlet stream is neither a file nor a
+	 * socket channel, so transferTo may copy through a buffer, but the
+	 * bytes are never decoded.
+	 */
+	private static void transfer(File file, HttpServletResponse rsp)
+			throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			transfer(channel, channel.size(), rsp);
+		} finally {
+			in.close();
+		}
+	}
+
+	/** Send the first size bytes of the channel. */
+	private static void transfer(FileChannel channel, long size,
+			HttpServletResponse rsp) throws IOException {
+		rsp.setHeader("Content-Length", String.valueOf(size));
+		WritableByteChannel out = Channels.newChannel(rsp.getOutputStream());
+		long position = 0;
+		while (position < size) {
+			long n = channel.transferTo(position, size - position, out);
+			if (n <= 0) {
+				break;
+			}
+			position += n;
+		}
+	}
+
+	/** @return true unless gzip is missing or refused with q=0 */
+	static boolean acceptsGzip(String acceptEncoding) {
+		if (acceptEncoding == null) {
+			return false;
+		}
+		for (String coding : acceptEncoding.split(",")) {
+			String[] params = coding.split(";");
+			String name = params[0].trim();
+			if (!name.equalsIgnoreCase("gzip")
+					&& !name.equalsIgnoreCase("x-gzip")) {
+				continue;
+			}
+			for (int i = 1; i < params.length; i++) {
+				String param = params[i].trim();
+				if (param.startsWith("q=")) {
+					try {
+						return Double.parseDouble(param.substring(2)) > 0;
+					} catch (NumberFormatException e) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+	private void printTail(final Writer out, String fileName, Tail tail)
+			throws IOException {
+		if (tail.skipped > 0) {
+			out.write("... skipped " + tail.skipped / 1024
+					+ " KB <a href=\"/plugins/buildbot/log?file="
+					+ fileName + "&full=true\">Full log</a></br>");
+		}
+		out.write("<pre>");
+		out.write(new String(tail.bytes, HtmlDomUtil.ENC));
+		out.write("</pre>");
+	}
+
+	/** The last bytes of a log, starting at a line. */
+	static class Tail {
+		// bytes before the tail
+		long skipped;
+		byte[] bytes;
+
+		static Tail of(File file) throws IOException {
+			RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+			try {
+				long size = randomAccessFile.length();
+				Tail tail = new Tail();
+				tail.skipped = Math.max(0, size - TAIL);
+				tail.bytes = new byte[(int) (size - tail.skipped)];
+				randomAccessFile.seek(tail.skipped);
+				randomAccessFile.readFully(tail.bytes);
+				return tail.fromLineStart();
+			} finally {
+				randomAccessFile.close();
+			}
+		}
+
+		/** Only the blocks of the tail are inflated. */
+		static Tail of(BlockLog log) throws IOException {
+			Tail tail = new Tail();
+			tail.skipped = Math.max(0, log.length() - TAIL);
+			ByteArrayOutputStream out = new ByteArrayOutputStream(TAIL);
+			log.copy(tail.skipped, log.length(), out);
+			tail.bytes = out.toByteArray();
+			return tail.fromLineStart();
+		}
+
+		/**
+		 * Read the stream to the end, e.g. a compressed log. Only the last
+		 * TAIL bytes are kept on the way.
+		 */
+		static Tail of(InputStream in) throws IOException {
+			byte[] ring = new byte[TAIL];
+			byte[] buffer = new byte[8192];
+			long total = 0;
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				int skip = Math.max(0, n - TAIL);
+				total += skip;
+				int len = n - skip;
+				int pos = (int) (total % TAIL);
+				int first = Math.min(len, TAIL - pos);
+				System.arraycopy(buffer, skip, ring, pos, first);
+				System.arraycopy(buffer, skip + first, ring, 0, len - first);
+				total += len;
+			}
+			Tail tail = new Tail();
+			int size = (int) Math.min(total, TAIL);
+			tail.skipped = total - size;
+			tail.bytes = new byte[size];
+			int start = (int) (tail.skipped % TAIL);
+			int first = Math.min(size, TAIL - start);
+			System.arraycopy(ring, start, tail.bytes, 0, first);
+			System.arraycopy(ring, 0, tail.bytes, first, size - first);
+			return tail.fromLineStart();
+		}
+
+		// drop the partial first line of a cut log
+		private Tail fromLineStart() {
+			if (skipped == 0) {
+				return this;
+			}
+			for (int i = 0; i < bytes.length; i++) {
+				if (bytes[i] == '\n') {
+					byte[] rest = new byte[bytes.length - i - 1];
+					System.arraycopy(bytes, i + 1, rest, 0, rest.length);
+					skipped += i + 1;
+					bytes = rest;
+					break;
+				}
+			}
+			return this;
+		}
+	}
+}
@@ -0,0 +1,49 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.servlets;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.libreoffice.ci.gerrit.buildbot.metrics.Metrics;
+
+import com.google.common.base.Charsets;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/** Scheduler metrics in the Prometheus text exposition format. */
+@Singleton
+public class MetricsServlet extends HttpServlet {
+  private static final long serialVersionUID = 1L;
+
+  private final Metrics metrics;
+
+  @Inject
+  public MetricsServlet(Metrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  protected void doGet(final HttpServletRequest req,
+      final HttpServletResponse rsp) throws IOException, ServletException {
+    rsp.setContentType("text/plain; version=0.0.4");
+    rsp.setCharacterEncoding(Charsets.UTF_8.name());
+    QueueServlet.setNotCacheable(rsp);
+    rsp.setStatus(HttpServletResponse.SC_OK);
+    Writer out = rsp.getWriter();
+    metrics.write(out);
+    out.close();
+  }
+}
@@ -29,6 +29,7 @@ import org.libreoffice.ci.gerrit.buildbot.model.GerritJob;
 import org.libreoffice.ci.gerrit.buildbot.model.TbJobResult;
 import org.libreoffice.ci.gerrit.buildbot.model.Ticket;
 import org.libreoffice.ci.gerrit.buildbot.review.ReviewPublisher;
+import org.libreoffice.ci.gerrit.buildbot.stats.QueueEstimate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -149,23 +150,22 @@ public class QueueServlet extends HttpServlet {
     allData.put("title", "Buildbot Queue");
     final SoyListData soyListData = new SoyListData();
     for (String project : control.getAllProjects()) {
+      QueueEstimate estimate = control.estimate(project);
       List<GerritJob> gerritJobs = control.getGerritJobs(project);
-      synchronized (gerritJobs) {
-        for (GerritJob job : gerritJobs) {
-          boolean userIsAdmin = false;
-          CurrentUser user = cu.get();
-          if (user instanceof IdentifiedUser) {
-            if (user.getEffectiveGroups().contains(
-                config.findProject(job.getGerritProject())
-                    .getBuildbotAdminGroupId())) {
-              userIsAdmin = true;
-            }
+      for (GerritJob job : gerritJobs) {
+        boolean userIsAdmin = false;
+        CurrentUser user = cu.get();
+        if (user instanceof IdentifiedUser) {
+          if (user.getEffectiveGroups().contains(
+              config.findProject(job.getGerritProject())
+                  .getBuildbotAdminGroupId())) {
+            userIsAdmin = true;
           }
+        }
 
-          List<BuildbotPlatformJob> list = job.getBuildbotList();
-          synchronized (list) {
-            addTasks(soyListData, list, userIsAdmin);
-          }
+        List<BuildbotPlatformJob> list = job.getBuildbotList();
+        synchronized (list) {
+          addTasks(soyListData, list, userIsAdmin, estimate);
         }
       }
     }
@@ -191,7 +191,8 @@ public class QueueServlet extends HttpServlet {
   // }
 
   private void addTasks(SoyListData soyListData,
-      List<BuildbotPlatformJob> list, boolean userIsAdmin) {
+      List<BuildbotPlatformJob> list, boolean userIsAdmin,
+      QueueEstimate estimate) {
     // check if the user has the ACL
     for (BuildbotPlatformJob job : list) {
       SoyMapData task = new SoyMapData();
@@ -216,7 +217,7 @@ public class QueueServlet extends HttpServlet {
           task.put("href", hrefData);
         }
       } else {
-        status = "STARTED";
+        status = job.isAbortRequested() ? "ABORT_REQUESTED" : "STARTED";
         startTime = time(t.getStartTime());
         if (userIsAdmin) {
           addStartActions(actions);
@@ -225,6 +226,8 @@ public class QueueServlet extends HttpServlet {
       task.put("taskid", jobId);
       task.put("start", startTime);
       task.put("end", endTime);
+      task.put("eta", job.isReady() ? "-"
+          : estimate.format(estimate.getEta(job)));
       task.put("ref", job.getParent().getGerritRef());
       task.put("bot", job.getTinderboxId() == null ? "-" : job.getTinderboxId());
       task.put("branch", job.getParent().getGerritBranch());
@@ -21,7 +21,8 @@ import com.google.template.soy.tofu.SoyTofu;
 public abstract class Renderer {
   private static final List<String> SOY_FILENAMES = ImmutableList.of(
       "Common.soy",
-      "Queue.soy");
+      "Queue.soy",
+      "History.soy");
 
   public static final Map<String, String> STATIC_URL_GLOBALS = ImmutableMap.of(
       "buildbot.CSS_URL", "/plugins/buildbot/static/buildbot.css");
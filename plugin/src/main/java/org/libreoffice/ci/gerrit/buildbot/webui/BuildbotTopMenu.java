@@ -40,7 +40,7 @@ public class BuildbotTopMenu implements TopMenu {
         Arrays.asList(new MenuEntry("Buildbot", restrictedItems));
     List<MenuItem> fullItems = new ArrayList<MenuItem>(restrictedItems);
     fullItems.addAll(Arrays.asList(new MenuItem("Queue", buildbotBaseUrl
-        + "queue/")));
+        + "queue/"), new MenuItem("History", buildbotBaseUrl + "history")));
     this.fullMenuEntries = Arrays.asList(new MenuEntry("Buildbot", fullItems));
   }
 
@@ -17,6 +17,7 @@ import org.libreoffice.ci.gerrit.buildbot.config.BuildbotConfig;
 import org.libreoffice.ci.gerrit.buildbot.config.BuildbotProject;
 import org.libreoffice.ci.gerrit.buildbot.logic.BuildbotLogicControl;
 import org.libreoffice.ci.gerrit.buildbot.model.GerritJob;
+import org.libreoffice.ci.gerrit.buildbot.stats.QueueEstimate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,24 +59,37 @@ public class ScheduleAction implements UiAction<RevisionResource>,
 
   @Override
   public UiAction.Description getDescription(RevisionResource rcrs) {
-    synchronized (control) {
-      // check if the project is supported
-      String p =
-          rcrs.getControl().getProjectControl().getProject().getName();
-      if (!config.isProjectSupported(p)) {
-        log.debug(String.format("getDescription: empty, project: %s is not supported", p));
-        return new Description().setVisible(false);
-      }
-      GerritJob job = findBuild4Revision(rcrs);
-      return new Description()
-          .setVisible(isVisible(rcrs))
-          .setEnabled(job == null)
-          .setLabel("Schedule...")
-          .setTitle(job == null
-              ? "Schedule a build"
-              : String.format("Build job was already scheduled at %s",
-                  time(job.getStartTime())));
+    // check if the project is supported
+    String p =
+        rcrs.getControl().getProjectControl().getProject().getName();
+    if (!config.isProjectSupported(p)) {
+      log.debug(String.format("getDescription: empty, project: %s is not supported", p));
+      return new Description().setVisible(false);
+    }
+    GerritJob job = findBuild4Revision(rcrs);
+    return new Description()
+        .setVisible(isVisible(rcrs))
+        .setEnabled(job == null)
+        .setLabel("Schedule...")
+        .setTitle(title(p, job, rcrs.getChange().getDest().getShortName()));
+  }
+
+  private String title(String project, GerritJob job, String branch) {
+    QueueEstimate estimate = control.estimate(project);
+    if (job == null) {
+      long eta = estimate.getEtaOfNewJob(branch);
+      return eta == 0
+          ? "Schedule a build"
+          : String.format("Schedule a build, verified in about %s",
+              estimate.format(eta));
     }
+    long eta = estimate.getEta(job);
+    return eta == 0
+        ? String.format("Build job was already scheduled at %s",
+            time(job.getStartTime()))
+        : String.format(
+            "Build job was already scheduled at %s, verified in about %s",
+            time(job.getStartTime()), estimate.format(eta));
   }
 
   private boolean isVisible(RevisionResource rcrs) {
@@ -132,46 +146,46 @@ public class ScheduleAction implements UiAction<RevisionResource>,
   @Override
   public Object apply(RevisionResource rcrs, Input in)
       throws OrmException, ResourceConflictException {
-    synchronized (control) {
-      final GerritJob job = findBuild4Revision(rcrs);
-      String msg;
-      if (job != null) {
-        msg =
-            String.format("Build job was already scheduled: %s, at: %s",
-                job.getId(), time(job.getStartTime()));
-      } else {
-        Change change = rcrs.getChange();
-        log.debug("dispatch event branch: {}, ref: {}", change.getDest()
-            .getShortName(), rcrs.getPatchSet().getRefName());
-        control.startGerritJob(rcrs.getControl().getProject().getName(),
-            change, rcrs.getPatchSet());
-        msg =
-            String.format("Build job scheduled: %s", rcrs.getPatchSet().getId()
-                .toString());
-        ReviewDb db = dbProvider.get();
-        db.changes().beginTransaction(change.getId());
-        try {
-          change = db.changes().atomicUpdate(
-            change.getId(),
-            new AtomicUpdate<Change>() {
-              @Override
-              public Change update(Change change) {
-                ChangeUtil.updated(change);
-                return change;
-              }
-            });
-          db.commit();
-        } finally {
-          db.rollback();
-        }
+    final GerritJob job = findBuild4Revision(rcrs);
+    String msg;
+    if (job != null) {
+      msg =
+          String.format("Build job was already scheduled: %s, at: %s",
+              job.getId(), time(job.getStartTime()));
+    } else {
+      Change change = rcrs.getChange();
+      log.debug("dispatch event branch: {}, ref: {}", change.getDest()
+          .getShortName(), rcrs.getPatchSet().getRefName());
+      PatchSet patchSet = rcrs.getPatchSet();
+      control.startGerritJob(rcrs.getControl().getProject().getName(),
+          change.getKey().toString(), change.getDest().getShortName(),
+          patchSet.getRefName(), patchSet.getRevision().get());
+      msg =
+          String.format("Build job scheduled: %s", rcrs.getPatchSet().getId()
+              .toString());
+      ReviewDb db = dbProvider.get();
+      db.changes().beginTransaction(change.getId());
+      try {
+        change = db.changes().atomicUpdate(
+          change.getId(),
+          new AtomicUpdate<Change>() {
+            @Override
+            public Change update(Change change) {
+              ChangeUtil.updated(change);
+              return change;
+            }
+          });
+        db.commit();
+      } finally {
+        db.rollback();
       }
-      return msg;
     }
+    return msg;
   }
 
   private GerritJob findBuild4Revision(RevisionResource rcrs) {
-    return control.findJobByPatchSet(rcrs.getControl().getProject().getName(),
-        rcrs.getPatchSet());
+    return control.findJobByRevision(rcrs.getControl().getProject().getName(),
+        rcrs.getPatchSet().getRevision().get());
   }
 
   private static String time(final long now) {
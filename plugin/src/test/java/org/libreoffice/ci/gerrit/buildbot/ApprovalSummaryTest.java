@@ -0,0 +1,80 @@
+package org.libreoffice.ci.gerrit.buildbot;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gerrit.reviewdb.client.Account;
+
+public class ApprovalSummaryTest {
+    static final Account.Id REVIEWER = new Account.Id(1);
+    static final Account.Id OTHER = new Account.Id(2);
+    static final Account.Id BUILDBOT = new Account.Id(3);
+
+    ApprovalSummary summary;
+
+    @Before
+    public void setUp() {
+        summary = new ApprovalSummary();
+        // reviewer group member
+        summary.put(REVIEWER, ApprovalSummary.CODE_REVIEW, (short) 2, true);
+    }
+
+    @Test()
+    public void testApprovedByReviewer() {
+        Assert.assertTrue(summary.isPositive());
+        // a vote of 0 on another label is no verification
+        summary.put(OTHER, ApprovalSummary.VERIFIED, (short) 0, false);
+        Assert.assertTrue(summary.isPositive());
+    }
+
+    @Test()
+    public void testNegativeReview() {
+        summary.put(OTHER, ApprovalSummary.CODE_REVIEW, (short) -1, false);
+        Assert.assertFalse(summary.isPositive());
+        // replaced by a later vote of the same user
+        summary.put(OTHER, ApprovalSummary.CODE_REVIEW, (short) 0, false);
+        Assert.assertTrue(summary.isPositive());
+    }
+
+    @Test()
+    public void testNegativeVerify() {
+        summary.put(OTHER, ApprovalSummary.VERIFIED, (short) -1, false);
+        Assert.assertFalse(summary.isPositive());
+    }
+
+    @Test()
+    public void testPositiveVerify() {
+        summary.put(OTHER, ApprovalSummary.VERIFIED, (short) 1, false);
+        Assert.assertFalse(summary.isPositive());
+    }
+
+    @Test()
+    public void testNonReviewerApproval() {
+        summary = new ApprovalSummary();
+        summary.put(OTHER, ApprovalSummary.CODE_REVIEW, (short) 2, false);
+        Assert.assertFalse(summary.isPositive());
+        Assert.assertFalse(summary.approvedByReviewer());
+        Assert.assertEquals(2, summary.best(ApprovalSummary.CODE_REVIEW));
+        // the user joined the reviewer group
+        summary.put(OTHER, ApprovalSummary.CODE_REVIEW, (short) 2, true);
+        Assert.assertTrue(summary.isPositive());
+        // and left it again
+        summary.put(OTHER, ApprovalSummary.CODE_REVIEW, (short) 2, false);
+        Assert.assertFalse(summary.isPositive());
+    }
+
+    @Test()
+    public void testBuildbotVotes() {
+        // the result of an earlier build of the patch set
+        summary.put(BUILDBOT, ApprovalSummary.VERIFIED, (short) -1, false);
+        Assert.assertFalse(summary.isPositive());
+        summary.put(BUILDBOT, ApprovalSummary.VERIFIED, (short) 1, false);
+        Assert.assertFalse(summary.isPositive());
+        Assert.assertEquals(0, summary.worst(ApprovalSummary.VERIFIED));
+        Assert.assertEquals(1, summary.best(ApprovalSummary.VERIFIED));
+        // the vote was reset, e.g. when the build was retriggered
+        summary.put(BUILDBOT, ApprovalSummary.VERIFIED, (short) 0, false);
+        Assert.assertTrue(summary.isPositive());
+    }
+}
@@ -0,0 +1,105 @@
+package org.libreoffice.ci.gerrit.buildbot;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.libreoffice.ci.gerrit.buildbot.metrics.Metrics;
+
+import com.google.gerrit.reviewdb.client.Account;
+
+public class EventQueueTest {
+    static final String CHANGE = "FOO/4711";
+
+    EventQueue queue;
+
+    @Before
+    public void setUp() {
+        queue = new EventQueue(new Metrics());
+        queue.start();
+    }
+
+    @After
+    public void tearDown() {
+        queue.stop();
+    }
+
+    @Test()
+    public void testBackToBackComments() throws Exception {
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(2);
+        final ApprovalSummary summary = new ApprovalSummary();
+        // an event of the change is in flight
+        queue.submit(CHANGE, null, new Runnable() {
+            @Override
+            public void run() {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        Assert.assertTrue(running.await(5, TimeUnit.SECONDS));
+        // two comments on the same revision arrive back to back, as they
+        // are submitted by the pipeline
+        Assert.assertTrue(queue.submit(CHANGE, null,
+                vote(summary, new Account.Id(1), ApprovalSummary.VERIFIED, 0, done)));
+        Assert.assertTrue(queue.submit(CHANGE, null,
+                vote(summary, new Account.Id(2), ApprovalSummary.CODE_REVIEW, 2, done)));
+        release.countDown();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(0, queue.getMerged());
+        Assert.assertEquals(2, summary.best(ApprovalSummary.CODE_REVIEW));
+        Assert.assertTrue(summary.isPositive());
+    }
+
+    @Test()
+    public void testMergeSameKey() throws Exception {
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        queue.submit(CHANGE, "patchset-created:abc", new Runnable() {
+            @Override
+            public void run() {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        Assert.assertTrue(running.await(5, TimeUnit.SECONDS));
+        // the head is running, the first duplicate still waits for it
+        final CountDownLatch done = new CountDownLatch(1);
+        Runnable next = new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        };
+        queue.submit(CHANGE, "patchset-created:abc", next);
+        queue.submit(CHANGE, "patchset-created:abc", next);
+        Assert.assertEquals(1, queue.getMerged());
+        release.countDown();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    private static Runnable vote(final ApprovalSummary summary,
+            final Account.Id who, final String label, final int value,
+            final CountDownLatch done) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                // reviewer group member
+                summary.put(who, label, (short) value, true);
+                done.countDown();
+            }
+        };
+    }
+}
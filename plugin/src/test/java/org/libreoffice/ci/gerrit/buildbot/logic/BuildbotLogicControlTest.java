@@ -0,0 +1,595 @@
+package org.libreoffice.ci.gerrit.buildbot.logic;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.BasicConfigurator;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.libreoffice.ci.gerrit.buildbot.commands.TaskStatus;
+import org.libreoffice.ci.gerrit.buildbot.config.BuildbotConfig;
+import org.libreoffice.ci.gerrit.buildbot.config.BuildbotProject;
+import org.libreoffice.ci.gerrit.buildbot.config.TriggerStrategy;
+import org.libreoffice.ci.gerrit.buildbot.model.BuildbotPlatformJob;
+import org.libreoffice.ci.gerrit.buildbot.model.GerritJob;
+import org.libreoffice.ci.gerrit.buildbot.model.Os;
+import org.libreoffice.ci.gerrit.buildbot.model.TbJobDescriptor;
+import org.libreoffice.ci.gerrit.buildbot.model.TbJobResult;
+import org.libreoffice.ci.gerrit.buildbot.sim.BuildTime;
+import org.libreoffice.ci.gerrit.buildbot.sim.FleetSimulator;
+import org.libreoffice.ci.gerrit.buildbot.sim.Report;
+import org.libreoffice.ci.gerrit.buildbot.sim.Scenario;
+import org.libreoffice.ci.gerrit.buildbot.utils.QueueUtils;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ListenableFuture;
+
+public class BuildbotLogicControlTest {
+
+    BuildbotConfig config;
+    BuildbotLogicControl control;
+    static final String PROJECT = "FOO";
+    static final String TB1 = "42";
+    static final String TB2 = "43";
+    static final String URL = "url";
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        config = new BuildbotConfig();
+        config.setEmail("email@site");
+        config.setForgeReviewerIdentity(true);
+        ImmutableList.Builder<BuildbotProject> projects = ImmutableList.builder();
+        BuildbotProject project = new BuildbotProject(PROJECT);
+        project.setTriggerStrategy(TriggerStrategy.MANUALLY);
+        projects.add(project);
+        config.setProjects(projects.build());
+        control = new BuildbotLogicControl(config);
+        control.start();
+        BasicConfigurator.configure();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        control.stop();
+    }
+
+    @Test()
+    public void testFindJobByRevision() {
+        String revId = "abcdefghijklmnopqrstuvwxyz";
+        control.startGerritJob(PROJECT, "4711", "master", "4712", revId);
+        GerritJob gerritJob = control.findJobByRevision(PROJECT, revId);
+        Assert.assertNotNull(gerritJob);
+    }
+    @Test()
+    public void testPatchSetIdFromRef() {
+        control.startGerritJob(PROJECT, "I4711", "master", "refs/changes/11/4711/3", "abcdefghijklmnopqrstuvwxyz");
+        GerritJob gerritJob = control.findJobByChange(PROJECT, "I4711");
+        Assert.assertEquals(4711, gerritJob.getChangeNumber());
+        Assert.assertEquals(3, gerritJob.getPatchSetNumber());
+        control.startGerritJob(PROJECT, "I4713", "master", "4714", "bcdefghijklmnopqrstuvwxyz");
+        Assert.assertEquals(0, control.findJobByChange(PROJECT, "I4713").getChangeNumber());
+        Assert.assertEquals(0, control.findJobByChange(PROJECT, "I4713").getPatchSetNumber());
+    }
+
+    @Test()
+    public void testCompleteJob() {
+        control.startGerritJob(PROJECT, "4711", "master", "4712", "abcdefghijklmnopqrstuvwxyz");
+        Set<String> branchSet = Sets.newHashSet();
+        TbJobDescriptor job = control.launchTbJob(PROJECT, Os.Linux, branchSet, TB1, false);
+        Assert.assertNotNull(job);
+        TbJobResult result = control.setResultPossible(job.getTicket(), TB1, TaskStatus.SUCCESS, URL);
+        Assert.assertNotNull(result);
+        job = control.launchTbJob(PROJECT, Os.Linux, branchSet, TB1, false);
+        Assert.assertNull(job);
+        job = control.launchTbJob(PROJECT, Os.Windows, branchSet, TB1, false);
+        Assert.assertNotNull(job);
+        result = control.setResultPossible(job.getTicket(), TB1, TaskStatus.SUCCESS, URL);
+        job = control.launchTbJob(PROJECT, Os.Windows, branchSet, TB1, false);
+        Assert.assertNull(job);
+        job = control.launchTbJob(PROJECT, Os.MacOSX, branchSet, TB1, false);
+        Assert.assertNotNull(job);
+        Assert.assertFalse(result.getTbPlatformJob().getParent().allJobsReady());
+        result = control.setResultPossible(job.getTicket(), TB1, TaskStatus.SUCCESS, URL);
+        Assert.assertTrue(result.getTbPlatformJob().getParent().allJobsReady());
+        dumpQueue();
+    }
+
+    @Test()
+    public void testJobFinishedByLastTask() {
+        String revId = "abcdefghijklmnopqrstuvwxyz";
+        control.startGerritJob(PROJECT, "4711", "master", "4712", revId);
+        Set<String> branchSet = Sets.newHashSet();
+        for (Os p : Os.values()) {
+            Assert.assertNotNull(control.findJobByRevision(PROJECT, revId));
+            TbJobDescriptor job = control.launchTbJob(PROJECT, p, branchSet, TB1, false);
+            Assert.assertNotNull(job);
+            Assert.assertNotNull(control.setResultPossible(job.getTicket(), TB1, TaskStatus.SUCCESS, URL));
+        }
+        // no polling thread involved: the job is gone as soon as the last result is in
+        Assert.assertNull(control.findJobByRevision(PROJECT, revId));
+    }
+
+    @Test()
+    public void testConcurrentGetPut() throws Exception {
+        final int jobs = 50;
+        for (int i = 0; i < jobs; i++) {
+            control.startGerritJob(PROJECT, "c" + i, "master", "r" + i, "rev" + i);
+        }
+        final AtomicInteger finished = new AtomicInteger();
+        final AtomicInteger claimed = new AtomicInteger();
+        List<Thread> bots = Lists.newArrayList();
+        for (final Os p : Os.values()) {
+            for (int i = 0; i < 4; i++) {
+                final String box = p.name() + i;
+                bots.add(new Thread() {
+                    @Override
+                    public void run() {
+                        Set<String> branchSet = Sets.newHashSet();
+                        TbJobDescriptor job;
+                        while ((job = control.launchTbJob(PROJECT, p, branchSet, box, false)) != null) {
+                            claimed.incrementAndGet();
+                            TbJobResult result = control.setResultPossible(job.getTicket(), box, TaskStatus.SUCCESS, URL);
+                            if (result != null && result.isJobFinished()) {
+                                finished.incrementAndGet();
+                            }
+                        }
+                    }
+                });
+            }
+        }
+        for (Thread t : bots) {
+            t.start();
+        }
+        for (Thread t : bots) {
+            t.join();
+        }
+        // every task built once, every job finished exactly once
+        Assert.assertEquals(jobs * Os.values().length, claimed.get());
+        Assert.assertEquals(jobs, finished.get());
+        Assert.assertTrue(control.getGerritJobs(PROJECT).isEmpty());
+    }
+
+    @Test()
+    public void testWaitForTask() throws Exception {
+        final Set<String> branchSet = Sets.newHashSet("master");
+        Assert.assertNull(control.awaitTbJob(PROJECT, Os.Linux, branchSet, TB1, false, 50).get(5, TimeUnit.SECONDS));
+        List<ListenableFuture<TbJobDescriptor>> got = Lists.newArrayList();
+        for (int i = 0; i < 3; i++) {
+            got.add(control.awaitTbJob(PROJECT, Os.Linux, branchSet, TB1, false, 10000));
+            // keep the arrival order of the waiters
+            Thread.sleep(100);
+        }
+        // a closed session gives up its place
+        got.get(1).cancel(false);
+        // other branch does not wake anybody
+        control.startGerritJob(PROJECT, "4711", "feature", "4712", "abcdefghijklmnopqrstuvwxyz");
+        control.startGerritJob(PROJECT, "4713", "master", "4714", "bcdefghijklmnopqrstuvwxyz");
+        Assert.assertEquals("4714", got.get(0).get(5, TimeUnit.SECONDS).getRef());
+        Thread.sleep(100);
+        Assert.assertFalse(got.get(2).isDone());
+        control.startGerritJob(PROJECT, "4715", "master", "4716", "cdefghijklmnopqrstuvwxyz");
+        Assert.assertEquals("4716", got.get(2).get(5, TimeUnit.SECONDS).getRef());
+    }
+
+    @Test()
+    public void testBoxMismatch() {
+        control.startGerritJob(PROJECT, "4711", "master", "4712", "abcdefghijklmnopqrstuvwxyz");
+        Set<String> branchSet = Sets.newHashSet();
+        TbJobDescriptor job = control.launchTbJob(PROJECT, Os.Linux, branchSet, TB1, true);
+        Assert.assertNotNull(job);
+        TbJobResult result = control.setResultPossible(job.getTicket(), TB2, TaskStatus.SUCCESS, URL);
+        Assert.assertNull(result);
+        dumpQueue();
+    }
+
+    @Test()
+    public void testFindProjectByTicket() {
+        control.startGerritJob(PROJECT, "4711", "master", "4712", "abcdefghijklmnopqrstuvwxyz");
+        Set<String> branchSet = Sets.newHashSet();
+        TbJobDescriptor job = control.launchTbJob(PROJECT, Os.Linux, branchSet, TB1, false);
+        Assert.assertEquals(PROJECT, control.findProjectByTicket(job.getTicket()));
+    }
+
+    @Test()
+    public void testTicketRoutedToOwningProject() {
+        ImmutableList.Builder<BuildbotProject> projects = ImmutableList.builder();
+        for (String name : new String[] {"BAR", PROJECT}) {
+            BuildbotProject project = new BuildbotProject(name);
+            project.setTriggerStrategy(TriggerStrategy.MANUALLY);
+            projects.add(project);
+        }
+        config.setProjects(projects.build());
+        control.stop();
+        control = new BuildbotLogicControl(config);
+        control.start();
+        control.startGerritJob("BAR", "4711", "master", "4712", "abcdefghijklmnopqrstuvwxyz");
+        control.startGerritJob(PROJECT, "4713", "master", "4714", "bcdefghijklmnopqrstuvwxyz");
+        Set<String> branchSet = Sets.newHashSet();
+        TbJobDescriptor job = control.launchTbJob(PROJECT, Os.Linux, branchSet, TB1, false);
+        Assert.assertEquals(PROJECT, control.findProjectByTicket(job.getTicket()));
+        TbJobResult result = control.setResultPossible(job.getTicket(), TB1, TaskStatus.SUCCESS, URL);
+        Assert.assertEquals("4714", result.getTbPlatformJob().getParent().getGerritRef());
+        // ticket is released with the completed task, not with the job
+        Assert.assertFalse(result.isJobFinished());
+        Assert.assertNull(control.findProjectByTicket(job.getTicket()));
+        Assert.assertNull(control.findTaskByTicket(job.getTicket()));
+        Assert.assertNull(control.setResultPossible(job.getTicket(), TB1, TaskStatus.SUCCESS, URL));
+    }
+
+    @Test
+    public void test2DiscardedTasks() {
+        control.startGerritJob(PROJECT, "master", "4711", "4712", "abcdefghijklmnopqrstuvwxyz");
+        Set<String> branchSet = Sets.newHashSet();
+        TbJobDescriptor job = control.launchTbJob(PROJECT, Os.Linux, branchSet, "42", false);
+        Assert.assertNotNull(job);
+        TbJobResult result = control.setResultPossible(job.getTicket(), "42", TaskStatus.FAILED, "url");
+        Assert.assertNotNull(result);
+        Assert.assertTrue(result.getTbPlatformJob().getParent().allJobsReady());
+        job = control.launchTbJob(PROJECT, Os.Linux, branchSet, "42", false);
+        Assert.assertNull(job);
+        job = control.launchTbJob(PROJECT, Os.Windows, branchSet, "42", false);
+        Assert.assertNull(job);
+        job = control.launchTbJob(PROJECT, Os.MacOSX, branchSet, "42", false);
+        Assert.assertNull(job);
+        dumpQueue();
+    }
+
+    @Test
+    public void test1CanceledTasks() {
+        control.startGerritJob(PROJECT, "4711", "master", "4712", "a1bcdefghijklmnopqrstuvwxyz");
+        Set<String> branchSet = Sets.newHashSet();
+        TbJobDescriptor job = control.launchTbJob(PROJECT, Os.Linux, branchSet, "42", false);
+        Assert.assertNotNull(job);
+        TbJobResult result = control.setResultPossible(job.getTicket(), "42", TaskStatus.SUCCESS, "url");
+        Assert.assertNotNull(result);
+        job = control.launchTbJob(PROJECT, Os.Windows, branchSet, TB1, false);
+        Assert.assertNotNull(job);
+        result = control.setResultPossible(job.getTicket(), TB1, TaskStatus.SUCCESS, URL);
+        job = control.launchTbJob(PROJECT, Os.MacOSX, branchSet, TB1, false);
+        Assert.assertNotNull(job);
+        result = control.setResultPossible(job.getTicket(), TB1, TaskStatus.CANCELED, URL);
+        Assert.assertNotNull(result);
+        Assert.assertFalse(result.getTbPlatformJob().getParent().allJobsReady());
+        dumpQueue();
+    }
+
+    @Test
+    public void testLookupsFollowCancelAndFinish() {
+        String revId = "a1bcdefghijklmnopqrstuvwxyz";
+        control.startGerritJob(PROJECT, "4711", "master", "4712", revId);
+        Set<String> branchSet = Sets.newHashSet();
+        TbJobDescriptor job = control.launchTbJob(PROJECT, Os.Linux, branchSet, TB1, false);
+        Assert.assertEquals(PROJECT, control.findProjectByTicket(job.getTicket()));
+        Assert.assertNotNull(control.findJobById(PROJECT, "a1bcdefgh"));
+        control.setResultPossible(job.getTicket(), TB1, TaskStatus.CANCELED, URL);
+        // replaced task is not engaged yet
+        Assert.assertNull(control.findProjectByTicket(job.getTicket()));
+        job = control.launchTbJob(PROJECT, Os.Linux, branchSet, TB2, false);
+        Assert.assertEquals(PROJECT, control.findProjectByTicket(job.getTicket()));
+        GerritJob gerritJob = control.findJobByChange(PROJECT, "4711");
+        Assert.assertNotNull(gerritJob);
+        gerritJob.handleStale(control.getTBQueueMap(PROJECT));
+        control.setResultPossible(job.getTicket(), TB2, TaskStatus.SUCCESS, URL);
+        Assert.assertNull(control.findProjectByTicket(job.getTicket()));
+        Assert.assertNull(control.findJobById(PROJECT, "a1bcdefgh"));
+        Assert.assertNull(control.findJobByRevision(PROJECT, revId));
+        Assert.assertNull(control.findJobByChange(PROJECT, "4711"));
+    }
+
+    @Test
+    public void testPeekTasks() {
+        control.startGerritJob(PROJECT, "4711", "master", "4712", "a1bcdefghijklmnopqrstuvwxyz");
+        Set<String> branchSet = Sets.newHashSet();
+        TbJobDescriptor job = control.launchTbJob(PROJECT, Os.Linux, branchSet, "42", true);
+        Assert.assertNotNull(job);
+        job = control.launchTbJob(PROJECT, Os.Linux, branchSet, "42", true);
+        Assert.assertNotNull(job);
+        job = control.launchTbJob(PROJECT, Os.Linux, branchSet, "42", false);
+        Assert.assertNotNull(job);
+        job = control.launchTbJob(PROJECT, Os.Linux, branchSet, "42", false);
+        Assert.assertNull(job);
+        job = control.launchTbJob(PROJECT, Os.Windows, branchSet, TB1, true);
+        Assert.assertNotNull(job);
+        job = control.launchTbJob(PROJECT, Os.MacOSX, branchSet, TB1, false);
+        Assert.assertNotNull(job);
+        dumpQueue();
+    }
+
+    @Test
+    public void testBranchFilteredGet() {
+        control.startGerritJob(PROJECT, "4711", "master", "4712", "a1bcdefghijklmnopqrstuvwxyz");
+        control.startGerritJob(PROJECT, "4713", "libreoffice-4-2", "4714", "b1bcdefghijklmnopqrstuvwxyz");
+        control.startGerritJob(PROJECT, "4715", "libreoffice-4-1", "4716", "c1bcdefghijklmnopqrstuvwxyz");
+        control.startGerritJob(PROJECT, "4717", "libreoffice-4-2", "4718", "d1bcdefghijklmnopqrstuvwxyz");
+        Set<String> branchSet = Sets.newHashSet("libreoffice-4-1", "libreoffice-4-2");
+        TbJobDescriptor job = control.launchTbJob(PROJECT, Os.Linux, branchSet, TB1, true);
+        Assert.assertEquals("4714", job.getRef());
+        job = control.launchTbJob(PROJECT, Os.Linux, branchSet, TB1, false);
+        Assert.assertEquals("4714", job.getRef());
+        job = control.launchTbJob(PROJECT, Os.Linux, branchSet, TB1, false);
+        Assert.assertEquals("4716", job.getRef());
+        job = control.launchTbJob(PROJECT, Os.Linux, branchSet, TB1, false);
+        Assert.assertEquals("4718", job.getRef());
+        job = control.launchTbJob(PROJECT, Os.Linux, branchSet, TB1, false);
+        Assert.assertNull(job);
+        job = control.launchTbJob(PROJECT, Os.Linux, Sets.<String>newHashSet(), TB1, false);
+        Assert.assertEquals("4712", job.getRef());
+        Assert.assertTrue(control.getTBQueueMap(PROJECT).get(Os.Linux).isEmpty());
+    }
+
+    @Test
+    @Ignore
+    public void testManyJobs() {
+        String prefix = "a1bcdefghi";
+        Set<String> branchSet = Sets.newHashSet();
+        for (int i = 0; i < 100; i++) {
+            control.startGerritJob(PROJECT, "4711", "master", "4712", prefix + i);
+        }
+        for (int i = 0; i < 50; i++) {
+            for (Os p : Os.values()) {
+                TbJobDescriptor job = control.launchTbJob(PROJECT, p, branchSet, "42", false);
+                Assert.assertNotNull(job);
+            }
+        }
+        dumpQueue();
+    }
+
+    @Test
+    public void testStaleJob() {
+        control.startGerritJob(PROJECT, "4711", "master", "4712", "a1bcdefghijklmnopqrstuvwxyz");
+        Set<String> branchSet = Sets.newHashSet();
+        TbJobDescriptor descr = control.launchTbJob(PROJECT, Os.Linux, branchSet, TB1, false);
+        Assert.assertNotNull(descr);
+        GerritJob job = control.findJobByChange(PROJECT, "4711");
+        Assert.assertNotNull(job);
+        job.handleStale(control.getTBQueueMap(PROJECT));
+        Assert.assertTrue(job.isStale());
+        TbJobResult result = control.setResultPossible(descr.getTicket(), TB1, TaskStatus.SUCCESS, URL);
+        Assert.assertNotNull(result);
+        dumpQueue();
+    }
+
+    @Test
+    public void testNewPatchSetSupersedesOld() {
+        startPatchSet("4711", 1, "a1bcdefghijklmnopqrstuvwxyz");
+        Set<String> branchSet = Sets.newHashSet();
+        TbJobDescriptor linux = control.launchTbJob(PROJECT, Os.Linux, branchSet, TB1, false);
+        Assert.assertNotNull(linux);
+        startPatchSet("4711", 2, "a2bcdefghijklmnopqrstuvwxyz");
+        GerritJob old = control.findJobByRevision(PROJECT, "a1bcdefghijklmnopqrstuvwxyz");
+        Assert.assertTrue(old.isStale());
+        // the started build of the old patch set is kept, the others are dropped
+        Assert.assertEquals(Os.values().length - 1, control.getSupersededTasks(PROJECT));
+        TbJobDescriptor windows = control.launchTbJob(PROJECT, Os.Windows, branchSet, TB1, false);
+        Assert.assertEquals("refs/changes/11/4711/2", windows.getRef());
+        Assert.assertNull(control.launchTbJob(PROJECT, Os.Windows, branchSet, TB1, false));
+        Assert.assertNotNull(control.setResultPossible(linux.getTicket(), TB1, TaskStatus.SUCCESS, URL));
+        Assert.assertNull(control.findJobByRevision(PROJECT, "a1bcdefghijklmnopqrstuvwxyz"));
+        dumpQueue();
+    }
+
+    @Test()
+    public void testAbandonPurgesChange() {
+        startPatchSet("4711", 1, "a1bcdefghijklmnopqrstuvwxyz");
+        Set<String> branchSet = Sets.newHashSet();
+        TbJobDescriptor linux = control.launchTbJob(PROJECT, Os.Linux, branchSet, TB1, false);
+        Assert.assertEquals(Os.values().length - 1, control.abortChange(PROJECT, "I4711", 4711, "master", "abandoned"));
+        Assert.assertNull(control.launchTbJob(PROJECT, Os.Windows, branchSet, TB1, false));
+        List<BuildbotPlatformJob> aborted = control.findAbortedTasks(PROJECT, TB1);
+        Assert.assertEquals(1, aborted.size());
+        Assert.assertEquals(linux.getTicket(), aborted.get(0).getTicketString());
+        Assert.assertTrue(control.findAbortedTasks(PROJECT, TB2).isEmpty());
+        // a cancelled build of an aborted job is not rescheduled
+        TbJobResult result = control.setResultPossible(linux.getTicket(), TB1, TaskStatus.CANCELLED, URL);
+        Assert.assertTrue(result.isJobFinished());
+        Assert.assertNull(control.findJobByRevision(PROJECT, "a1bcdefghijklmnopqrstuvwxyz"));
+        Assert.assertNull(control.launchTbJob(PROJECT, Os.Linux, branchSet, TB1, false));
+    }
+
+    @Test()
+    public void testFailureRequestsAbort() {
+        control.startGerritJob(PROJECT, "I4711", "master", "refs/changes/11/4711/1", "abcdefghijklmnopqrstuvwxyz");
+        Set<String> branchSet = Sets.newHashSet();
+        TbJobDescriptor linux = control.launchTbJob(PROJECT, Os.Linux, branchSet, TB1, false);
+        TbJobDescriptor windows = control.launchTbJob(PROJECT, Os.Windows, branchSet, TB2, false);
+        Assert.assertFalse(control.findTaskByTicket(windows.getTicket()).isAbortRequested());
+        Assert.assertFalse(control.setResultPossible(linux.getTicket(), TB1, TaskStatus.FAILED, URL).isJobFinished());
+        BuildbotPlatformJob task = control.findTaskByTicket(windows.getTicket());
+        Assert.assertTrue(task.isAbortRequested());
+        Assert.assertEquals("build failed on Linux", task.getAbortReason());
+        TbJobResult result = control.setResultPossible(windows.getTicket(), TB2, TaskStatus.ABORTED, null);
+        Assert.assertTrue(result.isJobFinished());
+        Assert.assertTrue(result.ignoreJobStatus());
+        Assert.assertNull(control.findTaskByTicket(windows.getTicket()));
+    }
+
+    @Test()
+    public void testLeaseExpiryRequeuesAtHead() throws Exception {
+        config.setLease(Os.Linux, 300);
+        control.startGerritJob(PROJECT, "I4711", "master", "refs/changes/11/4711/1", "abcdefghijklmnopqrstuvwxyz");
+        control.startGerritJob(PROJECT, "I4712", "master", "refs/changes/12/4712/1", "bcdefghijklmnopqrstuvwxyz");
+        Set<String> branchSet = Sets.newHashSet();
+        TbJobDescriptor first = control.launchTbJob(PROJECT, Os.Linux, branchSet, TB1, false);
+        Assert.assertEquals("refs/changes/11/4711/1", first.getRef());
+        // the heartbeat keeps the ticket
+        for (int i = 0; i < 4; i++) {
+            Thread.sleep(100);
+            Assert.assertNotNull(control.renewLease(first.getTicket(), TB1));
+        }
+        Assert.assertNull(control.renewLease(first.getTicket(), TB2));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (control.findTaskByTicket(first.getTicket()) != null
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        Assert.assertTrue(control.isLeaseExpired(first.getTicket()));
+        // the dead box is out, the task is built again before the next job
+        Assert.assertNull(control.setResultPossible(first.getTicket(), TB1, TaskStatus.SUCCESS, URL));
+        TbJobDescriptor again = control.launchTbJob(PROJECT, Os.Linux, branchSet, TB2, false);
+        Assert.assertEquals("refs/changes/11/4711/1", again.getRef());
+        // a new claim, a new ticket
+        Assert.assertNotEquals(first.getTicket(), again.getTicket());
+        Assert.assertTrue(control.isLeaseExpired(first.getTicket()));
+        Assert.assertFalse(control.isLeaseExpired(again.getTicket()));
+        Assert.assertNull(control.setResultPossible(first.getTicket(), TB2, TaskStatus.SUCCESS, URL));
+        Assert.assertNotNull(control.setResultPossible(again.getTicket(), TB2, TaskStatus.SUCCESS, URL));
+    }
+
+    @Test()
+    public void testTicketPerClaim() throws Exception {
+        control.stop();
+        config.setJournalDir(tmp.getRoot());
+        control = new BuildbotLogicControl(config);
+        control.start();
+        control.startGerritJob(PROJECT, "I4711", "master", "refs/changes/11/4711/1", "abcdefghijklmnopqrstuvwxyz");
+        Set<String> branchSet = Sets.newHashSet();
+        TbJobDescriptor first = control.launchTbJob(PROJECT, Os.Linux, branchSet, TB1, false);
+        Assert.assertEquals("abcdefghi_Linux", first.getTicket());
+        Assert.assertNotNull(control.setResultPossible(first.getTicket(), TB1, TaskStatus.CANCELLED, URL));
+        TbJobDescriptor second = control.launchTbJob(PROJECT, Os.Linux, branchSet, TB2, false);
+        Assert.assertEquals("abcdefghi_Linux_2", second.getTicket());
+        Assert.assertNull(control.findTaskByTicket(first.getTicket()));
+        control.stop();
+
+        // the ticket and the count survive a restart
+        control = new BuildbotLogicControl(config);
+        control.start();
+        Assert.assertNotNull(control.findTaskByTicket(second.getTicket()));
+        Assert.assertNotNull(control.setResultPossible(second.getTicket(), TB2, TaskStatus.CANCELLED, URL));
+        Assert.assertEquals("abcdefghi_Linux_3", control.launchTbJob(PROJECT, Os.Linux, branchSet, TB1, false).getTicket());
+    }
+
+    @Test()
+    public void testIdleTimeoutFinishesJob() throws Exception {
+        config.findProject(PROJECT).setIdleTimeout(Os.MacOSX, 200);
+        final List<GerritJob> timedOut = Lists.newCopyOnWriteArrayList();
+        control.setIdleTimeoutListener(new IdleTimeoutListener() {
+            @Override
+            public void jobTimedOut(GerritJob job) {
+                timedOut.add(job);
+            }
+        });
+        control.startGerritJob(PROJECT, "I4711", "master", "refs/changes/11/4711/1", "abcdefghijklmnopqrstuvwxyz");
+        Set<String> branchSet = Sets.newHashSet();
+        TbJobDescriptor linux = control.launchTbJob(PROJECT, Os.Linux, branchSet, TB1, false);
+        TbJobDescriptor windows = control.launchTbJob(PROJECT, Os.Windows, branchSet, TB1, false);
+        Assert.assertNotNull(control.setResultPossible(linux.getTicket(), TB1, TaskStatus.SUCCESS, URL));
+        TbJobResult result = control.setResultPossible(windows.getTicket(), TB1, TaskStatus.SUCCESS, URL);
+        Assert.assertFalse(result.isJobFinished());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (timedOut.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        Assert.assertEquals(1, timedOut.size());
+        Assert.assertEquals(1, control.getTimedOutTasks(PROJECT));
+        Assert.assertNull(control.findJobByRevision(PROJECT, "abcdefghijklmnopqrstuvwxyz"));
+        Assert.assertNull(control.launchTbJob(PROJECT, Os.MacOSX, branchSet, TB1, false));
+    }
+
+    @Test()
+    public void testRestartResumesFromJournal() throws Exception {
+        control.stop();
+        config.setJournalDir(tmp.getRoot());
+        control = new BuildbotLogicControl(config);
+        control.start();
+        control.startGerritJob(PROJECT, "I4711", "master", "refs/changes/11/4711/1", "abcdefghijklmnopqrstuvwxyz");
+        control.startGerritJob(PROJECT, "I4713", "master", "refs/changes/13/4713/1", "bcdefghijklmnopqrstuvwxyz");
+        Set<String> branchSet = Sets.newHashSet();
+        TbJobDescriptor linux = control.launchTbJob(PROJECT, Os.Linux, branchSet, TB1, false);
+        TbJobDescriptor windows = control.launchTbJob(PROJECT, Os.Windows, branchSet, TB1, false);
+        Assert.assertNotNull(control.setResultPossible(windows.getTicket(), TB1, TaskStatus.SUCCESS, URL));
+        control.stop();
+
+        control = new BuildbotLogicControl(config);
+        control.start();
+        Assert.assertEquals(2, control.getGerritJobs(PROJECT).size());
+        // only the ticket still building is engaged
+        Assert.assertNull(control.findProjectByTicket(windows.getTicket()));
+        Assert.assertEquals(PROJECT, control.findProjectByTicket(linux.getTicket()));
+        // the box that claimed the ticket before the restart reports back
+        Assert.assertNotNull(control.setResultPossible(linux.getTicket(), TB1, TaskStatus.SUCCESS, URL));
+        control.stop();
+
+        control = new BuildbotLogicControl(config);
+        control.start();
+        Assert.assertEquals(2, control.getGerritJobs(PROJECT).size());
+        // the queues keep their order
+        TbJobDescriptor mac = control.launchTbJob(PROJECT, Os.MacOSX, branchSet, TB2, false);
+        Assert.assertEquals("refs/changes/11/4711/1", mac.getRef());
+        Assert.assertTrue(control.setResultPossible(mac.getTicket(), TB2, TaskStatus.SUCCESS, URL).isJobFinished());
+        Assert.assertEquals("refs/changes/13/4713/1", control.launchTbJob(PROJECT, Os.Linux, branchSet, TB2, false).getRef());
+    }
+
+    @Test
+    public void testFleetSimulation() {
+        Scenario scenario = new Scenario()
+                .setDuration(TimeUnit.DAYS.toMillis(2))
+                .setPatchSetsPerHour(1)
+                .addBranch("master", 0.8)
+                .addBranch("libreoffice-4-2", 0.2);
+        scenario.platform(Os.Linux).addBoxes(1).addBoxes(1, "master")
+                .setBuildTime(BuildTime.logNormal(TimeUnit.HOURS.toMillis(1), 0.3));
+        scenario.platform(Os.Windows).addBoxes(2)
+                .setBuildTime(BuildTime.fixed(TimeUnit.MINUTES.toMillis(90)));
+        scenario.platform(Os.MacOSX).addBoxes(2)
+                .setBuildTime(BuildTime.uniform(TimeUnit.MINUTES.toMillis(60),
+                        TimeUnit.MINUTES.toMillis(90)));
+        Report report = new FleetSimulator(scenario).run();
+
+        Assert.assertTrue(report.getPatchSets() > 0);
+        Assert.assertTrue(report.getVerified() + report.getRejected() > 0);
+        // one point per hour and platform
+        Assert.assertEquals(48 * Os.values().length, report.getCurve().size());
+        for (Os p : Os.values()) {
+            Report.Interval total = report.getTotal(p);
+            Assert.assertTrue(total.getBuilt() > 0);
+            Assert.assertTrue(total.getUtilization() > 0);
+            Assert.assertTrue(total.getUtilization() <= 1);
+        }
+        // the engine ran on the virtual clock: a task claimed at once
+        // waited less than the build time of the task ahead of it
+        Assert.assertTrue(report.getTotal(Os.Windows).getMeanWait()
+                < TimeUnit.MINUTES.toMillis(90));
+        Assert.assertTrue(report.getMeanTurnaround()
+                >= TimeUnit.MINUTES.toMillis(60));
+
+        // the same seed plays the same week
+        StringWriter first = new StringWriter();
+        report.writeCurve(new PrintWriter(first));
+        StringWriter second = new StringWriter();
+        new FleetSimulator(scenario).run().writeCurve(new PrintWriter(second));
+        Assert.assertEquals(first.toString(), second.toString());
+    }
+
+    private void startPatchSet(String change, int ps, String revision) {
+        control.startPatchSet(PROJECT, "I" + change, "master",
+                String.format("refs/changes/%s/%s/%d",
+                        change.substring(change.length() - 2), change, ps),
+                revision);
+    }
+
+    private void dumpQueue() {
+        try {
+            Thread.sleep(200);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        PrintWriter stdout = new PrintWriter(System.out);
+        QueueUtils.dumpQueue(stdout, null, control, PROJECT, true);
+        stdout.flush();
+    }
+}
@@ -0,0 +1,134 @@
+package org.libreoffice.ci.gerrit.buildbot.publisher;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+
+public class BlockLogTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test()
+    public void testBlockLog() throws Exception {
+        // the first line fills the first block up to its newline
+        StringBuilder text = new StringBuilder();
+        text.append(Strings.repeat("x", 64 * 1024 - 1)).append('\n');
+        for (int i = 1; i <= 20000; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        text.append("no newline");
+        byte[] bytes = text.toString().getBytes("UTF-8");
+
+        File file = tmp.newFile("ticket.log" + BlockLog.SUFFIX);
+        BlockLogWriter writer = new BlockLogWriter(new FileOutputStream(file));
+        for (int off = 0; off < bytes.length; off += 777) {
+            writer.write(bytes, off, Math.min(777, bytes.length - off));
+        }
+        writer.close();
+
+        BlockLog log = BlockLog.open(file);
+        try {
+            Assert.assertEquals(bytes.length, log.length());
+            Assert.assertEquals(20001, log.lines());
+
+            // a range across two blocks
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            log.copy(130000, 140000, out);
+            Assert.assertArrayEquals(Arrays.copyOfRange(bytes, 130000, 140000),
+                    out.toByteArray());
+
+            out.reset();
+            log.copyLines(1, 3, out);
+            Assert.assertEquals("line 1\nline 2\n", out.toString("UTF-8"));
+            out.reset();
+            log.copyLines(20000, Long.MAX_VALUE, out);
+            Assert.assertEquals("line 20000\nno newline", out.toString("UTF-8"));
+
+            // the blocks are one gzip member, also for a decoder that
+            // stops after the first one
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            log.getChannel().transferTo(0, log.dataLength(),
+                    Channels.newChannel(data));
+            Assert.assertArrayEquals(bytes, inflateFirstMember(data.toByteArray()));
+            Assert.assertArrayEquals(bytes, ByteStreams.toByteArray(
+                    new GZIPInputStream(new ByteArrayInputStream(data
+                            .toByteArray()))));
+        } finally {
+            log.close();
+        }
+    }
+
+    @Test()
+    public void testOtherMagicRejected() throws Exception {
+        File file = tmp.newFile("ticket.log" + BlockLog.SUFFIX);
+        BlockLogWriter writer = new BlockLogWriter(new FileOutputStream(file));
+        writer.write("line 1\n".getBytes("UTF-8"));
+        writer.close();
+        BlockLog.open(file).close();
+
+        // the magic is the last int of the footer
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(raf.length() - 4);
+            raf.writeInt(0x424c4b31); // "BLK1"
+        } finally {
+            raf.close();
+        }
+        try {
+            BlockLog.open(file).close();
+            Assert.fail("opened a file of another format");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().startsWith("not a block log"));
+        }
+    }
+
+    // like a browser that ignores all but the first gzip member, checks
+    // the trailer of the member
+    private static byte[] inflateFirstMember(byte[] gzip) throws Exception {
+        Assert.assertEquals(0x1f, gzip[0] & 0xff);
+        Assert.assertEquals(0x8b, gzip[1] & 0xff);
+        // no optional header fields
+        Assert.assertEquals(0, gzip[3]);
+        Inflater inflater = new Inflater(true);
+        inflater.setInput(gzip, 10, gzip.length - 10);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        while (!inflater.finished()) {
+            int n = inflater.inflate(buf);
+            Assert.assertFalse(n == 0 && inflater.needsInput());
+            out.write(buf, 0, n);
+        }
+        int trailer = gzip.length - inflater.getRemaining();
+        inflater.end();
+        // nothing after the member
+        Assert.assertEquals(gzip.length, trailer + 8);
+        byte[] data = out.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        Assert.assertEquals(crc.getValue(), readIntLE(gzip, trailer) & 0xffffffffL);
+        Assert.assertEquals(data.length, readIntLE(gzip, trailer + 4));
+        return data;
+    }
+
+    private static int readIntLE(byte[] b, int off) {
+        return (b[off] & 0xff) | (b[off + 1] & 0xff) << 8
+                | (b[off + 2] & 0xff) << 16 | (b[off + 3] & 0xff) << 24;
+    }
+}
@@ -0,0 +1,197 @@
+package org.libreoffice.ci.gerrit.buildbot.review;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.libreoffice.ci.gerrit.buildbot.metrics.Metrics;
+
+import com.google.common.collect.Lists;
+import com.google.gwtorm.server.OrmException;
+
+public class ReviewQueueTest {
+    static final String CHANGE = "4711";
+
+    ReviewQueue queue;
+
+    @After
+    public void tearDown() {
+        queue.stop();
+    }
+
+    private void start(long window) {
+        queue = new ReviewQueue(window, new Metrics());
+        queue.start();
+    }
+
+    @Test()
+    public void testOrderPerChange() throws Exception {
+        start(0);
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(3);
+        final List<String> order = Lists.newCopyOnWriteArrayList();
+        queue.submit(new Review(CHANGE, CHANGE + ",1", "started", null),
+                new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        running.countDown();
+                        release.await();
+                        order.add("1");
+                        done.countDown();
+                        return null;
+                    }
+                });
+        Assert.assertTrue(running.await(5, TimeUnit.SECONDS));
+        // other patch sets, nothing is merged
+        for (int ps = 2; ps <= 3; ps++) {
+            queue.submit(new Review(CHANGE, CHANGE + "," + ps, "result", null),
+                    record(order, String.valueOf(ps), done));
+        }
+        // another change does not wait for the first one
+        final CountDownLatch other = new CountDownLatch(1);
+        queue.submit(new Review("4712", "4712,1", "result", null),
+                record(order, "other", other));
+        Assert.assertTrue(other.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(Lists.newArrayList("other"), order);
+        release.countDown();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(Lists.newArrayList("other", "1", "2", "3"), order);
+        awaitIdle();
+        Assert.assertEquals(4, queue.getPublished());
+        Assert.assertEquals(0, queue.getCoalesced());
+    }
+
+    @Test()
+    public void testOverflow() throws Exception {
+        start(0);
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        queue.submit(new Review(CHANGE, CHANGE + ",0", "started", null),
+                new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        running.countDown();
+                        release.await();
+                        return null;
+                    }
+                });
+        Assert.assertTrue(running.await(5, TimeUnit.SECONDS));
+        final AtomicInteger calls = new AtomicInteger();
+        Callable<Void> count = new Callable<Void>() {
+            @Override
+            public Void call() {
+                calls.incrementAndGet();
+                return null;
+            }
+        };
+        // all wait behind the head
+        for (int i = 1; i < ReviewQueue.MAX_PENDING; i++) {
+            queue.submit(new Review(CHANGE, CHANGE + "," + i, "result", null),
+                    count);
+        }
+        Assert.assertEquals(ReviewQueue.MAX_PENDING, queue.getPending());
+        queue.submit(new Review(CHANGE, CHANGE + ",overflow", "result", null),
+                count);
+        Assert.assertEquals(1, queue.getDropped());
+        Assert.assertEquals(ReviewQueue.MAX_PENDING, queue.getPending());
+
+        release.countDown();
+        awaitIdle();
+        Assert.assertEquals(ReviewQueue.MAX_PENDING - 1, calls.get());
+    }
+
+    @Test()
+    public void testRetryThenSuccess() throws Exception {
+        start(0);
+        final List<String> order = Lists.newCopyOnWriteArrayList();
+        final AtomicInteger attempts = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(2);
+        queue.submit(new Review(CHANGE, CHANGE + ",1", "started", null),
+                new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        if (attempts.incrementAndGet() == 1) {
+                            throw new OrmException("database is gone");
+                        }
+                        order.add("1");
+                        done.countDown();
+                        return null;
+                    }
+                });
+        // waits for the retried one
+        queue.submit(new Review(CHANGE, CHANGE + ",2", "result", null),
+                record(order, "2", done));
+        // the first retry is after INITIAL_BACKOFF
+        Assert.assertTrue(done.await(ReviewQueue.INITIAL_BACKOFF + 5000,
+                TimeUnit.MILLISECONDS));
+        Assert.assertEquals(2, attempts.get());
+        Assert.assertEquals(Lists.newArrayList("1", "2"), order);
+        awaitIdle();
+        Assert.assertEquals(1, queue.getRetried());
+        Assert.assertEquals(0, queue.getFailed());
+        Assert.assertEquals(2, queue.getPublished());
+    }
+
+    @Test()
+    public void testCoalesce() throws Exception {
+        start(300);
+        final List<String> order = Lists.newCopyOnWriteArrayList();
+        final CountDownLatch done = new CountDownLatch(3);
+        String ps = CHANGE + ",1";
+        // held back for the window, the reviews behind the head are
+        // merged up to the first one of another caller
+        submit(new Review(CHANGE, ps, "Linux", "Linux ok").caller("1000")
+                .label("Verified", (short) 1), order, done);
+        submit(new Review(CHANGE, ps, "Mac", "Mac failed").caller("1000")
+                .label("Verified", (short) -1), order, done);
+        submit(new Review(CHANGE, ps, "Windows", "Windows ok").caller("1001"),
+                order, done);
+        submit(new Review(CHANGE, ps, "vote", null).caller("1000")
+                .label("Verified", (short) -1), order, done);
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(Lists.newArrayList("Linux ok\n\nMac failed -1",
+                "Windows ok null", "null -1"), order);
+        awaitIdle();
+        Assert.assertEquals(1, queue.getCoalesced());
+        Assert.assertEquals(3, queue.getPublished());
+    }
+
+    // records the message and vote the review was applied with
+    private void submit(final Review review, final List<String> order,
+            final CountDownLatch done) {
+        queue.submit(review, new Callable<Void>() {
+            @Override
+            public Void call() {
+                order.add(review.getMessage() + " "
+                        + review.getLabels().get("Verified"));
+                done.countDown();
+                return null;
+            }
+        });
+    }
+
+    private void awaitIdle() throws InterruptedException {
+        for (int i = 0; i < 500 && queue.getPending() > 0; i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(0, queue.getPending());
+    }
+
+    private static Callable<Void> record(final List<String> order,
+            final String name, final CountDownLatch done) {
+        return new Callable<Void>() {
+            @Override
+            public Void call() {
+                order.add(name);
+                done.countDown();
+                return null;
+            }
+        };
+    }
+}
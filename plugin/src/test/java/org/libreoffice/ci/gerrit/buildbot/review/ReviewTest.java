@@ -0,0 +1,57 @@
+package org.libreoffice.ci.gerrit.buildbot.review;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReviewTest {
+    static final String CHANGE = "4711";
+    static final String PATCH_SET = "4711,1";
+    static final String VERIFIED = "Verified";
+
+    @Test()
+    public void testMergeSameTargetAndCaller() {
+        Review review = new Review(CHANGE, PATCH_SET, "Linux", "Linux ok")
+                .label(VERIFIED, (short) 1).caller("1000");
+        Review next = new Review(CHANGE, PATCH_SET, "Windows", "Windows failed")
+                .label(VERIFIED, (short) -1).caller("1000");
+        Assert.assertTrue(review.merge(next));
+        Assert.assertEquals("Linux ok\n\nWindows failed", review.getMessage());
+        // the later vote wins
+        Assert.assertEquals(Short.valueOf((short) -1),
+                review.getLabels().get(VERIFIED));
+        Assert.assertEquals("Linux (2 merged)", review.toString());
+    }
+
+    @Test()
+    public void testMergeWithoutMessage() {
+        Review review = new Review(CHANGE, PATCH_SET, "Linux", "Linux ok");
+        Assert.assertTrue(review.merge(new Review(CHANGE, PATCH_SET, "vote",
+                null).label(VERIFIED, (short) 1)));
+        Assert.assertEquals("Linux ok", review.getMessage());
+        Assert.assertEquals(Short.valueOf((short) 1),
+                review.getLabels().get(VERIFIED));
+    }
+
+    @Test()
+    public void testOtherCallerNotMerged() {
+        Review review = new Review(CHANGE, PATCH_SET, "Linux", "Linux ok")
+                .caller("1000");
+        Assert.assertFalse(review.merge(new Review(CHANGE, PATCH_SET,
+                "Windows", "Windows ok").caller("1001")));
+        Assert.assertFalse(review.merge(new Review(CHANGE, PATCH_SET,
+                "Windows", "Windows ok")));
+        Assert.assertEquals("Linux ok", review.getMessage());
+        Assert.assertEquals("Linux", review.toString());
+    }
+
+    @Test()
+    public void testOtherPatchSetNotMerged() {
+        Review review = new Review(CHANGE, PATCH_SET, "Linux", "Linux ok")
+                .label(VERIFIED, (short) 1);
+        Assert.assertFalse(review.merge(new Review(CHANGE, "4711,2",
+                "Windows", "Windows failed").label(VERIFIED, (short) -1)));
+        Assert.assertEquals("Linux ok", review.getMessage());
+        Assert.assertEquals(Short.valueOf((short) 1),
+                review.getLabels().get(VERIFIED));
+    }
+}
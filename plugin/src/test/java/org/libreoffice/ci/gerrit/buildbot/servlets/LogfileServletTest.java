@@ -0,0 +1,244 @@
+package org.libreoffice.ci.gerrit.buildbot.servlets;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+
+public class LogfileServletTest {
+    static final int TAIL = LogfileServlet.TAIL;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test()
+    public void testAcceptsGzip() {
+        Assert.assertFalse(LogfileServlet.acceptsGzip(null));
+        Assert.assertFalse(LogfileServlet.acceptsGzip(""));
+        Assert.assertFalse(LogfileServlet.acceptsGzip("identity"));
+        Assert.assertFalse(LogfileServlet.acceptsGzip("deflate, br"));
+        Assert.assertTrue(LogfileServlet.acceptsGzip("gzip"));
+        Assert.assertTrue(LogfileServlet.acceptsGzip("GZIP"));
+        Assert.assertTrue(LogfileServlet.acceptsGzip("x-gzip"));
+        Assert.assertTrue(LogfileServlet.acceptsGzip("deflate, gzip;q=0.5"));
+        Assert.assertTrue(LogfileServlet.acceptsGzip("gzip ; q=1.0, identity"));
+        // refused
+        Assert.assertFalse(LogfileServlet.acceptsGzip("gzip;q=0"));
+        Assert.assertFalse(LogfileServlet.acceptsGzip("gzip;q=0.000, deflate"));
+        Assert.assertFalse(LogfileServlet.acceptsGzip("gzip;q=high"));
+    }
+
+    @Test()
+    public void testFullCompressedPassThrough() throws Exception {
+        byte[] text = log(10000).getBytes("UTF-8");
+        File file = gzip(text);
+        Response rsp = new Response();
+        LogfileServlet.printFullCompressed(request("deflate, gzip"),
+                rsp.proxy(), file);
+        Assert.assertEquals("gzip", rsp.headers.get("Content-Encoding"));
+        Assert.assertEquals("Accept-Encoding", rsp.headers.get("Vary"));
+        Assert.assertEquals(String.valueOf(file.length()),
+                rsp.headers.get("Content-Length"));
+        // the stored bytes, not compressed again
+        Assert.assertArrayEquals(Files.toByteArray(file),
+                rsp.body.toByteArray());
+    }
+
+    @Test()
+    public void testFullCompressedInflated() throws Exception {
+        byte[] text = log(10000).getBytes("UTF-8");
+        File file = gzip(text);
+        for (String accept : new String[] { null, "identity", "gzip;q=0" }) {
+            Response rsp = new Response();
+            LogfileServlet.printFullCompressed(request(accept), rsp.proxy(),
+                    file);
+            Assert.assertNull(rsp.headers.get("Content-Encoding"));
+            Assert.assertEquals("Accept-Encoding", rsp.headers.get("Vary"));
+            Assert.assertArrayEquals(text, rsp.body.toByteArray());
+        }
+    }
+
+    @Test()
+    public void testTailOfStream() throws Exception {
+        Random random = new Random(42);
+        for (int lines : new int[] { 0, 1, 10, 400, 401, 5000 }) {
+            String text = log(lines);
+            File file = tmp.newFile();
+            Files.write(text.getBytes("UTF-8"), file);
+            // read in pieces of any size, the ring buffer wraps in between
+            LogfileServlet.Tail tail = LogfileServlet.Tail.of(
+                    new Chunked(new ByteArrayInputStream(text.getBytes("UTF-8")),
+                            random));
+            LogfileServlet.Tail expected = LogfileServlet.Tail.of(file);
+            Assert.assertEquals(expected.skipped, tail.skipped);
+            Assert.assertArrayEquals(expected.bytes, tail.bytes);
+            Assert.assertTrue(tail.bytes.length <= TAIL);
+            Assert.assertEquals(text.length(), tail.skipped + tail.bytes.length);
+        }
+    }
+
+    @Test()
+    public void testTailStartsAtLine() throws Exception {
+        // a read larger than the ring
+        String text = Strings.repeat("x", 3 * TAIL) + "\nlast line\n";
+        LogfileServlet.Tail tail = LogfileServlet.Tail.of(
+                new ByteArrayInputStream(text.getBytes("UTF-8")));
+        Assert.assertEquals(3 * TAIL + 1, tail.skipped);
+        Assert.assertEquals("last line\n", new String(tail.bytes, "UTF-8"));
+
+        text = Strings.repeat("y", TAIL);
+        tail = LogfileServlet.Tail.of(new ByteArrayInputStream(
+                text.getBytes("UTF-8")));
+        Assert.assertEquals(0, tail.skipped);
+        Assert.assertEquals(text, new String(tail.bytes, "UTF-8"));
+    }
+
+    @Test()
+    public void testParseRange() {
+        assertRange(0, 99, LogfileServlet.parseRange("bytes=0-99", 1000));
+        assertRange(900, 999, LogfileServlet.parseRange("bytes=900-", 1000));
+        assertRange(500, 999, LogfileServlet.parseRange("bytes=500-5000", 1000));
+        // the last bytes
+        assertRange(900, 999, LogfileServlet.parseRange("bytes=-100", 1000));
+        assertRange(0, 999, LogfileServlet.parseRange("bytes=-5000", 1000));
+        assertRange(7, 7, LogfileServlet.parseRange("bytes= 7 - 7 ", 1000));
+        // not satisfiable
+        Assert.assertEquals(0, LogfileServlet.parseRange("bytes=1000-", 1000).length);
+        Assert.assertEquals(0, LogfileServlet.parseRange("bytes=0-", 0).length);
+        // ignored
+        Assert.assertNull(LogfileServlet.parseRange("bytes=0-1,5-6", 1000));
+        Assert.assertNull(LogfileServlet.parseRange("lines=0-1", 1000));
+        Assert.assertNull(LogfileServlet.parseRange("bytes=5-1", 1000));
+        Assert.assertNull(LogfileServlet.parseRange("bytes=-", 1000));
+        Assert.assertNull(LogfileServlet.parseRange("bytes=10", 1000));
+        Assert.assertNull(LogfileServlet.parseRange("bytes=a-b", 1000));
+    }
+
+    @Test()
+    public void testParseLines() {
+        assertRange(99, 200, LogfileServlet.parseLines("100-200"));
+        assertRange(4, 5, LogfileServlet.parseLines("5"));
+        assertRange(0, 1, LogfileServlet.parseLines(" 1 - 1 "));
+        assertRange(4, Long.MAX_VALUE, LogfileServlet.parseLines("5-"));
+        Assert.assertNull(LogfileServlet.parseLines("0-10"));
+        Assert.assertNull(LogfileServlet.parseLines("3-2"));
+        Assert.assertNull(LogfileServlet.parseLines("-5"));
+        Assert.assertNull(LogfileServlet.parseLines(""));
+        Assert.assertNull(LogfileServlet.parseLines("first-last"));
+    }
+
+    private static void assertRange(long first, long last, long[] range) {
+        Assert.assertNotNull(range);
+        Assert.assertEquals(2, range.length);
+        Assert.assertEquals(first, range[0]);
+        Assert.assertEquals(last, range[1]);
+    }
+
+    static String log(int lines) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 1; i <= lines; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        return text.toString();
+    }
+
+    private File gzip(byte[] text) throws IOException {
+        File file = tmp.newFile("ticket.log.gz");
+        OutputStream out = new GZIPOutputStream(new FileOutputStream(file));
+        try {
+            out.write(text);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static HttpServletRequest request(String acceptEncoding) {
+        final Map<String, String> headers = acceptEncoding == null
+                ? ImmutableMap.<String, String> of()
+                : ImmutableMap.of("Accept-Encoding", acceptEncoding);
+        return (HttpServletRequest) Proxy.newProxyInstance(
+                LogfileServletTest.class.getClassLoader(),
+                new Class<?>[] { HttpServletRequest.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method,
+                            Object[] args) {
+                        if (method.getName().equals("getHeader")) {
+                            return headers.get(args[0]);
+                        }
+                        throw new UnsupportedOperationException(
+                                method.getName());
+                    }
+                });
+    }
+
+    // records the headers and the body
+    static class Response implements InvocationHandler {
+        final Map<String, String> headers = Maps.newHashMap();
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        HttpServletResponse proxy() {
+            return (HttpServletResponse) Proxy.newProxyInstance(
+                    LogfileServletTest.class.getClassLoader(),
+                    new Class<?>[] { HttpServletResponse.class }, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("setHeader")) {
+                headers.put((String) args[0], (String) args[1]);
+                return null;
+            }
+            if (method.getName().equals("getOutputStream")) {
+                return new ServletOutputStream() {
+                    @Override
+                    public void write(int b) {
+                        body.write(b);
+                    }
+                };
+            }
+            throw new UnsupportedOperationException(method.getName());
+        }
+    }
+
+    // returns fewer bytes than asked for
+    static class Chunked extends FilterInputStream {
+        final Random random;
+
+        Chunked(InputStream in, Random random) {
+            super(in);
+            this.random = random;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return super.read(b, off, Math.min(len, 1 + random.nextInt(
+                    2 * TAIL)));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.sim;
+
+import java.util.Random;
+
+/** Distribution of the build time of a tinderbox, in ms. */
+public abstract class BuildTime {
+
+    public abstract long sample(Random random);
+
+    public static BuildTime fixed(final long ms) {
+        return new BuildTime() {
+            @Override
+            public long sample(Random random) {
+                return ms;
+            }
+        };
+    }
+
+    /** Uniform between min and max. */
+    public static BuildTime uniform(final long min, final long max) {
+        return new BuildTime() {
+            @Override
+            public long sample(Random random) {
+                return min + (long) (random.nextDouble() * (max - min));
+            }
+        };
+    }
+
+    /**
+     * Log-normal around the median, the usual shape of build times: most
+     * builds are close to the median, a few take much longer.
+     *
+     * @param sigma spread of the logarithm, 0.3 puts 90% of the builds
+     *        between 0.6 and 1.6 times the median
+     */
+    public static BuildTime logNormal(final long median, final double sigma) {
+        return new BuildTime() {
+            @Override
+            public long sample(Random random) {
+                return Math.round(median
+                        * Math.exp(sigma * random.nextGaussian()));
+            }
+        };
+    }
+}
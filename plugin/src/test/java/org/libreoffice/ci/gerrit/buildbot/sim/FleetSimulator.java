@@ -0,0 +1,466 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.sim;
+
+import java.io.ByteArrayInputStream;
+import java.io.PrintWriter;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+
+import org.libreoffice.ci.gerrit.buildbot.commands.TaskStatus;
+import org.libreoffice.ci.gerrit.buildbot.config.BuildbotConfig;
+import org.libreoffice.ci.gerrit.buildbot.config.BuildbotProject;
+import org.libreoffice.ci.gerrit.buildbot.config.TriggerStrategy;
+import org.libreoffice.ci.gerrit.buildbot.logic.BuildbotLogicControl;
+import org.libreoffice.ci.gerrit.buildbot.metrics.Metrics;
+import org.libreoffice.ci.gerrit.buildbot.model.BuildbotPlatformJob;
+import org.libreoffice.ci.gerrit.buildbot.model.GerritJob;
+import org.libreoffice.ci.gerrit.buildbot.model.Os;
+import org.libreoffice.ci.gerrit.buildbot.model.TbJobDescriptor;
+import org.libreoffice.ci.gerrit.buildbot.model.TbJobResult;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Plays a {@link Scenario} against a real {@link BuildbotLogicControl}
+ * on a {@link VirtualClock}. Patch set events, get and put calls of the
+ * tinderboxes and the end of each build are events on one time line that
+ * is processed in a single thread, so a simulated week takes seconds and
+ * a run is repeatable for a given seed. The calls follow the ssh commands:
+ * get claims a task and posts the start comment, put publishes the log,
+ * reports the result and posts the reviews. Logs and reviews go to stubs.
+ * <p>
+ * Lease and idle timeouts run on the real timer of the control and are
+ * not simulated; they are off unless configured.
+ */
+public class FleetSimulator {
+    private static final String PROJECT = "core";
+    // changes a new patch set may be uploaded for
+    private static final int OPEN_CHANGES = 50;
+    private static final byte[] LOG = "[build CXX] sw/source/core/doc/docnew.cxx\n"
+            .getBytes(Charsets.UTF_8);
+
+    private final Scenario scenario;
+    private final Random random;
+    private final VirtualClock clock;
+    private final PriorityQueue<Event> events = new PriorityQueue<Event>();
+    private long order;
+
+    private BuildbotConfig config;
+    private BuildbotLogicControl control;
+    private StubLogPublisher logs;
+    private StubReviewPublisher reviews;
+
+    private final List<Box> boxes = Lists.newArrayList();
+    private final List<SimChange> open = Lists.newArrayList();
+    private int changes;
+    // revision -> time of the patch set event
+    private final Map<String, Long> arrivals = Maps.newHashMap();
+
+    private Report report;
+    private final Map<Os, Report.Interval> current =
+            new EnumMap<Os, Report.Interval>(Os.class);
+    private long intervalStart;
+
+    public FleetSimulator(Scenario scenario) {
+        this.scenario = scenario;
+        this.random = new Random(scenario.seed);
+        this.clock = new VirtualClock(scenario.start);
+    }
+
+    private abstract class Event implements Comparable<Event> {
+        final long time;
+        final long seq = order++;
+
+        Event(long time) {
+            this.time = time;
+        }
+
+        abstract void run();
+
+        @Override
+        public int compareTo(Event o) {
+            if (time != o.time) {
+                return time < o.time ? -1 : 1;
+            }
+            return seq < o.seq ? -1 : (seq == o.seq ? 0 : 1);
+        }
+    }
+
+    // get of an idle tinderbox
+    private class Poll extends Event {
+        final Box box;
+
+        Poll(long time, Box box) {
+            super(time);
+            this.box = box;
+        }
+
+        @Override
+        void run() {
+            poll(box);
+        }
+    }
+
+    // end of a sample interval
+    private class Sample extends Event {
+        Sample(long time) {
+            super(time);
+        }
+
+        @Override
+        void run() {
+            sample();
+            schedule(new Sample(time + scenario.sampleInterval));
+        }
+    }
+
+    private static class Box {
+        final String id;
+        final Os platform;
+        final Set<String> branches;
+        final Scenario.Platform spec;
+        // null while idle
+        String ticket;
+        long busySince;
+        // waiting for a patch set, long poll only
+        boolean parked;
+
+        Box(String id, Os platform, Set<String> branches,
+                Scenario.Platform spec) {
+            this.id = id;
+            this.platform = platform;
+            this.branches = branches;
+            this.spec = spec;
+        }
+
+        boolean accepts(String branch) {
+            return branches.isEmpty() || branches.contains(branch);
+        }
+    }
+
+    private static class SimChange {
+        final int number;
+        final String branch;
+        int patchSet = 1;
+
+        SimChange(int number, String branch) {
+            this.number = number;
+            this.branch = branch;
+        }
+
+        String revision() {
+            // the first nine digits are the job id
+            return String.format("%05x%04x%031x", number, patchSet, 0);
+        }
+    }
+
+    public Report run() {
+        long wall = System.currentTimeMillis();
+        config = new BuildbotConfig();
+        config.setEmail("buildbot@localhost");
+        BuildbotProject project = new BuildbotProject(PROJECT);
+        project.setTriggerStrategy(TriggerStrategy.PATCHSET_CREATED);
+        config.setProjects(ImmutableList.of(project));
+        logs = new StubLogPublisher();
+        config.setPublisher(logs);
+        control = new BuildbotLogicControl(config, new Metrics(), clock);
+        reviews = new StubReviewPublisher(control, config);
+        report = new Report(scenario.duration);
+        control.start();
+        try {
+            setUp();
+            long end = scenario.start + scenario.duration;
+            while (!events.isEmpty() && events.peek().time <= end) {
+                Event e = events.poll();
+                clock.advanceTo(e.time);
+                e.run();
+            }
+            report.superseded = control.getSupersededTasks(PROJECT);
+        } finally {
+            control.stop();
+        }
+        report.reviews = reviews.getComments();
+        report.verified = (int) reviews.getVotes("Verified +1");
+        report.rejected = (int) reviews.getVotes("Verified -1");
+        report.logBytes = logs.getBytes();
+        report.wallTime = System.currentTimeMillis() - wall;
+        return report;
+    }
+
+    private void setUp() {
+        long now = clock.currentTimeMillis();
+        for (Map.Entry<Os, Scenario.Platform> e : scenario.platforms
+                .entrySet()) {
+            int n = 0;
+            for (Set<String> branches : e.getValue().boxes) {
+                Box box = new Box(e.getKey().name().toLowerCase() + n++,
+                        e.getKey(), branches, e.getValue());
+                boxes.add(box);
+                // not all at once
+                schedule(new Poll(now + (long) (random.nextDouble()
+                        * scenario.pollInterval), box));
+            }
+        }
+        for (Os p : Os.values()) {
+            report.totals.put(p, new Report.Interval(p, scenario.duration,
+                    scenario.duration, boxes(p)));
+        }
+        intervalStart = now;
+        newIntervals();
+        schedule(new Sample(now + scenario.sampleInterval));
+        scheduleArrival();
+    }
+
+    private void schedule(Event e) {
+        events.add(e);
+    }
+
+    private void scheduleArrival() {
+        if (scenario.patchSetsPerHour <= 0 || scenario.branches.isEmpty()) {
+            return;
+        }
+        // exponential gaps: a Poisson stream of patch sets
+        long gap = (long) (-Math.log(1 - random.nextDouble())
+                * Scenario.HOUR / scenario.patchSetsPerHour);
+        schedule(new Event(clock.currentTimeMillis() + gap) {
+            @Override
+            void run() {
+                patchSetCreated();
+                scheduleArrival();
+            }
+        });
+    }
+
+    private void patchSetCreated() {
+        SimChange change;
+        if (!open.isEmpty() && random.nextDouble() < scenario.newPatchSetShare) {
+            change = open.get(random.nextInt(open.size()));
+            change.patchSet++;
+        } else {
+            change = new SimChange(++changes, branch());
+            open.add(change);
+            if (open.size() > OPEN_CHANGES) {
+                open.remove(0);
+            }
+        }
+        String revision = change.revision();
+        arrivals.put(revision, clock.currentTimeMillis());
+        report.patchSets++;
+        control.startPatchSet(PROJECT, String.format("I%040x", change.number),
+                change.branch, String.format("refs/changes/%02d/%d/%d",
+                        change.number % 100, change.number, change.patchSet),
+                revision);
+        if (scenario.longPoll) {
+            for (Box box : boxes) {
+                if (box.parked && box.accepts(change.branch)) {
+                    box.parked = false;
+                    schedule(new Poll(clock.currentTimeMillis(), box));
+                }
+            }
+        }
+    }
+
+    private String branch() {
+        double total = 0;
+        for (double w : scenario.branches.values()) {
+            total += w;
+        }
+        double r = random.nextDouble() * total;
+        String branch = null;
+        for (Map.Entry<String, Double> e : scenario.branches.entrySet()) {
+            branch = e.getKey();
+            r -= e.getValue();
+            if (r < 0) {
+                break;
+            }
+        }
+        return branch;
+    }
+
+    // get
+    private void poll(final Box box) {
+        long now = clock.currentTimeMillis();
+        TbJobDescriptor descriptor = control.launchTbJob(PROJECT,
+                box.platform, box.branches, box.id, false);
+        if (descriptor == null) {
+            if (scenario.longPoll) {
+                box.parked = true;
+            } else {
+                schedule(new Poll(now + scenario.pollInterval, box));
+            }
+            return;
+        }
+        BuildbotPlatformJob task = descriptor.getBuildbotPlatformJob();
+        long wait = now - task.getQueuedTime();
+        current.get(box.platform).claimed(wait);
+        report.totals.get(box.platform).claimed(wait);
+        reviews.approveOne(task.getParent(), "build started", "Code-Review",
+                (short) 0);
+        box.ticket = task.getTicketString();
+        box.busySince = now;
+
+        long duration = Math.max(1, box.spec.buildTime.sample(random));
+        double r = random.nextDouble();
+        final TaskStatus status;
+        if (r < box.spec.cancelRate) {
+            status = TaskStatus.CANCELLED;
+            duration = Math.max(1, (long) (duration * random.nextDouble()));
+        } else if (r < box.spec.cancelRate + box.spec.failureRate) {
+            status = TaskStatus.FAILED;
+        } else {
+            status = TaskStatus.SUCCESS;
+        }
+        schedule(new Event(now + duration) {
+            @Override
+            void run() {
+                put(box, status);
+            }
+        });
+    }
+
+    // put, then get again at once
+    private void put(Box box, TaskStatus status) {
+        long now = clock.currentTimeMillis();
+        String ticket = box.ticket;
+        box.ticket = null;
+        current.get(box.platform).busy += now
+                - Math.max(box.busySince, intervalStart);
+        for (Report.Interval i : ImmutableList.of(current.get(box.platform),
+                report.totals.get(box.platform))) {
+            if (status.isCancelled()) {
+                i.canceled++;
+            } else {
+                i.built++;
+                if (status.isFailed()) {
+                    i.failed++;
+                }
+            }
+        }
+
+        String log = null;
+        if (status.isSuccess() || status.isFailed()) {
+            log = logs.publishLog(config, ticket, box.id, status,
+                    new ByteArrayInputStream(LOG));
+        }
+        TbJobResult result = control.setResultPossible(ticket, box.id,
+                status, log);
+        if (result != null) {
+            GerritJob job = result.getTbPlatformJob().getParent();
+            if (!job.isAborted()) {
+                reviews.postResultToReview(result);
+                if (result.isJobFinished()) {
+                    reviews.postJobResult(job);
+                    Long arrived = arrivals.remove(job.getGerritRevision());
+                    if (arrived != null) {
+                        report.finished(now - arrived);
+                    }
+                }
+            }
+        }
+        poll(box);
+    }
+
+    private void sample() {
+        long now = clock.currentTimeMillis();
+        for (Box box : boxes) {
+            if (box.ticket != null) {
+                current.get(box.platform).busy += now
+                        - Math.max(box.busySince, intervalStart);
+            }
+        }
+        int pending = control.getGerritJobs(PROJECT).size();
+        for (Os p : Os.values()) {
+            Report.Interval i = current.get(p);
+            i.queued = control.getTBQueueMap(PROJECT).get(p).size();
+            i.pendingJobs = pending;
+            for (Box box : boxes) {
+                if (box.platform == p && box.ticket != null) {
+                    i.running++;
+                }
+            }
+            report.curve.add(i);
+            report.totals.get(p).busy += i.busy;
+        }
+        intervalStart = now;
+        newIntervals();
+    }
+
+    private void newIntervals() {
+        long end = intervalStart - scenario.start + scenario.sampleInterval;
+        for (Os p : Os.values()) {
+            current.put(p, new Report.Interval(p, end,
+                    scenario.sampleInterval, boxes(p)));
+        }
+    }
+
+    private int boxes(Os platform) {
+        int n = 0;
+        for (Box box : boxes) {
+            if (box.platform == platform) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Run a scenario and print the report. Arguments are key=value pairs:
+     * days, rate (patch sets per hour), seed, poll (minutes), longpoll
+     * (true or false) and linux, windows, macosx (number of tinderboxes,
+     * replacing the default fleet of {@link Scenario#libreOffice()}).
+     */
+    public static void main(String[] args) {
+        Scenario s = Scenario.libreOffice();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("not key=value: " + arg);
+            }
+            String key = arg.substring(0, eq);
+            String value = arg.substring(eq + 1);
+            if (key.equals("days")) {
+                s.setDuration((long) (Double.parseDouble(value) * Scenario.DAY));
+            } else if (key.equals("rate")) {
+                s.setPatchSetsPerHour(Double.parseDouble(value));
+            } else if (key.equals("seed")) {
+                s.setSeed(Long.parseLong(value));
+            } else if (key.equals("poll")) {
+                s.setPollInterval((long) (Double.parseDouble(value)
+                        * Scenario.MINUTE));
+            } else if (key.equals("longpoll")) {
+                s.setLongPoll(Boolean.parseBoolean(value));
+            } else {
+                Os os = platform(key);
+                s.platform(os).boxes.clear();
+                s.platform(os).addBoxes(Integer.parseInt(value));
+            }
+        }
+        PrintWriter out = new PrintWriter(System.out);
+        new FleetSimulator(s).run().write(out);
+        out.flush();
+    }
+
+    private static Os platform(String name) {
+        for (Os p : Os.values()) {
+            if (p.name().equalsIgnoreCase(name)) {
+                return p;
+            }
+        }
+        throw new IllegalArgumentException("unknown key: " + name);
+    }
+}
@@ -0,0 +1,202 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.sim;
+
+import java.io.PrintWriter;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.libreoffice.ci.gerrit.buildbot.model.Os;
+import org.libreoffice.ci.gerrit.buildbot.stats.DurationStats;
+import org.libreoffice.ci.gerrit.buildbot.stats.QueueEstimate;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Outcome of a simulation: totals per platform and the curves of queue
+ * length, utilization, throughput and queue wait over time.
+ */
+public class Report {
+
+    /** One platform over a period of the simulation. */
+    public static class Interval {
+        final Os platform;
+        // since the start of the simulation
+        final long end;
+        final long length;
+        final int boxes;
+        // at the end
+        int queued;
+        int running;
+        int pendingJobs;
+        // ms the boxes were building
+        long busy;
+        int claimed;
+        int built;
+        int failed;
+        int canceled;
+        long waitSum;
+        final DurationStats wait = new DurationStats();
+
+        Interval(Os platform, long end, long length, int boxes) {
+            this.platform = platform;
+            this.end = end;
+            this.length = length;
+            this.boxes = boxes;
+        }
+
+        void claimed(long ms) {
+            claimed++;
+            waitSum += ms;
+            wait.add(ms);
+        }
+
+        public Os getPlatform() {
+            return platform;
+        }
+
+        public int getQueued() {
+            return queued;
+        }
+
+        public int getClaimed() {
+            return claimed;
+        }
+
+        /** @return builds run to the end, failed ones included */
+        public int getBuilt() {
+            return built;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+
+        public int getCanceled() {
+            return canceled;
+        }
+
+        /** @return share of the box time spent building, 0..1 */
+        public double getUtilization() {
+            return boxes == 0 ? 0 : (double) busy / ((double) boxes * length);
+        }
+
+        /** @return mean time from queueing to claim, in ms */
+        public long getMeanWait() {
+            return claimed == 0 ? 0 : waitSum / claimed;
+        }
+
+        /** @return percentile of the queue wait, see DurationStats */
+        public long getWait(double p) {
+            return wait.getPercentile(p);
+        }
+    }
+
+    final long duration;
+    final List<Interval> curve = Lists.newArrayList();
+    final Map<Os, Interval> totals = new EnumMap<Os, Interval>(Os.class);
+    int patchSets;
+    int verified;
+    int rejected;
+    long superseded;
+    long reviews;
+    long logBytes;
+    final DurationStats turnaround = new DurationStats();
+    long turnaroundSum;
+    long wallTime;
+
+    Report(long duration) {
+        this.duration = duration;
+    }
+
+    void finished(long ms) {
+        turnaround.add(ms);
+        turnaroundSum += ms;
+    }
+
+    public List<Interval> getCurve() {
+        return curve;
+    }
+
+    public Interval getTotal(Os platform) {
+        return totals.get(platform);
+    }
+
+    public int getPatchSets() {
+        return patchSets;
+    }
+
+    /** @return jobs voted Verified +1 */
+    public int getVerified() {
+        return verified;
+    }
+
+    /** @return jobs voted Verified -1 */
+    public int getRejected() {
+        return rejected;
+    }
+
+    /** @return mean time from patch set to combined vote, in ms */
+    public long getMeanTurnaround() {
+        long n = turnaround.getCount();
+        return n == 0 ? 0 : turnaroundSum / n;
+    }
+
+    public long getWallTime() {
+        return wallTime;
+    }
+
+    public void write(PrintWriter out) {
+        long days = Math.max(1, duration / Scenario.DAY);
+        out.print(String.format("simulated %s in %d ms\n",
+                QueueEstimate.formatDuration(duration), wallTime));
+        out.print(String.format(
+                "%d patch set(s), %d verified, %d rejected, %d task(s) superseded, %d review(s), %d log byte(s)\n",
+                patchSets, verified, rejected, superseded, reviews, logBytes));
+        out.print(String.format(
+                "turnaround: avg %s, p50 %s, p90 %s, max %s\n",
+                QueueEstimate.formatDuration(getMeanTurnaround()),
+                QueueEstimate.formatDuration(turnaround.getPercentile(0.5)),
+                QueueEstimate.formatDuration(turnaround.getPercentile(0.9)),
+                QueueEstimate.formatDuration(turnaround.getMax())));
+        out.print(String.format("%-8s %5s %6s %6s %8s %5s %9s %8s %8s %8s %8s\n",
+                "Platform", "Boxes", "Builds", "Failed", "Canceled", "Util",
+                "Builds/d", "Wait avg", "Wait p50", "Wait p90", "Wait max"));
+        for (Interval t : totals.values()) {
+            out.print(String.format(Locale.ROOT,
+                    "%-8s %5d %6d %6d %8d %4.0f%% %9.1f %8s %8s %8s %8s\n",
+                    t.platform.name(), t.boxes, t.built, t.failed, t.canceled,
+                    100 * t.getUtilization(), (double) t.built / days,
+                    QueueEstimate.formatDuration(t.getMeanWait()),
+                    QueueEstimate.formatDuration(t.getWait(0.5)),
+                    QueueEstimate.formatDuration(t.getWait(0.9)),
+                    QueueEstimate.formatDuration(t.wait.getMax())));
+        }
+        out.print("\n");
+        writeCurve(out);
+    }
+
+    /** The curves as CSV, one line per platform and interval. */
+    public void writeCurve(PrintWriter out) {
+        out.print("hour,platform,queued,running,pending_jobs,utilization,"
+                + "claimed,built,canceled,wait_avg_min,wait_p90_min\n");
+        for (Interval i : curve) {
+            out.print(String.format(Locale.ROOT,
+                    "%.1f,%s,%d,%d,%d,%.2f,%d,%d,%d,%.1f,%.1f\n",
+                    (double) i.end / Scenario.HOUR, i.platform.name(),
+                    i.queued, i.running, i.pendingJobs, i.getUtilization(),
+                    i.claimed, i.built, i.canceled,
+                    (double) i.getMeanWait() / Scenario.MINUTE,
+                    (double) i.getWait(0.9) / Scenario.MINUTE));
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.sim;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.libreoffice.ci.gerrit.buildbot.model.Os;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * What {@link FleetSimulator} plays: the patch set stream and the
+ * tinderboxes of each platform. All times are in ms.
+ */
+public class Scenario {
+    static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    // Monday, 6 January 2014, 00:00 UTC: runs do not depend on the date
+    long start = 1388966400000L;
+    long duration = 7 * DAY;
+    long sampleInterval = HOUR;
+    long seed = 1;
+    double patchSetsPerHour = 2;
+    // share of the patch sets that replace the last one of an open change
+    double newPatchSetShare = 0.2;
+    // branch -> weight
+    final Map<String, Double> branches = Maps.newLinkedHashMap();
+    // idle tinderboxes ask again after this long
+    long pollInterval = 5 * MINUTE;
+    // get --wait: idle tinderboxes are woken up by a new patch set
+    boolean longPoll;
+    final Map<Os, Platform> platforms = new EnumMap<Os, Platform>(Os.class);
+
+    /** The tinderboxes of one platform. */
+    public static class Platform {
+        // one branch set per tinderbox, empty for all branches
+        final List<Set<String>> boxes = Lists.newArrayList();
+        BuildTime buildTime = BuildTime.logNormal(HOUR, 0.3);
+        double failureRate = 0.1;
+        double cancelRate = 0.02;
+
+        /** Add tinderboxes that build the given branches, or all. */
+        public Platform addBoxes(int count, String... branches) {
+            for (int i = 0; i < count; i++) {
+                boxes.add(branches.length == 0 ? Collections.<String> emptySet()
+                        : ImmutableSet.copyOf(branches));
+            }
+            return this;
+        }
+
+        public Platform setBuildTime(BuildTime buildTime) {
+            this.buildTime = buildTime;
+            return this;
+        }
+
+        /** Share of the builds reported as failed. */
+        public Platform setFailureRate(double failureRate) {
+            this.failureRate = failureRate;
+            return this;
+        }
+
+        /**
+         * Share of the builds given up and reported as canceled part way
+         * through, the task goes back into the queue.
+         */
+        public Platform setCancelRate(double cancelRate) {
+            this.cancelRate = cancelRate;
+            return this;
+        }
+    }
+
+    public Platform platform(Os os) {
+        Platform p = platforms.get(os);
+        if (p == null) {
+            p = new Platform();
+            platforms.put(os, p);
+        }
+        return p;
+    }
+
+    public Scenario setStart(long start) {
+        this.start = start;
+        return this;
+    }
+
+    public Scenario setDuration(long duration) {
+        this.duration = duration;
+        return this;
+    }
+
+    /** Length of one point of the curves. */
+    public Scenario setSampleInterval(long sampleInterval) {
+        this.sampleInterval = sampleInterval;
+        return this;
+    }
+
+    public Scenario setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /** Mean rate of the patch set events, they arrive at random. */
+    public Scenario setPatchSetsPerHour(double patchSetsPerHour) {
+        this.patchSetsPerHour = patchSetsPerHour;
+        return this;
+    }
+
+    public Scenario setNewPatchSetShare(double newPatchSetShare) {
+        this.newPatchSetShare = newPatchSetShare;
+        return this;
+    }
+
+    /** Target branch of new changes, chosen by weight. */
+    public Scenario addBranch(String branch, double weight) {
+        branches.put(branch, weight);
+        return this;
+    }
+
+    public Scenario setPollInterval(long pollInterval) {
+        this.pollInterval = pollInterval;
+        return this;
+    }
+
+    public Scenario setLongPoll(boolean longPoll) {
+        this.longPoll = longPoll;
+        return this;
+    }
+
+    /**
+     * Roughly the LibreOffice fleet: most changes on master, builds of
+     * about an hour on Linux and longer ones on Windows and Mac OS X.
+     */
+    public static Scenario libreOffice() {
+        Scenario s = new Scenario()
+                .addBranch("master", 0.8)
+                .addBranch("libreoffice-4-2", 0.15)
+                .addBranch("libreoffice-4-1", 0.05);
+        s.platform(Os.Linux).addBoxes(3).addBoxes(1, "master")
+                .setBuildTime(BuildTime.logNormal(HOUR, 0.3));
+        s.platform(Os.Windows).addBoxes(6)
+                .setBuildTime(BuildTime.logNormal(2 * HOUR, 0.3));
+        s.platform(Os.MacOSX).addBoxes(4)
+                .setBuildTime(BuildTime.logNormal(90 * MINUTE, 0.3));
+        return s;
+    }
+}
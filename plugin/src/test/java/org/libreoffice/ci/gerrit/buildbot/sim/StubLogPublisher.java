@@ -0,0 +1,51 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.sim;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.libreoffice.ci.gerrit.buildbot.commands.TaskStatus;
+import org.libreoffice.ci.gerrit.buildbot.config.BuildbotConfig;
+import org.libreoffice.ci.gerrit.buildbot.publisher.LogPublisher;
+
+import com.google.common.io.ByteStreams;
+
+/** Counts the uploaded logs instead of storing them. */
+public class StubLogPublisher implements LogPublisher {
+    private final AtomicLong logs = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    @Override
+    public String publishLog(BuildbotConfig config, String ticket,
+            String boxId, TaskStatus status, InputStream in) {
+        try {
+            bytes.addAndGet(ByteStreams.copy(in, ByteStreams.nullOutputStream()));
+        } catch (IOException e) {
+            return null;
+        }
+        logs.incrementAndGet();
+        return "sim://logs/" + ticket;
+    }
+
+    @Override
+    public String testChannel(BuildbotConfig config) {
+        return "sim://logs";
+    }
+
+    public long getLogs() {
+        return logs.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+}
@@ -0,0 +1,66 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.sim;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.libreoffice.ci.gerrit.buildbot.config.BuildbotConfig;
+import org.libreoffice.ci.gerrit.buildbot.logic.BuildbotLogicControl;
+import org.libreoffice.ci.gerrit.buildbot.model.GerritJob;
+import org.libreoffice.ci.gerrit.buildbot.model.TbJobResult;
+import org.libreoffice.ci.gerrit.buildbot.review.ReviewPublisher;
+
+/**
+ * Counts the reviews instead of posting them to Gerrit. The combined vote
+ * is still decided by {@link ReviewPublisher#postJobResult(GerritJob)}.
+ */
+public class StubReviewPublisher extends ReviewPublisher {
+    private final AtomicLong comments = new AtomicLong();
+    // "label value" -> reviews
+    private final ConcurrentMap<String, AtomicLong> votes =
+            new ConcurrentHashMap<String, AtomicLong>();
+
+    public StubReviewPublisher(BuildbotLogicControl control,
+            BuildbotConfig config) {
+        super(control, config, null, null, null, null, null, null, null, null);
+    }
+
+    @Override
+    public void postResultToReview(TbJobResult result) {
+        comments.incrementAndGet();
+    }
+
+    @Override
+    public void approveOne(GerritJob job, String changeComment,
+            String labelName, short value) {
+        String key = labelName + " " + (value > 0 ? "+" : "") + value;
+        AtomicLong n = votes.get(key);
+        if (n == null) {
+            AtomicLong fresh = new AtomicLong();
+            n = votes.putIfAbsent(key, fresh);
+            if (n == null) {
+                n = fresh;
+            }
+        }
+        n.incrementAndGet();
+    }
+
+    public long getComments() {
+        return comments.get();
+    }
+
+    /** @return number of reviews with the vote, e.g. "Verified +1" */
+    public long getVotes(String vote) {
+        AtomicLong n = votes.get(vote);
+        return n == null ? 0 : n.get();
+    }
+}
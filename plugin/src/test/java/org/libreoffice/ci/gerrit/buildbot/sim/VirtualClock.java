@@ -0,0 +1,33 @@
+/* -*- Mode: C++; tab-width: 4; indent-tabs-mode: nil; c-basic-offset: 4 -*- */
+/*
+ * This file is part of the LibreOffice project.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ */
+
+package org.libreoffice.ci.gerrit.buildbot.sim;
+
+import org.libreoffice.ci.gerrit.buildbot.model.Clock;
+
+/** Clock that only moves when the simulation says so. */
+public class VirtualClock extends Clock {
+    private volatile long now;
+
+    public VirtualClock(long start) {
+        now = start;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return now;
+    }
+
+    void advanceTo(long time) {
+        if (time < now) {
+            throw new IllegalArgumentException("clock cannot go back");
+        }
+        now = time;
+    }
+}